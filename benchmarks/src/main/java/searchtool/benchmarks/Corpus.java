@@ -0,0 +1,75 @@
+package searchtool.benchmarks;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Benchmark corpora: "dic" is data/dic.txt, "synthetic-N" is N random
+ * lower case words of 3 to 12 letters, with a skewed letter distribution
+ * so prefixes are shared like in natural text.
+ */
+final class Corpus
+{
+    static final String DIC_FILE = "data/dic.txt";
+
+    private Corpus()
+    {
+    }
+
+    static List<String> load( String name ) throws IOException
+    {
+        if( name.equals( "dic" ) )
+        {
+            LinkedHashSet<String> terms = new LinkedHashSet<String>();
+            BufferedReader br = new BufferedReader( new FileReader( DIC_FILE ) );
+            String line;
+            while( ( line = br.readLine() ) != null )
+            {
+                terms.add( line.toLowerCase() );
+            }
+            br.close();
+            return new ArrayList<String>( terms );
+        }
+        if( name.startsWith( "synthetic-" ) )
+        {
+            int n = Integer.parseInt( name.substring( "synthetic-".length() ) );
+            Random random = new Random( 17 );
+            LinkedHashSet<String> terms = new LinkedHashSet<String>();
+            while( terms.size() < n )
+            {
+                char[] w = new char[ 3 + random.nextInt( 10 ) ];
+                for( int i = 0; i < w.length; i++ )
+                {
+                    // squaring favours the first letters of the alphabet
+                    double r = random.nextDouble();
+                    w[i] = (char)( 'a' + (int)( 26 * r * r ) );
+                }
+                terms.add( new String( w ) );
+            }
+            return new ArrayList<String>( terms );
+        }
+        throw new IllegalArgumentException( "unknown corpus: " + name );
+    }
+
+    /**
+     * Sample terms of the corpus, every other one with a random typo.
+     */
+    static String[] queries( List<String> terms, int count )
+    {
+        Random random = new Random( 42 );
+        String[] queries = new String[ count ];
+        for( int i = 0; i < count; i++ )
+        {
+            char[] w = terms.get( random.nextInt( terms.size() ) ).toCharArray();
+            if( i % 2 == 1 )
+            {
+                w[ random.nextInt( w.length ) ] = (char)( 'a' + random.nextInt( 26 ) );
+            }
+            queries[i] = new String( w );
+        }
+        return queries;
+    }
+}
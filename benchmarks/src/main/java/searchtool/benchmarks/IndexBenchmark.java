@@ -0,0 +1,70 @@
+package searchtool.benchmarks;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import searchtool.ArrayNodeStore;
+import searchtool.TernarySearchTree;
+
+/**
+ * Tree construction: index() of data/dic.txt and bulk loads of larger
+ * synthetic corpora.
+ */
+@BenchmarkMode( Mode.SingleShotTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3 )
+@Measurement( iterations = 5 )
+@Fork( value = 1, jvmArgsAppend = { "-Xmx4g" } )
+@State( Scope.Benchmark )
+public class IndexBenchmark
+{
+    @Param( { "synthetic-100000", "synthetic-1000000" } )
+    public String corpus;
+
+    private List<String> m_terms;
+
+    @Setup( Level.Trial )
+    public void setup() throws IOException
+    {
+        m_terms = Corpus.load( corpus );
+    }
+
+    @Benchmark
+    public TernarySearchTree indexDictionary()
+    {
+        TernarySearchTree tst = new TernarySearchTree( new ArrayNodeStore() );
+        tst.index( Corpus.DIC_FILE );
+        return tst;
+    }
+
+    @Benchmark
+    public TernarySearchTree addInOrder()
+    {
+        TernarySearchTree tst = new TernarySearchTree( new ArrayNodeStore() );
+        for( int i = 0; i < m_terms.size(); i++ )
+        {
+            tst.add( m_terms.get( i ), i );
+        }
+        return tst;
+    }
+
+    @Benchmark
+    public TernarySearchTree bulkLoad()
+    {
+        TernarySearchTree tst = new TernarySearchTree( new ArrayNodeStore() );
+        tst.bulkLoad( m_terms );
+        return tst;
+    }
+
+    @Benchmark
+    public TernarySearchTree parallelLoad()
+    {
+        TernarySearchTree tst = new TernarySearchTree( new ArrayNodeStore() );
+        tst.parallelLoad( m_terms, ForkJoinPool.commonPool() );
+        return tst;
+    }
+}
@@ -0,0 +1,137 @@
+package searchtool.benchmarks;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import searchtool.ArrayNodeStore;
+import searchtool.ObjectNodeStore;
+import searchtool.TernarySearchTree;
+
+/**
+ * Exact, fuzzy and prefix queries. Each invocation runs the next query of
+ * a fixed sample, half of them with a typo. SampleTime mode reports
+ * latency percentiles; add -prof gc for the allocation rate.
+ */
+@BenchmarkMode( { Mode.AverageTime, Mode.SampleTime } )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( value = 1, jvmArgsAppend = { "-Xmx4g" } )
+@State( Scope.Benchmark )
+public class QueryBenchmark
+{
+    @Param( { "dic", "synthetic-1000000" } )
+    public String corpus;
+
+    @Param( { "array", "object" } )
+    public String store;
+
+    private TernarySearchTree m_tst;
+    private String[] m_queries;
+
+    @State( Scope.Thread )
+    public static class Cursor
+    {
+        int next = 0;
+    }
+
+    @Setup( Level.Trial )
+    public void setup() throws IOException
+    {
+        List<String> terms = Corpus.load( corpus );
+        m_tst = new TernarySearchTree( store.equals( "array" ) ? new ArrayNodeStore() : new ObjectNodeStore() );
+        for( int i = 0; i < terms.size(); i++ )
+        {
+            m_tst.add( terms.get( i ), i );
+        }
+        m_queries = Corpus.queries( terms, 1024 );
+    }
+
+    private String next( Cursor cursor )
+    {
+        return m_queries[ cursor.next++ & ( m_queries.length - 1 ) ];
+    }
+
+    @Benchmark
+    public boolean contains( Cursor cursor )
+    {
+        return m_tst.contains( next( cursor ) );
+    }
+
+    @Benchmark
+    public HashSet<String> nearNeighbours0( Cursor cursor )
+    {
+        HashSet<String> ret = new HashSet<String>();
+        m_tst.nearNeighbours( ret, next( cursor ), 0 );
+        return ret;
+    }
+
+    @Benchmark
+    public HashSet<String> nearNeighbours1( Cursor cursor )
+    {
+        HashSet<String> ret = new HashSet<String>();
+        m_tst.nearNeighbours( ret, next( cursor ), 1 );
+        return ret;
+    }
+
+    @Benchmark
+    public HashSet<String> nearNeighbours2( Cursor cursor )
+    {
+        HashSet<String> ret = new HashSet<String>();
+        m_tst.nearNeighbours( ret, next( cursor ), 2 );
+        return ret;
+    }
+
+    @Benchmark
+    public HashSet<String> nearNeighbours3( Cursor cursor )
+    {
+        HashSet<String> ret = new HashSet<String>();
+        m_tst.nearNeighbours( ret, next( cursor ), 3 );
+        return ret;
+    }
+
+    @Benchmark
+    public HashSet<String> levenshteinNeighbours2( Cursor cursor )
+    {
+        HashSet<String> ret = new HashSet<String>();
+        m_tst.levenshteinNeighbours( ret, next( cursor ), 2 );
+        return ret;
+    }
+
+    @Benchmark
+    public HashSet<String> beginWith( Cursor cursor )
+    {
+        HashSet<String> ret = new HashSet<String>();
+        String q = next( cursor );
+        m_tst.beginWith( ret, q.substring( 0, Math.min( 3, q.length() ) ), 0 );
+        return ret;
+    }
+
+    @Benchmark
+    public HashSet<String> beginWith1( Cursor cursor )
+    {
+        HashSet<String> ret = new HashSet<String>();
+        String q = next( cursor );
+        m_tst.beginWith( ret, q.substring( 0, Math.min( 3, q.length() ) ), 1 );
+        return ret;
+    }
+
+    @Benchmark
+    public HashSet<String> nearSearchWithSuffix( Cursor cursor )
+    {
+        HashSet<String> ret = new HashSet<String>();
+        m_tst.nearSearchWithSuffix( ret, next( cursor ), 1 );
+        return ret;
+    }
+
+    @Benchmark
+    public List<String> topK( Cursor cursor )
+    {
+        String q = next( cursor );
+        return m_tst.topK( q.substring( 0, Math.min( 2, q.length() ) ), 10 );
+    }
+}
@@ -0,0 +1,222 @@
+package searchtool;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Memory and speed of the node stores on a multilingual dictionary: the
+ * English words plus German/French style spellings with diacritics, Greek
+ * and Cyrillic transliterations, derived from the given word list. Also
+ * indexes the words as UTF-8 bytes, one node per byte, for comparison,
+ * and checks that index() reads the corpus back from a UTF-8 file and
+ * case folds mixed case queries.
+ *
+ *      java -cp target/classes searchtool.AlphabetMemoryReport data/dic.txt
+ */
+public class AlphabetMemoryReport
+{
+    private static final String LATIN = "abcdefghijklmnopqrstuvwxyz";
+    private static final String GREEK = "\u03b1\u03b2\u03c8\u03b4\u03b5\u03c6\u03b3\u03b7\u03b9\u03be\u03ba\u03bb\u03bc\u03bd\u03bf\u03c0\u03b8\u03c1\u03c3\u03c4\u03c5\u03c9\u03c7\u03c2\u03c5\u03b6";
+    private static final String CYRILLIC = "\u0430\u0431\u0446\u0434\u0435\u0444\u0433\u0445\u0438\u0439\u043a\u043b\u043c\u043d\u043e\u043f\u044f\u0440\u0441\u0442\u0443\u0432\u0448\u0445\u044b\u0437";
+    private static final String ACCENTS = "a\u00e0\u00e2\u00e4e\u00e9\u00e8\u00ea\u00ebi\u00ee\u00efo\u00f4\u00f6u\u00f9\u00fb\u00fcy\u00ffc\u00e7n\u00f1s\u00df";
+
+    static public final void main( String args[] ) throws IOException
+    {
+        String fileName = args.length > 0 ? args[0] : TernarySearchTree.SOURCE_FILE_NAME;
+        List<String> english = new ArrayList<String>();
+        BufferedReader br = Files.newBufferedReader( new File( fileName ).toPath(), StandardCharsets.UTF_8 );
+        String line;
+        while( ( line = br.readLine() ) != null )
+        {
+            if( line.length() > 0 )
+            {
+                english.add( TSTFolding.fold( line ) );
+            }
+        }
+        br.close();
+
+        Random random = new Random( 7 );
+        HashSet<String> unique = new HashSet<String>();
+        for( String word : english )
+        {
+            unique.add( word );
+            unique.add( accented( word, random ) );
+            unique.add( transliterate( word, GREEK ) );
+            unique.add( transliterate( word, CYRILLIC ) );
+        }
+        List<String> corpus = new ArrayList<String>( unique );
+        List<String> queries = new ArrayList<String>();
+        for( int i = 0; i < 2000; i++ )
+        {
+            queries.add( corpus.get( random.nextInt( corpus.size() ) ) );
+        }
+        System.out.println( corpus.size() + " terms, " + alphabet( corpus ) + " distinct characters" );
+        System.out.println( String.format( "%-28s %9s %11s %10s %14s %14s", "store", "nodes", "node bytes",
+            "bytes/node", "contains ns", "levenshtein ns" ) );
+
+        int sink = 0;
+        sink += report( "ObjectNodeStore", new TernarySearchTree( new ObjectNodeStore() ), corpus, queries );
+        sink += report( "ArrayNodeStore", new TernarySearchTree( new ArrayNodeStore() ), corpus, queries );
+        sink += report( "AlphabetNodeStore", new TernarySearchTree( new AlphabetNodeStore() ), corpus, queries );
+
+        // one node per UTF-8 byte, the bytes carried as chars 0 .. 255
+        List<String> bytes = new ArrayList<String>( corpus.size() );
+        for( String term : corpus )
+        {
+            bytes.add( new String( term.getBytes( StandardCharsets.UTF_8 ), StandardCharsets.ISO_8859_1 ) );
+        }
+        List<String> byteQueries = new ArrayList<String>( queries.size() );
+        for( String query : queries )
+        {
+            byteQueries.add( new String( query.getBytes( StandardCharsets.UTF_8 ), StandardCharsets.ISO_8859_1 ) );
+        }
+        sink += report( "AlphabetNodeStore, UTF-8", new TernarySearchTree( new AlphabetNodeStore() ), bytes, byteQueries );
+
+        check( corpus );
+        System.out.println( "(" + sink + ")" );
+    }
+
+    private static int report( String name, TernarySearchTree tst, List<String> corpus, List<String> queries )
+    {
+        tst.bulkLoad( corpus );
+        TSTNodeStore nodes = tst.getNodes();
+        if( nodes instanceof ArrayNodeStore )
+        {
+            ( (ArrayNodeStore)nodes ).trimToSize();
+        }
+        else if( nodes instanceof AlphabetNodeStore )
+        {
+            ( (AlphabetNodeStore)nodes ).trimToSize();
+        }
+
+        long contains = Long.MAX_VALUE;
+        long levenshtein = Long.MAX_VALUE;
+        int sink = 0;
+        for( int round = 0; round < 5; round++ )
+        {
+            long t1 = System.nanoTime();
+            for( String q : queries )
+            {
+                sink += tst.contains( q ) ? 1 : 0;
+            }
+            long t2 = System.nanoTime();
+            for( String q : queries )
+            {
+                HashSet<String> ret = new HashSet<String>();
+                tst.levenshteinNeighbours( ret, q, 1 );
+                sink += ret.size();
+            }
+            long t3 = System.nanoTime();
+            contains = Math.min( contains, t2 - t1 );
+            levenshtein = Math.min( levenshtein, t3 - t2 );
+        }
+        System.out.println( String.format( "%-28s %9d %11d %10.1f %14d %14d", name, nodes.size(), nodes.memoryUsage(),
+            (double)nodes.memoryUsage() / nodes.size(), contains / queries.size(), levenshtein / queries.size() ) );
+        return sink;
+    }
+
+    /**
+     * Write the corpus in mixed case to a UTF-8 file, index() it and query
+     * it in another case.
+     */
+    private static void check( List<String> corpus ) throws IOException
+    {
+        Path file = Files.createTempFile( "multilingual", ".txt" );
+        try
+        {
+            BufferedWriter out = Files.newBufferedWriter( file, StandardCharsets.UTF_8 );
+            for( String term : corpus )
+            {
+                out.write( term.length() % 2 == 0 ? upper( term ) : term );
+                out.newLine();
+            }
+            out.close();
+
+            TernarySearchTree tst = new TernarySearchTree( new AlphabetNodeStore() );
+            tst.setMaxTerms( corpus.size() );
+            tst.index( file.toString() );
+            int missing = 0;
+            for( String term : corpus )
+            {
+                if( !tst.contains( term ) || !tst.contains( upper( term ) ) )
+                {
+                    missing++;
+                }
+            }
+            HashSet<String> ret = new HashSet<String>();
+            tst.beginWith( ret, upper( transliterate( "ab", GREEK ) ), 0 );
+            System.out.println( "UTF-8 index, mixed case queries: " + tst.size() + " terms, " + missing + " not found, "
+                + ret.size() + " beginning with Greek \"ab\"" );
+        }
+        finally
+        {
+            Files.delete( file );
+        }
+    }
+
+    /**
+     * Upper case one character at a time, String.toUpperCase() turns the
+     * sharp s into "SS".
+     */
+    private static String upper( String term )
+    {
+        char[] chars = term.toCharArray();
+        for( int i = 0; i < chars.length; i++ )
+        {
+            chars[i] = Character.toUpperCase( chars[i] );
+        }
+        return new String( chars );
+    }
+
+    private static String transliterate( String word, String alphabet )
+    {
+        char[] chars = word.toCharArray();
+        for( int i = 0; i < chars.length; i++ )
+        {
+            int at = LATIN.indexOf( chars[i] );
+            if( at >= 0 )
+            {
+                chars[i] = alphabet.charAt( at );
+            }
+        }
+        return new String( chars );
+    }
+
+    private static String accented( String word, Random random )
+    {
+        char[] chars = word.toCharArray();
+        for( int i = 0; i < chars.length; i++ )
+        {
+            int at = ACCENTS.indexOf( chars[i] );
+            if( at >= 0 && random.nextInt( 3 ) == 0 )
+            {
+                // the accented forms follow their base letter
+                int next = at + 1;
+                if( next < ACCENTS.length() && LATIN.indexOf( ACCENTS.charAt( next ) ) < 0 )
+                {
+                    chars[i] = ACCENTS.charAt( next );
+                }
+            }
+        }
+        return new String( chars );
+    }
+
+    private static int alphabet( List<String> corpus )
+    {
+        HashSet<Character> chars = new HashSet<Character>();
+        for( String term : corpus )
+        {
+            for( int i = 0; i < term.length(); i++ )
+            {
+                chars.add( term.charAt( i ) );
+            }
+        }
+        return chars.size();
+    }
+}
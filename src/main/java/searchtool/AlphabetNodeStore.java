@@ -0,0 +1,250 @@
+package searchtool;
+
+import java.util.Arrays;
+
+/**
+ * ArrayNodeStore with the node values encoded over the dictionary's own
+ * alphabet: each distinct character gets a dense one byte code on first
+ * use, so a node costs 21 bytes instead of 22 and the value array, read
+ * on every step of a walk, takes half the cache lines.
+ *
+ * Up to 256 distinct characters are encoded, which covers a dictionary
+ * mixing several Latin, Greek and Cyrillic languages. The 257th character
+ * switches the store to plain 2 byte values, so any input stays correct.
+ * Refs are limited to the int range.
+ */
+public class AlphabetNodeStore implements TSTNodeStore
+{
+    private static final int CODES = 256;
+
+    // one byte code per node, null once the store holds plain values
+    private byte[] m_code;
+    private char[] m_value;
+    private int[] m_left;
+    private int[] m_middle;
+    private int[] m_right;
+    private int[] m_ref;
+    private int[] m_weight;
+    private int m_size = 0;
+
+    // code -> character, and character -> code + 1 in pages of 256
+    // characters allocated on first use, 0 for a character without code
+    private final char[] m_alphabet = new char[ CODES ];
+    private final short[][] m_codes = new short[ 256 ][];
+    private int m_alphabetSize = 0;
+
+    public AlphabetNodeStore()
+    {
+        this( 1024 );
+    }
+
+    public AlphabetNodeStore( int capacity )
+    {
+        m_code = new byte[ 0 ];
+        allocate( Math.max( capacity, 16 ) );
+    }
+
+    private void allocate( int capacity )
+    {
+        if( m_code != null )
+        {
+            m_code = Arrays.copyOf( m_code, capacity );
+        }
+        else
+        {
+            m_value = Arrays.copyOf( m_value, capacity );
+        }
+        m_left = Arrays.copyOf( m_left == null ? new int[ 0 ] : m_left, capacity );
+        m_middle = Arrays.copyOf( m_middle == null ? new int[ 0 ] : m_middle, capacity );
+        m_right = Arrays.copyOf( m_right == null ? new int[ 0 ] : m_right, capacity );
+        m_ref = Arrays.copyOf( m_ref == null ? new int[ 0 ] : m_ref, capacity );
+        m_weight = Arrays.copyOf( m_weight == null ? new int[ 0 ] : m_weight, capacity );
+    }
+
+    /**
+     * @return the code of ch, a new one if needed, -1 if the alphabet is full.
+     */
+    private int encode( char ch )
+    {
+        short[] page = m_codes[ ch >>> 8 ];
+        if( page != null && page[ ch & 0xFF ] != 0 )
+        {
+            return page[ ch & 0xFF ] - 1;
+        }
+        if( m_alphabetSize == CODES )
+        {
+            return -1;
+        }
+        if( page == null )
+        {
+            page = new short[ 256 ];
+            m_codes[ ch >>> 8 ] = page;
+        }
+        int code = m_alphabetSize++;
+        m_alphabet[ code ] = ch;
+        page[ ch & 0xFF ] = (short)( code + 1 );
+        return code;
+    }
+
+    /**
+     * Switch to plain values, the old code array stays valid for readers
+     * which still hold it.
+     */
+    private void widen()
+    {
+        byte[] code = m_code;
+        char[] value = new char[ code.length ];
+        for( int i = 0; i < m_size; i++ )
+        {
+            value[i] = m_alphabet[ code[i] & 0xFF ];
+        }
+        m_value = value;
+        m_code = null;
+    }
+
+    public int newNode( char ch )
+    {
+        int code = -1;
+        if( m_code != null )
+        {
+            code = encode( ch );
+            if( code < 0 )
+            {
+                widen();
+            }
+        }
+        int capacity = m_code != null ? m_code.length : m_value.length;
+        if( m_size == capacity )
+        {
+            allocate( m_size + ( m_size >> 1 ) );
+        }
+        int node = m_size++;
+        if( m_code != null )
+        {
+            m_code[ node ] = (byte)code;
+        }
+        else
+        {
+            m_value[ node ] = ch;
+        }
+        m_left[ node ] = NULL;
+        m_middle[ node ] = NULL;
+        m_right[ node ] = NULL;
+        m_ref[ node ] = -1;
+        m_weight[ node ] = 0;
+        return node;
+    }
+
+    public char value( int node )
+    {
+        byte[] code = m_code;
+        return code != null ? m_alphabet[ code[ node ] & 0xFF ] : m_value[ node ];
+    }
+
+    /**
+     * @return number of distinct characters seen.
+     */
+    public int alphabetSize()
+    {
+        return m_code != null ? m_alphabetSize : -1;
+    }
+
+    /**
+     * @return true while the values are stored as one byte codes.
+     */
+    public boolean isEncoded()
+    {
+        return m_code != null;
+    }
+
+    public long getRef( int node )
+    {
+        return m_ref[ node ];
+    }
+
+    public void setComplete( int node, long ref )
+    {
+        if( ref > Integer.MAX_VALUE || ref < -1 )
+        {
+            throw new IllegalArgumentException( "ref out of int range: " + ref );
+        }
+        m_ref[ node ] = (int)ref;
+    }
+
+    public int getWeight( int node )
+    {
+        return m_weight[ node ];
+    }
+
+    public void setWeight( int node, int weight )
+    {
+        m_weight[ node ] = weight;
+    }
+
+    public int getLeft( int node )
+    {
+        return m_left[ node ];
+    }
+
+    public int getMiddle( int node )
+    {
+        return m_middle[ node ];
+    }
+
+    public int getRight( int node )
+    {
+        return m_right[ node ];
+    }
+
+    public void setLeft( int node, int child )
+    {
+        m_left[ node ] = child;
+    }
+
+    public void setMiddle( int node, int child )
+    {
+        m_middle[ node ] = child;
+    }
+
+    public void setRight( int node, int child )
+    {
+        m_right[ node ] = child;
+    }
+
+    public int size()
+    {
+        return m_size;
+    }
+
+    /**
+     * Release the unused tail of the arrays once the tree is built.
+     */
+    public void trimToSize()
+    {
+        if( m_size < m_left.length )
+        {
+            allocate( Math.max( m_size, 16 ) );
+        }
+    }
+
+    public long memoryUsage()
+    {
+        // 6 arrays with 16 byte headers, 21 or 22 bytes per slot, the
+        // alphabet and its pages
+        long bytes = 6L * 16 + ( m_code != null ? 21L : 22L ) * m_left.length;
+        bytes += 16 + 2L * CODES + 16 + 4L * m_codes.length;
+        for( short[] page : m_codes )
+        {
+            if( page != null )
+            {
+                bytes += 16 + 2L * page.length;
+            }
+        }
+        return bytes;
+    }
+
+    public TSTNode getNode( int node )
+    {
+        return node == NULL ? null : new StoredTSTNode( this, node );
+    }
+}
@@ -0,0 +1,144 @@
+package searchtool;
+
+import java.util.Arrays;
+
+/**
+ * Compact node store backed by parallel primitive arrays.
+ *
+ * A node costs 22 bytes (3 int child handles, a char value, an int ref and
+ * an int weight) instead of a 48 byte TernarySearchNode, and walking the
+ * tree reads neighbouring array slots instead of chasing object
+ * references. Refs are limited to the int range.
+ */
+public class ArrayNodeStore implements TSTNodeStore
+{
+    private char[] m_value;
+    private int[] m_left;
+    private int[] m_middle;
+    private int[] m_right;
+    private int[] m_ref;
+    private int[] m_weight;
+    private int m_size = 0;
+
+    public ArrayNodeStore()
+    {
+        this( 1024 );
+    }
+
+    public ArrayNodeStore( int capacity )
+    {
+        allocate( Math.max( capacity, 16 ) );
+    }
+
+    private void allocate( int capacity )
+    {
+        m_value = Arrays.copyOf( m_value == null ? new char[ 0 ] : m_value, capacity );
+        m_left = Arrays.copyOf( m_left == null ? new int[ 0 ] : m_left, capacity );
+        m_middle = Arrays.copyOf( m_middle == null ? new int[ 0 ] : m_middle, capacity );
+        m_right = Arrays.copyOf( m_right == null ? new int[ 0 ] : m_right, capacity );
+        m_ref = Arrays.copyOf( m_ref == null ? new int[ 0 ] : m_ref, capacity );
+        m_weight = Arrays.copyOf( m_weight == null ? new int[ 0 ] : m_weight, capacity );
+    }
+
+    public int newNode( char ch )
+    {
+        if( m_size == m_value.length )
+        {
+            allocate( m_size + ( m_size >> 1 ) );
+        }
+        int node = m_size++;
+        m_value[ node ] = ch;
+        m_left[ node ] = NULL;
+        m_middle[ node ] = NULL;
+        m_right[ node ] = NULL;
+        m_ref[ node ] = -1;
+        m_weight[ node ] = 0;
+        return node;
+    }
+
+    public char value( int node )
+    {
+        return m_value[ node ];
+    }
+
+    public long getRef( int node )
+    {
+        return m_ref[ node ];
+    }
+
+    public void setComplete( int node, long ref )
+    {
+        if( ref > Integer.MAX_VALUE || ref < -1 )
+        {
+            throw new IllegalArgumentException( "ref out of int range: " + ref );
+        }
+        m_ref[ node ] = (int)ref;
+    }
+
+    public int getWeight( int node )
+    {
+        return m_weight[ node ];
+    }
+
+    public void setWeight( int node, int weight )
+    {
+        m_weight[ node ] = weight;
+    }
+
+    public int getLeft( int node )
+    {
+        return m_left[ node ];
+    }
+
+    public int getMiddle( int node )
+    {
+        return m_middle[ node ];
+    }
+
+    public int getRight( int node )
+    {
+        return m_right[ node ];
+    }
+
+    public void setLeft( int node, int child )
+    {
+        m_left[ node ] = child;
+    }
+
+    public void setMiddle( int node, int child )
+    {
+        m_middle[ node ] = child;
+    }
+
+    public void setRight( int node, int child )
+    {
+        m_right[ node ] = child;
+    }
+
+    public int size()
+    {
+        return m_size;
+    }
+
+    /**
+     * Release the unused tail of the arrays once the tree is built.
+     */
+    public void trimToSize()
+    {
+        if( m_size < m_value.length )
+        {
+            allocate( Math.max( m_size, 16 ) );
+        }
+    }
+
+    public long memoryUsage()
+    {
+        // 6 arrays with 16 byte headers, 22 bytes per slot
+        return 6L * 16 + 22L * m_value.length;
+    }
+
+    public TSTNode getNode( int node )
+    {
+        return node == NULL ? null : new StoredTSTNode( this, node );
+    }
+}
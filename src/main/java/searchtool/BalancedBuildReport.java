@@ -0,0 +1,52 @@
+package searchtool;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compare the tree built by adding a sorted dictionary in file order with
+ * the balanced bulkLoad() build: height and contains() cost for every
+ * term.
+ *
+ *      java -cp target/classes searchtool.BalancedBuildReport data/dic.txt
+ */
+public class BalancedBuildReport
+{
+    private static void report( String name, boolean balanced, String fileName, List<String> terms )
+    {
+        TernarySearchTree tst = new TernarySearchTree( new ArrayNodeStore() );
+        tst.setBalancedIndex( balanced );
+        tst.index( fileName );
+        tst.setMetrics( new TSTMetricsRecorder() );
+        long t1 = System.nanoTime();
+        for( String term : terms )
+        {
+            tst.contains( term );
+        }
+        long t2 = System.nanoTime();
+
+        System.out.println( name );
+        System.out.println( "  nodes  : " + tst.getTotalNodes() );
+        System.out.println( "  height : " + tst.height() );
+        System.out.println( "  contains ns/term : " + ( t2 - t1 ) / Math.max( terms.size(), 1 ) );
+        tst.print();
+        System.out.println();
+    }
+
+    static public final void main( String args[] ) throws IOException
+    {
+        String fileName = args.length > 0 ? args[0] : TernarySearchTree.SOURCE_FILE_NAME;
+        List<String> terms = new ArrayList<String>();
+        BufferedReader br = new BufferedReader( new FileReader( fileName ) );
+        String line;
+        while( ( line = br.readLine() ) != null )
+        {
+            terms.add( line.toLowerCase() );
+        }
+        br.close();
+
+        report( "File order", false, fileName, terms );
+        report( "Balanced", true, fileName, terms );
+    }
+}
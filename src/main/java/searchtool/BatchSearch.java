@@ -0,0 +1,242 @@
+package searchtool;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * One chunk of TernarySearchTree.searchBatch(): the Levenshtein neighbours
+ * of a run of sorted, distinct queries.
+ *
+ * The queries are put in a trie of their own and walked together with the
+ * tree, so the states of a prefix shared by many queries are expanded
+ * once. A state ( node, query node, distance ) pairs the tree prefix ending
+ * at node with a query prefix and the edits left; it moves on by
+ *   a match or substitution   tree child, query child
+ *   an insertion              tree child, same query node, distance - 1
+ *   a deletion                same node, query child, distance - 1
+ * A state is skipped when the same pair was already expanded with at least
+ * as many edits left.
+ */
+final class BatchSearch extends RecursiveAction
+{
+    private static final long serialVersionUID = 1L;
+
+    private final TernarySearchTree m_tree;
+    private final TSTNodeStore m_nodes;
+    private final int m_root;
+    private final String[] m_queries;
+    private final int m_from;
+    private final int m_to;
+    private final int m_distance;
+    private final HashSet<String>[] m_results;
+    private int m_expanded;
+
+    // query trie, node 0 is the empty prefix
+    private char[] m_char;
+    private int[] m_firstChild;
+    private int[] m_nextSibling;
+    private int[] m_query;
+    private int m_trieSize;
+
+    /**
+     * @param results results[i] receives the neighbours of queries[i]
+     */
+    BatchSearch( TernarySearchTree tree, String[] queries, int from, int to, int distance, HashSet<String>[] results )
+    {
+        m_tree = tree;
+        m_nodes = tree.getNodes();
+        m_root = tree.getRootHandle();
+        m_queries = queries;
+        m_from = from;
+        m_to = to;
+        m_distance = distance;
+        m_results = results;
+    }
+
+    protected void compute()
+    {
+        buildTrie();
+        walk();
+    }
+
+    /**
+     * @return number of states expanded by the walk.
+     */
+    int expanded()
+    {
+        return m_expanded;
+    }
+
+    /**
+     * Build the trie of the sorted queries, each query only adds the
+     * nodes below its common prefix with the previous one.
+     */
+    private void buildTrie()
+    {
+        int capacity = 16;
+        for( int i = m_from; i < m_to; i++ )
+        {
+            capacity += m_queries[i].length();
+        }
+        m_char = new char[ capacity ];
+        m_firstChild = new int[ capacity ];
+        m_nextSibling = new int[ capacity ];
+        m_query = new int[ capacity ];
+        Arrays.fill( m_firstChild, -1 );
+        Arrays.fill( m_nextSibling, -1 );
+        Arrays.fill( m_query, -1 );
+        m_trieSize = 1;
+
+        // path[k] is the trie node of the first k characters of the previous query
+        int[] path = new int[ 16 ];
+        String previous = "";
+        for( int i = m_from; i < m_to; i++ )
+        {
+            String query = m_queries[i];
+            int common = 0;
+            while( common < query.length() && common < previous.length() && query.charAt( common ) == previous.charAt( common ) )
+            {
+                common++;
+            }
+            if( query.length() + 1 > path.length )
+            {
+                path = Arrays.copyOf( path, Math.max( query.length() + 1, 2 * path.length ) );
+            }
+            for( int k = common; k < query.length(); k++ )
+            {
+                int node = m_trieSize++;
+                m_char[node] = query.charAt( k );
+                // sorted input, so a new child always comes after its siblings;
+                // prepending keeps the build linear, the order doesn't matter
+                m_nextSibling[node] = m_firstChild[ path[k] ];
+                m_firstChild[ path[k] ] = node;
+                path[ k + 1 ] = node;
+            }
+            m_query[ path[ query.length() ] ] = i;
+            previous = query;
+        }
+    }
+
+    private void walk()
+    {
+        LongHashSet expanded = new LongHashSet();
+        int[] siblings = new int[ 64 ];
+        SearchStack stack = SearchStack.acquire();
+        try
+        {
+            stack.push( TSTNodeStore.NULL, 0, m_distance );
+            while( !stack.isEmpty() )
+            {
+                stack.pop();
+                int node = stack.node();
+                int q = stack.offset();
+                int distance = stack.distance();
+
+                if( dominated( expanded, node, q, distance ) )
+                {
+                    continue;
+                }
+                expanded.add( key( node, q, distance ) );
+                m_expanded++;
+
+                if( m_query[q] != -1 && node != TSTNodeStore.NULL && m_nodes.getRef( node ) != -1 )
+                {
+                    m_results[ m_query[q] ].add( m_tree.getTerm( m_nodes.getRef( node ) ) );
+                }
+
+                int children = node == TSTNodeStore.NULL ? m_root : m_nodes.getMiddle( node );
+                if( distance == 0 )
+                {
+                    // only matches left, binary search the tree children
+                    for( int qc = m_firstChild[q]; qc != -1; qc = m_nextSibling[qc] )
+                    {
+                        int child = find( children, m_char[qc] );
+                        if( child != TSTNodeStore.NULL )
+                        {
+                            stack.push( child, qc, 0 );
+                        }
+                    }
+                    continue;
+                }
+
+                for( int qc = m_firstChild[q]; qc != -1; qc = m_nextSibling[qc] )
+                {
+                    stack.push( node, qc, distance - 1 );
+                }
+
+                // every tree child, walking the left/right links
+                int top = 0;
+                if( children != TSTNodeStore.NULL )
+                {
+                    siblings[ top++ ] = children;
+                }
+                while( top > 0 )
+                {
+                    int child = siblings[ --top ];
+                    if( top + 2 > siblings.length )
+                    {
+                        siblings = Arrays.copyOf( siblings, siblings.length * 2 );
+                    }
+                    if( m_nodes.getLeft( child ) != TSTNodeStore.NULL )
+                    {
+                        siblings[ top++ ] = m_nodes.getLeft( child );
+                    }
+                    if( m_nodes.getRight( child ) != TSTNodeStore.NULL )
+                    {
+                        siblings[ top++ ] = m_nodes.getRight( child );
+                    }
+
+                    stack.push( child, q, distance - 1 );
+                    char value = m_nodes.value( child );
+                    for( int qc = m_firstChild[q]; qc != -1; qc = m_nextSibling[qc] )
+                    {
+                        stack.push( child, qc, m_char[qc] == value ? distance : distance - 1 );
+                    }
+                }
+            }
+        }
+        finally
+        {
+            SearchStack.release( stack );
+        }
+    }
+
+    private boolean dominated( LongHashSet expanded, int node, int q, int distance )
+    {
+        for( int d = distance; d <= m_distance; d++ )
+        {
+            if( expanded.contains( key( node, q, d ) ) )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long key( int node, int q, int distance )
+    {
+        return ( (long)( node + 1 ) << 32 ) | ( (long)q << 4 ) | distance;
+    }
+
+    private int find( int cur, char ch )
+    {
+        while( cur != TSTNodeStore.NULL )
+        {
+            char value = m_nodes.value( cur );
+            if( value > ch )
+            {
+                cur = m_nodes.getLeft( cur );
+            }
+            else if( value < ch )
+            {
+                cur = m_nodes.getRight( cur );
+            }
+            else
+            {
+                break;
+            }
+        }
+        return cur;
+    }
+}
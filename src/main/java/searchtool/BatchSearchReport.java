@@ -0,0 +1,91 @@
+package searchtool;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Spell check style workload: a batch of dictionary tokens, every other one
+ * with a typo. Prints the queries per second of one levenshteinNeighbours()
+ * per distinct token against searchBatch() on one thread and on the common
+ * pool, and checks that the results are equal.
+ *
+ *      java -cp target/classes searchtool.BatchSearchReport data/dic.txt 50000
+ */
+public class BatchSearchReport
+{
+    static public final void main( String args[] ) throws IOException
+    {
+        String fileName = args.length > 0 ? args[0] : TernarySearchTree.SOURCE_FILE_NAME;
+        int batch = args.length > 1 ? Integer.parseInt( args[1] ) : 50000;
+        List<String> terms = new ArrayList<String>();
+        BufferedReader br = new BufferedReader( new FileReader( fileName ) );
+        String line;
+        while( ( line = br.readLine() ) != null )
+        {
+            if( line.length() > 0 )
+            {
+                terms.add( line.toLowerCase() );
+            }
+        }
+        br.close();
+
+        TernarySearchTree tst = new TernarySearchTree( new ArrayNodeStore() );
+        tst.bulkLoad( terms );
+
+        Random random = new Random( 4 );
+        List<String> queries = new ArrayList<String>( batch );
+        for( int i = 0; i < batch; i++ )
+        {
+            String term = terms.get( random.nextInt( terms.size() ) );
+            if( i % 2 == 0 && term.length() > 2 )
+            {
+                int at = random.nextInt( term.length() );
+                term = term.substring( 0, at ) + (char)( 'a' + random.nextInt( 26 ) ) + term.substring( at + 1 );
+            }
+            queries.add( term );
+        }
+        HashSet<String> distinct = new HashSet<String>( queries );
+        System.out.println( batch + " tokens, " + distinct.size() + " distinct, "
+            + ForkJoinPool.commonPool().getParallelism() + " pool threads, queries per second" );
+
+        for( int distance = 1; distance <= 2; distance++ )
+        {
+            long single = 0;
+            long batched = 0;
+            long pooled = 0;
+            boolean same = true;
+            for( int round = 0; round < 3; round++ )
+            {
+                long t1 = System.nanoTime();
+                Map<String, Set<String>> expected = new HashMap<String, Set<String>>();
+                for( String query : distinct )
+                {
+                    HashSet<String> ret = new HashSet<String>();
+                    tst.levenshteinNeighbours( ret, query, distance );
+                    expected.put( query, ret );
+                }
+                long t2 = System.nanoTime();
+                Map<String, Set<String>> got = tst.searchBatch( queries, distance, null );
+                long t3 = System.nanoTime();
+                Map<String, Set<String>> gotPooled = tst.searchBatch( queries, distance );
+                long t4 = System.nanoTime();
+                same &= got.equals( expected ) && gotPooled.equals( expected );
+                single = t2 - t1;
+                batched = t3 - t2;
+                pooled = t4 - t3;
+            }
+            System.out.println( "distance " + distance );
+            System.out.println( "  levenshteinNeighbours : " + distinct.size() * 1000000000L / single );
+            System.out.println( "  searchBatch, 1 thread : " + distinct.size() * 1000000000L / batched );
+            System.out.println( "  searchBatch, pool     : " + distinct.size() * 1000000000L / pooled );
+            System.out.println( "  " + ( same ? "same results" : "DIFFERENT RESULTS" ) );
+        }
+    }
+}
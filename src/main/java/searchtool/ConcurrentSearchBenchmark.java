@@ -0,0 +1,92 @@
+package searchtool;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Multithreaded throughput check for the lock-free read path. Expected
+ * results are computed single threaded first, then every thread searches
+ * the shared tree and compares each result with the expected one.
+ *
+ *      java -cp target/classes searchtool.ConcurrentSearchBenchmark data/dic.txt [threads] [seconds]
+ */
+public class ConcurrentSearchBenchmark
+{
+    private static final String[] QUERIES = { "about", "abot", "computer", "teh", "hel", "zebra", "xq", "new", "ba" };
+
+    static public final void main( String args[] ) throws Exception
+    {
+        String fileName = args.length > 0 ? args[0] : TernarySearchTree.SOURCE_FILE_NAME;
+        int threads = args.length > 1 ? Integer.parseInt( args[1] ) : Runtime.getRuntime().availableProcessors();
+        int seconds = args.length > 2 ? Integer.parseInt( args[2] ) : 5;
+
+        final TernarySearchTree tst = new TernarySearchTree( new ArrayNodeStore() );
+        tst.index( fileName );
+        tst.setMetrics( new TSTMetricsRecorder() );
+
+        final int distances = 3;
+        final List<HashSet<String>> expected = new ArrayList<HashSet<String>>();
+        final boolean[] expectedContains = new boolean[ QUERIES.length ];
+        for( int i = 0; i < QUERIES.length; i++ )
+        {
+            expectedContains[i] = tst.contains( QUERIES[i] );
+            for( int d = 0; d < distances; d++ )
+            {
+                HashSet<String> ret = new HashSet<String>();
+                tst.nearNeighbours( ret, QUERIES[i], d );
+                expected.add( ret );
+            }
+        }
+
+        final LongAdder searches = new LongAdder();
+        final LongAdder mismatches = new LongAdder();
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos( seconds );
+        ExecutorService pool = Executors.newFixedThreadPool( threads );
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        for( int t = 0; t < threads; t++ )
+        {
+            final int start = t;
+            futures.add( pool.submit( new Runnable()
+            {
+                public void run()
+                {
+                    int n = start;
+                    while( System.nanoTime() < deadline )
+                    {
+                        int q = n % QUERIES.length;
+                        int d = ( n / QUERIES.length ) % distances;
+                        HashSet<String> ret = new HashSet<String>();
+                        tst.nearNeighbours( ret, QUERIES[q], d );
+                        if( !ret.equals( expected.get( q * distances + d ) ) )
+                        {
+                            mismatches.increment();
+                        }
+                        if( tst.contains( QUERIES[q] ) != expectedContains[q] )
+                        {
+                            mismatches.increment();
+                        }
+                        searches.add( 2 );
+                        n++;
+                    }
+                }
+            } ) );
+        }
+        for( Future<?> f : futures )
+        {
+            f.get();
+        }
+        pool.shutdown();
+
+        System.out.println( "threads    : " + threads );
+        System.out.println( "searches/s : " + searches.sum() / seconds );
+        System.out.println( "mismatches : " + mismatches.sum() );
+        tst.print();
+        if( mismatches.sum() > 0 )
+        {
+            System.exit( 1 );
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package searchtool;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compact the dictionary into a DawgTernarySearchTree and print the node
+ * count, the memory and the ns per contains(), prefix and Levenshtein
+ * query next to the TernarySearchTree on the array store it came from.
+ * Checks that both return the same words and that every word's ref maps
+ * back to it.
+ *
+ *      java -cp target/classes searchtool.DawgReport data/dic.txt
+ */
+public class DawgReport
+{
+    private static final int ROUNDS = 5;
+
+    static public final void main( String args[] ) throws IOException
+    {
+        String fileName = args.length > 0 ? args[0] : TernarySearchTree.SOURCE_FILE_NAME;
+        TernarySearchTree tst = new TernarySearchTree( new ArrayNodeStore() );
+        tst.setBalancedIndex( true );
+        tst.index( fileName );
+        ( (ArrayNodeStore)tst.getNodes() ).trimToSize();
+
+        long t0 = System.nanoTime();
+        DawgTernarySearchTree dawg = tst.compact();
+        long buildNanos = System.nanoTime() - t0;
+
+        List<String> terms = new ArrayList<String>();
+        HashSet<String> all = new HashSet<String>();
+        PrefixCursor everything = tst.prefixCursor( 0 );
+        everything.results( all );
+        terms.addAll( all );
+
+        int bad = dawg.size() == tst.size() ? 0 : 1;
+        HashSet<Integer> refs = new HashSet<Integer>();
+        for( String term : terms )
+        {
+            int ref = dawg.indexOf( term );
+            bad += ref >= 0 && term.equals( dawg.getTerm( ref ) ) && refs.add( ref ) ? 0 : 1;
+        }
+        bad += refs.size() == dawg.size() ? 0 : 1;
+
+        Random random = new Random( 22 );
+        List<String> queries = new ArrayList<String>();
+        for( int i = 0; i < 5000; i++ )
+        {
+            String term = terms.get( random.nextInt( terms.size() ) );
+            if( i % 2 == 0 && term.length() > 2 )
+            {
+                int at = random.nextInt( term.length() );
+                term = term.substring( 0, at ) + (char)( 'a' + random.nextInt( 26 ) ) + term.substring( at + 1 );
+            }
+            queries.add( term );
+        }
+
+        for( String q : queries )
+        {
+            if( tst.contains( q ) != dawg.contains( q ) )
+            {
+                bad++;
+            }
+            for( int d = 0; d <= 1; d++ )
+            {
+                HashSet<String> expected = new HashSet<String>();
+                HashSet<String> got = new HashSet<String>();
+                tst.levenshteinNeighbours( expected, q, d );
+                dawg.levenshteinNeighbours( got, q, d );
+                bad += expected.equals( got ) ? 0 : 1;
+
+                String prefix = q.substring( 0, Math.min( 3, q.length() ) );
+                PrefixCursor cursor = tst.prefixCursor( d );
+                cursor.push( prefix );
+                expected = new HashSet<String>();
+                got = new HashSet<String>();
+                cursor.results( expected );
+                dawg.beginWith( got, prefix, d );
+                bad += expected.equals( got ) ? 0 : 1;
+            }
+        }
+
+        long[] tstTimes = new long[3];
+        long[] dawgTimes = new long[3];
+        int sink = 0;
+        for( int round = 0; round < ROUNDS; round++ )
+        {
+            boolean measure = round > 0;
+            for( int i = 0; i < 2; i++ )
+            {
+                boolean compact = ( i + round ) % 2 == 0;
+                long t1 = System.nanoTime();
+                for( String q : queries )
+                {
+                    sink += ( compact ? dawg.contains( q ) : tst.contains( q ) ) ? 1 : 0;
+                }
+                long t2 = System.nanoTime();
+                for( String q : queries )
+                {
+                    HashSet<String> ret = new HashSet<String>();
+                    String prefix = q.substring( 0, Math.min( 4, q.length() ) );
+                    if( compact )
+                    {
+                        dawg.beginWith( ret, prefix, 0 );
+                    }
+                    else
+                    {
+                        PrefixCursor cursor = tst.prefixCursor( 0 );
+                        cursor.push( prefix );
+                        cursor.results( ret );
+                    }
+                    sink += ret.size();
+                }
+                long t3 = System.nanoTime();
+                for( String q : queries )
+                {
+                    HashSet<String> ret = new HashSet<String>();
+                    if( compact )
+                    {
+                        dawg.levenshteinNeighbours( ret, q, 1 );
+                    }
+                    else
+                    {
+                        tst.levenshteinNeighbours( ret, q, 1 );
+                    }
+                    sink += ret.size();
+                }
+                long t4 = System.nanoTime();
+                if( measure )
+                {
+                    long[] times = compact ? dawgTimes : tstTimes;
+                    times[0] += t2 - t1;
+                    times[1] += t3 - t2;
+                    times[2] += t4 - t3;
+                }
+            }
+        }
+
+        long n = (long)queries.size() * ( ROUNDS - 1 );
+        System.out.println( tst.size() + " terms, " + queries.size() + " queries, half with a typo, compact() took "
+            + buildNanos / 1000000 + " ms" );
+        System.out.println( String.format( "%-24s %10s %10s %12s %12s %14s", "tree", "nodes", "bytes",
+            "contains ns", "prefix ns", "levenshtein ns" ) );
+        System.out.println( String.format( "%-24s %10d %10d %12d %12d %14d", "TernarySearchTree", tst.getTotalNodes(),
+            tst.memoryUsage(), tstTimes[0] / n, tstTimes[1] / n, tstTimes[2] / n ) );
+        System.out.println( String.format( "%-24s %10d %10d %12d %12d %14d", "DawgTernarySearchTree",
+            dawg.getTotalNodes(), dawg.memoryUsage(), dawgTimes[0] / n, dawgTimes[1] / n, dawgTimes[2] / n ) );
+        System.out.println( String.format( "nodes -%.1f%%, memory %.1fx smaller", 100.0 - 100.0 * dawg.getTotalNodes()
+            / tst.getTotalNodes(), (double)tst.memoryUsage() / dawg.memoryUsage() ) );
+        System.out.println( bad == 0 ? "same results" : bad + " DIFFERENT RESULTS" );
+        System.out.println( "(" + sink + ")" );
+    }
+}
@@ -0,0 +1,625 @@
+package searchtool;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+
+/**
+ * Read-only ternary search tree which shares suffixes as well as prefixes:
+ * a minimized directed acyclic word graph in ternary form, built once from
+ * a vocabulary, e.g. with TernarySearchTree.compact() after index().
+ *
+ * The sorted words are added to a trie whose states are frozen as soon as
+ * the next word leaves them. A frozen state's transitions become a
+ * tree of sibling nodes split on the median word, and every node is interned on ( value,
+ * end of word, left, middle, right ): equal sets of suffixes, "-ing",
+ * "-tion", "-ness" and the like, end up as one shared subgraph.
+ *
+ * With nodes shared between words a node can't hold a ref. Instead each
+ * node counts the words in its subtree, siblings included, and a word's
+ * ref is its rank in sorted order, summed from the counts on its path
+ * (a minimal perfect hash): indexOf() maps a word to its ref, getTerm() a
+ * ref back to its word. Searches build the words from their path.
+ *
+ * Nodes take 18 bytes in parallel arrays and there is no term table.
+ * contains(), beginWith() and levenshteinNeighbours() work as in
+ * RadixTernarySearchTree; weights and the shape dependent searches are
+ * left to TernarySearchTree.
+ */
+public class DawgTernarySearchTree
+{
+    private char[] m_value;
+    private int[] m_left;
+    private int[] m_middle;
+    private int[] m_right;
+    // words in the subtree of a node, siblings included, times 2, plus 1
+    // if a word ends at the node
+    private int[] m_count;
+    private int m_nodes = 0;
+
+    private int m_root = TSTNodeStore.NULL;
+    private int m_size = 0;
+    private final boolean m_caseFolding;
+
+    // build state: interned nodes as node + 1, open addressing
+    private int[] m_table;
+
+    // build state: the transitions of the unfrozen trie states, level d
+    // holding stack[ m_levelStart[d] .. ) up to the next level
+    private char[] m_stackValue;
+    private boolean[] m_stackEnd;
+    private int[] m_stackMiddle;
+    private int m_top = 0;
+    private int[] m_levelStart;
+    private boolean[] m_levelEnd;
+
+    private DawgTernarySearchTree( boolean caseFolding )
+    {
+        m_caseFolding = caseFolding;
+        allocate( 1024 );
+        m_table = new int[ 2048 ];
+        m_stackValue = new char[ 64 ];
+        m_stackEnd = new boolean[ 64 ];
+        m_stackMiddle = new int[ 64 ];
+        m_levelStart = new int[ 64 ];
+        m_levelEnd = new boolean[ 64 ];
+    }
+
+    /**
+     * Build the graph of the terms, taken as they are.
+     * @param terms
+     * @return
+     */
+    public static DawgTernarySearchTree build( Collection<String> terms )
+    {
+        return build( terms, false );
+    }
+
+    /**
+     * Build the graph of the terms.
+     * @param terms
+     * @param caseFolding fold the terms and the queries, see
+     *                    TernarySearchTree.setCaseFolding()
+     * @return
+     */
+    public static DawgTernarySearchTree build( Collection<String> terms, boolean caseFolding )
+    {
+        String[] sorted = new String[ terms.size() ];
+        int n = 0;
+        for( String term : terms )
+        {
+            if( term != null && term.length() > 0 )
+            {
+                sorted[n++] = caseFolding ? TSTFolding.fold( term ) : term;
+            }
+        }
+        Arrays.sort( sorted, 0, n );
+
+        DawgTernarySearchTree dawg = new DawgTernarySearchTree( caseFolding );
+        String previous = "";
+        for( int i = 0; i < n; i++ )
+        {
+            if( !sorted[i].equals( previous ) )
+            {
+                dawg.append( previous, sorted[i] );
+                previous = sorted[i];
+            }
+        }
+        dawg.finish( previous );
+        return dawg;
+    }
+
+    /**
+     * Add the next word in sorted order: freeze the states of the previous
+     * word below the common prefix, open the states of the new one.
+     */
+    private void append( String previous, String term )
+    {
+        int common = 0;
+        int max = Math.min( previous.length(), term.length() );
+        while( common < max && previous.charAt( common ) == term.charAt( common ) )
+        {
+            common++;
+        }
+        for( int d = previous.length(); d > common; d-- )
+        {
+            freeze( d, previous.charAt( d - 1 ) );
+        }
+        if( term.length() + 1 > m_levelStart.length )
+        {
+            m_levelStart = Arrays.copyOf( m_levelStart, 2 * ( term.length() + 1 ) );
+            m_levelEnd = Arrays.copyOf( m_levelEnd, 2 * ( term.length() + 1 ) );
+        }
+        for( int d = common + 1; d <= term.length(); d++ )
+        {
+            m_levelStart[d] = m_top;
+            m_levelEnd[d] = false;
+        }
+        m_levelEnd[ term.length() ] = true;
+        m_size++;
+    }
+
+    private void finish( String last )
+    {
+        for( int d = last.length(); d > 0; d-- )
+        {
+            freeze( d, last.charAt( d - 1 ) );
+        }
+        m_root = siblings( 0, m_top );
+        m_top = 0;
+
+        // release the build state and the unused tail of the arrays
+        m_table = null;
+        m_stackValue = null;
+        m_stackEnd = null;
+        m_stackMiddle = null;
+        m_levelStart = null;
+        m_levelEnd = null;
+        allocate( Math.max( m_nodes, 16 ) );
+    }
+
+    /**
+     * Turn the state at depth d into nodes and add the transition to it,
+     * on ch, to its parent state.
+     */
+    private void freeze( int d, char ch )
+    {
+        int start = m_levelStart[d];
+        int middle = siblings( start, m_top );
+        m_top = start;
+        if( m_top == m_stackValue.length )
+        {
+            m_stackValue = Arrays.copyOf( m_stackValue, 2 * m_top );
+            m_stackEnd = Arrays.copyOf( m_stackEnd, 2 * m_top );
+            m_stackMiddle = Arrays.copyOf( m_stackMiddle, 2 * m_top );
+        }
+        m_stackValue[ m_top ] = ch;
+        m_stackEnd[ m_top ] = m_levelEnd[d];
+        m_stackMiddle[ m_top ] = middle;
+        m_top++;
+    }
+
+    /**
+     * Tree of the sorted transitions stack[ from .. to ) split on the
+     * median word, like bulkLoad(), so that busy transitions are near the
+     * top. The same transitions give the same shape, equal states intern
+     * to the same nodes.
+     * @return the root, NULL if there are none.
+     */
+    private int siblings( int from, int to )
+    {
+        if( from >= to )
+        {
+            return TSTNodeStore.NULL;
+        }
+        int total = 0;
+        for( int i = from; i < to; i++ )
+        {
+            total += stackWords( i );
+        }
+        int mid = from;
+        int below = stackWords( from );
+        while( 2 * below < total && mid < to - 1 )
+        {
+            below += stackWords( ++mid );
+        }
+        int left = siblings( from, mid );
+        int right = siblings( mid + 1, to );
+        return intern( m_stackValue[ mid ], m_stackEnd[ mid ], left, m_stackMiddle[ mid ], right );
+    }
+
+    private int stackWords( int i )
+    {
+        return ( m_stackEnd[i] ? 1 : 0 ) + words( m_stackMiddle[i] );
+    }
+
+    private int intern( char value, boolean end, int left, int middle, int right )
+    {
+        int mask = m_table.length - 1;
+        int hash = ( ( ( value * 31 + ( end ? 1 : 0 ) ) * 31 + left ) * 31 + middle ) * 31 + right;
+        int slot = ( hash ^ ( hash >>> 16 ) ) & mask;
+        while( m_table[ slot ] != 0 )
+        {
+            int node = m_table[ slot ] - 1;
+            if( m_value[ node ] == value && isEnd( node ) == end && m_left[ node ] == left
+                && m_middle[ node ] == middle && m_right[ node ] == right )
+            {
+                return node;
+            }
+            slot = ( slot + 1 ) & mask;
+        }
+
+        if( m_nodes == m_left.length )
+        {
+            allocate( m_nodes + ( m_nodes >> 1 ) );
+        }
+        int node = m_nodes++;
+        m_value[ node ] = value;
+        m_left[ node ] = left;
+        m_middle[ node ] = middle;
+        m_right[ node ] = right;
+        int words = words( left ) + ( end ? 1 : 0 ) + words( middle ) + words( right );
+        m_count[ node ] = words << 1 | ( end ? 1 : 0 );
+        m_table[ slot ] = node + 1;
+        if( 2 * m_nodes > m_table.length )
+        {
+            rehash();
+        }
+        return node;
+    }
+
+    private void rehash()
+    {
+        m_table = new int[ 2 * m_table.length ];
+        int mask = m_table.length - 1;
+        for( int node = 0; node < m_nodes; node++ )
+        {
+            int hash = ( ( ( m_value[ node ] * 31 + ( m_count[ node ] & 1 ) ) * 31 + m_left[ node ] ) * 31
+                + m_middle[ node ] ) * 31 + m_right[ node ];
+            int slot = ( hash ^ ( hash >>> 16 ) ) & mask;
+            while( m_table[ slot ] != 0 )
+            {
+                slot = ( slot + 1 ) & mask;
+            }
+            m_table[ slot ] = node + 1;
+        }
+    }
+
+    private void allocate( int capacity )
+    {
+        m_value = Arrays.copyOf( m_value == null ? new char[ 0 ] : m_value, capacity );
+        m_left = Arrays.copyOf( m_left == null ? new int[ 0 ] : m_left, capacity );
+        m_middle = Arrays.copyOf( m_middle == null ? new int[ 0 ] : m_middle, capacity );
+        m_right = Arrays.copyOf( m_right == null ? new int[ 0 ] : m_right, capacity );
+        m_count = Arrays.copyOf( m_count == null ? new int[ 0 ] : m_count, capacity );
+    }
+
+    private int words( int node )
+    {
+        return node == TSTNodeStore.NULL ? 0 : m_count[ node ] >>> 1;
+    }
+
+    private boolean isEnd( int node )
+    {
+        return ( m_count[ node ] & 1 ) != 0;
+    }
+
+    private String normalize( String word )
+    {
+        return m_caseFolding ? TSTFolding.fold( word ) : word;
+    }
+
+    /**
+     * @param term
+     * @return the ref of the term, its rank among the words in sorted
+     *         order, -1 if it isn't a word.
+     */
+    public int indexOf( String term )
+    {
+        term = normalize( term );
+        if( term == null || term.length() == 0 )
+        {
+            return -1;
+        }
+        int node = m_root;
+        int index = 0;
+        int i = 0;
+        while( node != TSTNodeStore.NULL )
+        {
+            char ch = term.charAt( i );
+            char value = m_value[ node ];
+            if( ch < value )
+            {
+                node = m_left[ node ];
+            }
+            else if( ch > value )
+            {
+                index += words( m_left[ node ] ) + ( m_count[ node ] & 1 ) + words( m_middle[ node ] );
+                node = m_right[ node ];
+            }
+            else
+            {
+                index += words( m_left[ node ] );
+                if( ++i == term.length() )
+                {
+                    return isEnd( node ) ? index : -1;
+                }
+                index += m_count[ node ] & 1;
+                node = m_middle[ node ];
+            }
+        }
+        return -1;
+    }
+
+    public boolean contains( String term )
+    {
+        term = normalize( term );
+        if( term == null || term.length() == 0 )
+        {
+            return false;
+        }
+        int node = m_root;
+        int i = 0;
+        char ch = term.charAt( 0 );
+        while( node != TSTNodeStore.NULL )
+        {
+            char value = m_value[ node ];
+            if( ch < value )
+            {
+                node = m_left[ node ];
+            }
+            else if( ch > value )
+            {
+                node = m_right[ node ];
+            }
+            else if( ++i == term.length() )
+            {
+                return isEnd( node );
+            }
+            else
+            {
+                ch = term.charAt( i );
+                node = m_middle[ node ];
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param ref
+     * @return the word with the ref, see indexOf(), null if there is none.
+     */
+    public String getTerm( int ref )
+    {
+        if( ref < 0 || ref >= m_size )
+        {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder();
+        int node = m_root;
+        int rank = ref;
+        while( node != TSTNodeStore.NULL )
+        {
+            int left = words( m_left[ node ] );
+            if( rank < left )
+            {
+                node = m_left[ node ];
+                continue;
+            }
+            rank -= left;
+            int end = m_count[ node ] & 1;
+            int middle = words( m_middle[ node ] );
+            if( rank < end + middle )
+            {
+                sb.append( m_value[ node ] );
+                if( rank < end )
+                {
+                    return sb.toString();
+                }
+                rank -= end;
+                node = m_middle[ node ];
+            }
+            else
+            {
+                rank -= end + middle;
+                node = m_right[ node ];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Words beginning with a prefix within the edit distance of the word,
+     * the PrefixCursor semantics. Distance 0 returns every word beginning
+     * with the word.
+     * @param ret
+     * @param word
+     * @param distance
+     */
+    public void beginWith( HashSet<String> ret, String word, int distance )
+    {
+        word = normalize( word );
+        if( word == null || distance < 0 )
+        {
+            return;
+        }
+        char[] path = new char[ word.length() + distance + 16 ];
+        if( distance == 0 )
+        {
+            if( word.length() == 0 )
+            {
+                collect( ret, m_root, path, 0 );
+                return;
+            }
+            // find the node of the last character of the word
+            int node = m_root;
+            int i = 0;
+            while( node != TSTNodeStore.NULL )
+            {
+                char ch = word.charAt( i );
+                if( ch < m_value[ node ] )
+                {
+                    node = m_left[ node ];
+                }
+                else if( ch > m_value[ node ] )
+                {
+                    node = m_right[ node ];
+                }
+                else if( ++i == word.length() )
+                {
+                    word.getChars( 0, i, path, 0 );
+                    if( isEnd( node ) )
+                    {
+                        ret.add( word );
+                    }
+                    collect( ret, m_middle[ node ], path, i );
+                    return;
+                }
+                else
+                {
+                    node = m_middle[ node ];
+                }
+            }
+            return;
+        }
+        walk( ret, word, distance, true );
+    }
+
+    /**
+     * All the words within the Levenshtein distance of the word, same
+     * result as TernarySearchTree.levenshteinNeighbours().
+     * @param ret
+     * @param word
+     * @param distance
+     */
+    public void levenshteinNeighbours( HashSet<String> ret, String word, int distance )
+    {
+        word = normalize( word );
+        if( word == null || distance < 0 )
+        {
+            return;
+        }
+        walk( ret, word, distance, false );
+    }
+
+    /**
+     * Depth first walk with one dynamic programming row per depth. The
+     * frames hold ( node, depth, 0 ) and path[ depth ] the node's value;
+     * the middle child is pushed last so its subtree is done before a
+     * sibling reuses the rows and the path below depth.
+     * @param prefix match the word against prefixes of the terms
+     */
+    private void walk( HashSet<String> ret, String word, int distance, boolean prefix )
+    {
+        int len = word.length();
+        int width = len + 1;
+        char[] path = new char[ len + distance + 16 ];
+        if( prefix && len <= distance )
+        {
+            collect( ret, m_root, path, 0 );
+            return;
+        }
+        int[] rows = new int[ ( len + distance + 2 ) * width ];
+        for( int j = 0; j < width; j++ )
+        {
+            rows[j] = j;
+        }
+        SearchStack stack = SearchStack.acquire();
+        try
+        {
+            push( stack, m_root, 0 );
+            while( !stack.isEmpty() )
+            {
+                stack.pop();
+                int node = stack.node();
+                int depth = stack.offset();
+                push( stack, m_right[ node ], depth );
+                push( stack, m_left[ node ], depth );
+
+                char ch = m_value[ node ];
+                path[ depth ] = ch;
+                int prev = depth * width;
+                int cur = prev + width;
+                rows[cur] = rows[prev] + 1;
+                int min = rows[cur];
+                for( int j = 1; j <= len; j++ )
+                {
+                    int d = Math.min( rows[cur + j - 1], rows[prev + j] ) + 1;
+                    int sub = rows[prev + j - 1] + ( word.charAt( j - 1 ) == ch ? 0 : 1 );
+                    rows[cur + j] = Math.min( d, sub );
+                    min = Math.min( min, rows[cur + j] );
+                }
+                if( rows[cur + len] <= distance )
+                {
+                    if( isEnd( node ) )
+                    {
+                        ret.add( new String( path, 0, depth + 1 ) );
+                    }
+                    if( prefix )
+                    {
+                        // every word through the node
+                        collect( ret, m_middle[ node ], path, depth + 1 );
+                        continue;
+                    }
+                }
+                if( min <= distance )
+                {
+                    push( stack, m_middle[ node ], depth + 1 );
+                }
+            }
+        }
+        finally
+        {
+            SearchStack.release( stack );
+        }
+    }
+
+    /**
+     * Add every word of the subtree, path[ 0 .. depth ) being the
+     * characters above it.
+     */
+    private void collect( HashSet<String> ret, int node, char[] path, int depth )
+    {
+        SearchStack stack = SearchStack.acquire();
+        try
+        {
+            push( stack, node, depth );
+            while( !stack.isEmpty() )
+            {
+                stack.pop();
+                node = stack.node();
+                depth = stack.offset();
+                if( depth >= path.length )
+                {
+                    path = Arrays.copyOf( path, 2 * path.length );
+                }
+                path[ depth ] = m_value[ node ];
+                if( isEnd( node ) )
+                {
+                    ret.add( new String( path, 0, depth + 1 ) );
+                }
+                push( stack, m_right[ node ], depth );
+                push( stack, m_left[ node ], depth );
+                push( stack, m_middle[ node ], depth + 1 );
+            }
+        }
+        finally
+        {
+            SearchStack.release( stack );
+        }
+    }
+
+    private static void push( SearchStack stack, int node, int depth )
+    {
+        if( node != TSTNodeStore.NULL )
+        {
+            stack.push( node, depth, 0 );
+        }
+    }
+
+    /**
+     * @return number of words.
+     */
+    public int size()
+    {
+        return m_size;
+    }
+
+    /**
+     * @return number of nodes.
+     */
+    public int getTotalNodes()
+    {
+        return m_nodes;
+    }
+
+    /**
+     * Estimated heap footprint in bytes, there is no term table.
+     * @return
+     */
+    public long memoryUsage()
+    {
+        // 5 node arrays with 16 byte headers
+        return 5L * 16 + 18L * m_left.length;
+    }
+}
@@ -0,0 +1,271 @@
+package searchtool;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Writable node store outside the Java heap. The nodes are 22 byte
+ * records, laid out as in TSTIndexFile, in direct ByteBuffers of 2^20
+ * nodes each, so the heap only holds the chunk table however large the
+ * tree: a garbage collection has nothing of the tree to mark or copy.
+ *
+ * The memory is allocated as the tree grows and given back by close(),
+ * not by the garbage collector. The store must not be used after close(),
+ * nor closed while a search is running.
+ */
+public class DirectNodeStore implements TSTNodeStore, AutoCloseable
+{
+    private static final int SHIFT = 20;
+    private static final int CHUNK_NODES = 1 << SHIFT;
+    private static final int MASK = CHUNK_NODES - 1;
+    private static final int NODE_BYTES = TSTIndexFile.NODE_BYTES;
+
+    private ByteBuffer[] m_chunks = new ByteBuffer[ 0 ];
+    private int m_size = 0;
+    private int m_capacity = 0;
+    private boolean m_closed = false;
+
+    public DirectNodeStore()
+    {
+        this( 1024 );
+    }
+
+    /**
+     * @param capacity number of nodes to allocate up front
+     */
+    public DirectNodeStore( int capacity )
+    {
+        reserve( Math.max( capacity, 16 ) );
+    }
+
+    /**
+     * Make room for capacity nodes, the last chunk grows by half until it
+     * is full size.
+     */
+    private void reserve( int capacity )
+    {
+        if( m_closed )
+        {
+            throw new IllegalStateException( "node store is closed" );
+        }
+        while( m_capacity < capacity )
+        {
+            int last = m_chunks.length - 1;
+            if( last >= 0 && m_chunks[ last ].capacity() < CHUNK_NODES * NODE_BYTES )
+            {
+                int nodes = m_chunks[ last ].capacity() / NODE_BYTES;
+                int grown = Math.min( CHUNK_NODES, Math.max( capacity - last * CHUNK_NODES, nodes + ( nodes >> 1 ) ) );
+                m_chunks[ last ] = resize( m_chunks[ last ], grown );
+                m_capacity = last * CHUNK_NODES + grown;
+            }
+            else
+            {
+                int nodes = Math.min( CHUNK_NODES, Math.max( capacity - m_capacity, 1024 ) );
+                m_chunks = Arrays.copyOf( m_chunks, last + 2 );
+                m_chunks[ last + 1 ] = ByteBuffer.allocateDirect( nodes * NODE_BYTES ).order( ByteOrder.nativeOrder() );
+                m_capacity += nodes;
+            }
+        }
+    }
+
+    /**
+     * Copy the first nodes of a chunk into a new one. The old one is left
+     * to the garbage collector, a search in copy on write mode may still
+     * be reading it.
+     */
+    private ByteBuffer resize( ByteBuffer chunk, int nodes )
+    {
+        ByteBuffer resized = ByteBuffer.allocateDirect( nodes * NODE_BYTES ).order( ByteOrder.nativeOrder() );
+        ByteBuffer copy = chunk.duplicate();
+        copy.clear();
+        copy.limit( Math.min( copy.capacity(), nodes * NODE_BYTES ) );
+        resized.put( copy );
+        resized.clear();
+        return resized;
+    }
+
+    public int newNode( char ch )
+    {
+        if( m_size == m_capacity )
+        {
+            if( m_size == Integer.MAX_VALUE )
+            {
+                throw new IllegalStateException( "node store is full" );
+            }
+            reserve( m_size + 1 );
+        }
+        int node = m_size++;
+        ByteBuffer chunk = m_chunks[ node >>> SHIFT ];
+        int at = ( node & MASK ) * NODE_BYTES;
+        chunk.putChar( at, ch );
+        chunk.putInt( at + 2, NULL );
+        chunk.putInt( at + 6, NULL );
+        chunk.putInt( at + 10, NULL );
+        chunk.putInt( at + 14, -1 );
+        chunk.putInt( at + 18, 0 );
+        return node;
+    }
+
+    public char value( int node )
+    {
+        return m_chunks[ node >>> SHIFT ].getChar( ( node & MASK ) * NODE_BYTES );
+    }
+
+    public long getRef( int node )
+    {
+        return m_chunks[ node >>> SHIFT ].getInt( ( node & MASK ) * NODE_BYTES + 14 );
+    }
+
+    public void setComplete( int node, long ref )
+    {
+        if( ref > Integer.MAX_VALUE || ref < -1 )
+        {
+            throw new IllegalArgumentException( "ref out of int range: " + ref );
+        }
+        m_chunks[ node >>> SHIFT ].putInt( ( node & MASK ) * NODE_BYTES + 14, (int)ref );
+    }
+
+    public int getWeight( int node )
+    {
+        return m_chunks[ node >>> SHIFT ].getInt( ( node & MASK ) * NODE_BYTES + 18 );
+    }
+
+    public void setWeight( int node, int weight )
+    {
+        m_chunks[ node >>> SHIFT ].putInt( ( node & MASK ) * NODE_BYTES + 18, weight );
+    }
+
+    public int getLeft( int node )
+    {
+        return m_chunks[ node >>> SHIFT ].getInt( ( node & MASK ) * NODE_BYTES + 2 );
+    }
+
+    public int getMiddle( int node )
+    {
+        return m_chunks[ node >>> SHIFT ].getInt( ( node & MASK ) * NODE_BYTES + 6 );
+    }
+
+    public int getRight( int node )
+    {
+        return m_chunks[ node >>> SHIFT ].getInt( ( node & MASK ) * NODE_BYTES + 10 );
+    }
+
+    public void setLeft( int node, int child )
+    {
+        m_chunks[ node >>> SHIFT ].putInt( ( node & MASK ) * NODE_BYTES + 2, child );
+    }
+
+    public void setMiddle( int node, int child )
+    {
+        m_chunks[ node >>> SHIFT ].putInt( ( node & MASK ) * NODE_BYTES + 6, child );
+    }
+
+    public void setRight( int node, int child )
+    {
+        m_chunks[ node >>> SHIFT ].putInt( ( node & MASK ) * NODE_BYTES + 10, child );
+    }
+
+    public int size()
+    {
+        return m_size;
+    }
+
+    /**
+     * Release the unused tail of the last chunk once the tree is built.
+     */
+    public void trimToSize()
+    {
+        int last = m_chunks.length - 1;
+        int used = Math.max( m_size - last * CHUNK_NODES, 16 );
+        if( last >= 0 && used * NODE_BYTES < m_chunks[ last ].capacity() )
+        {
+            m_chunks[ last ] = resize( m_chunks[ last ], used );
+            m_capacity = last * CHUNK_NODES + used;
+        }
+    }
+
+    /**
+     * Only the chunk table is on the heap, see offHeapUsage().
+     */
+    public long memoryUsage()
+    {
+        // the table and a 64 byte ByteBuffer object per chunk
+        return 16 + 72L * m_chunks.length;
+    }
+
+    /**
+     * @return bytes allocated outside the heap.
+     */
+    public long offHeapUsage()
+    {
+        return (long)m_capacity * NODE_BYTES;
+    }
+
+    public TSTNode getNode( int node )
+    {
+        return node == NULL ? null : new StoredTSTNode( this, node );
+    }
+
+    /**
+     * Free the memory now instead of when the garbage collector finds the
+     * buffers unreachable. The store is empty afterwards and newNode()
+     * throws IllegalStateException.
+     */
+    public void close()
+    {
+        m_closed = true;
+        ByteBuffer[] chunks = m_chunks;
+        m_chunks = new ByteBuffer[ 0 ];
+        m_size = 0;
+        m_capacity = 0;
+        for( ByteBuffer chunk : chunks )
+        {
+            free( chunk );
+        }
+    }
+
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static
+    {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try
+        {
+            Class<?> type = Class.forName( "sun.misc.Unsafe" );
+            Field field = type.getDeclaredField( "theUnsafe" );
+            field.setAccessible( true );
+            unsafe = field.get( null );
+            invokeCleaner = type.getMethod( "invokeCleaner", ByteBuffer.class );
+        }
+        catch( ReflectiveOperationException | RuntimeException e )
+        {
+            // no jdk.unsupported module, the garbage collector frees the buffers
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    /**
+     * Free a direct buffer now, if the JDK allows it.
+     */
+    private static void free( ByteBuffer buffer )
+    {
+        if( INVOKE_CLEANER == null )
+        {
+            return;
+        }
+        try
+        {
+            INVOKE_CLEANER.invoke( UNSAFE, buffer );
+        }
+        catch( ReflectiveOperationException e )
+        {
+            // left to the garbage collector
+        }
+    }
+}
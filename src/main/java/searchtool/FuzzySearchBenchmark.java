@@ -0,0 +1,122 @@
+package searchtool;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compare nearNeighbours() with levenshteinNeighbours() at distances 1-3:
+ * time per query, average result size, how many of the results are
+ * within the edit distance and how many of the dictionary words within
+ * the edit distance are found.
+ *
+ *      java -cp target/classes searchtool.FuzzySearchBenchmark data/dic.txt
+ */
+public class FuzzySearchBenchmark
+{
+    private static final int QUERIES = 500;
+
+    static int editDistance( String a, String b )
+    {
+        int[] prev = new int[ b.length() + 1 ];
+        int[] cur = new int[ b.length() + 1 ];
+        for( int j = 0; j <= b.length(); j++ )
+        {
+            prev[j] = j;
+        }
+        for( int i = 1; i <= a.length(); i++ )
+        {
+            cur[0] = i;
+            for( int j = 1; j <= b.length(); j++ )
+            {
+                int sub = prev[j - 1] + ( a.charAt( i - 1 ) == b.charAt( j - 1 ) ? 0 : 1 );
+                cur[j] = Math.min( sub, Math.min( prev[j], cur[j - 1] ) + 1 );
+            }
+            int[] t = prev;
+            prev = cur;
+            cur = t;
+        }
+        return prev[ b.length() ];
+    }
+
+    static public final void main( String args[] ) throws IOException
+    {
+        String fileName = args.length > 0 ? args[0] : TernarySearchTree.SOURCE_FILE_NAME;
+        TernarySearchTree tst = new TernarySearchTree( new ArrayNodeStore() );
+        tst.index( fileName );
+
+        // dictionary words with one random typo
+        List<String> words = new ArrayList<String>();
+        BufferedReader br = new BufferedReader( new FileReader( fileName ) );
+        String line;
+        while( ( line = br.readLine() ) != null )
+        {
+            words.add( line.toLowerCase() );
+        }
+        br.close();
+        Random random = new Random( 42 );
+        List<String> queries = new ArrayList<String>();
+        for( int i = 0; i < QUERIES; i++ )
+        {
+            char[] w = words.get( random.nextInt( words.size() ) ).toCharArray();
+            w[ random.nextInt( w.length ) ] = (char)( 'a' + random.nextInt( 26 ) );
+            queries.add( new String( w ) );
+        }
+
+        HashSet<String> dictionary = new HashSet<String>( words );
+        for( int distance = 1; distance <= 3; distance++ )
+        {
+            long expected = 0;
+            for( String q : queries )
+            {
+                for( String w : dictionary )
+                {
+                    if( editDistance( q, w ) <= distance )
+                    {
+                        expected++;
+                    }
+                }
+            }
+            // first round warms up
+            for( int method = 0; method < 4; method++ )
+            {
+                long results = 0;
+                long exact = 0;
+                long t1 = System.nanoTime();
+                for( String q : queries )
+                {
+                    HashSet<String> ret = new HashSet<String>();
+                    if( method % 2 == 0 )
+                    {
+                        tst.nearNeighbours( ret, q, distance );
+                    }
+                    else
+                    {
+                        tst.levenshteinNeighbours( ret, q, distance );
+                    }
+                    results += ret.size();
+                    for( String s : ret )
+                    {
+                        if( editDistance( q, s ) <= distance )
+                        {
+                            exact++;
+                        }
+                    }
+                }
+                long t2 = System.nanoTime();
+                if( method < 2 )
+                {
+                    continue;
+                }
+                System.out.println( ( method % 2 == 0 ? "nearNeighbours        " : "levenshteinNeighbours " )
+                        + "d=" + distance
+                        + "  us/query=" + ( t2 - t1 ) / 1000 / QUERIES
+                        + "  results/query=" + results / QUERIES
+                        + "  within distance=" + ( results == 0 ? 100 : exact * 100 / results ) + "%"
+                        + "  found=" + ( expected == 0 ? 100 : exact * 100 / expected ) + "%" );
+            }
+        }
+    }
+}
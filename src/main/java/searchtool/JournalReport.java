@@ -0,0 +1,183 @@
+package searchtool;
+
+import java.io.*;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Index the dictionary under a TSTJournal, log a run of add() and
+ * remove() calls, and print the startup time of a full rebuild from the
+ * text next to recovering from the snapshot and the log, before and
+ * after compaction and with a torn last record. Each recovered tree is
+ * checked against the same changes made in memory.
+ *
+ *      java -cp target/classes searchtool.JournalReport data/dic.txt [changes]
+ */
+public class JournalReport
+{
+    static public final void main( String args[] ) throws IOException
+    {
+        String fileName = args.length > 0 ? args[0] : TernarySearchTree.SOURCE_FILE_NAME;
+        int changes = args.length > 1 ? Integer.parseInt( args[1] ) : 200000;
+
+        List<String> words = new ArrayList<String>();
+        BufferedReader br = new BufferedReader( new FileReader( fileName ) );
+        String line;
+        while( ( line = br.readLine() ) != null )
+        {
+            if( line.length() > 0 )
+            {
+                words.add( TSTFolding.fold( line ) );
+            }
+        }
+        br.close();
+
+        Path dir = Files.createTempDirectory( "tst-journal" );
+        try
+        {
+            // warm up the paths measured below
+            for( int i = 0; i < 3; i++ )
+            {
+                new TernarySearchTree( new ArrayNodeStore() ).index( fileName );
+            }
+
+            long t1 = System.nanoTime();
+            TernarySearchTree expected = new TernarySearchTree( new ArrayNodeStore() );
+            expected.index( fileName );
+            long rebuild = System.nanoTime() - t1;
+
+            TSTJournal journal = TSTJournal.open( dir, new ArrayNodeStore() );
+            TernarySearchTree tst = journal.tree();
+            tst.index( fileName );
+            long t2 = System.nanoTime();
+            journal.compact();
+            long compact = System.nanoTime() - t2;
+
+            // the same changes with and without the journal
+            Random random = new Random( 25 );
+            List<String> touched = new ArrayList<String>();
+            long plain = 0;
+            long logged = 0;
+            for( int i = 0; i < changes; i++ )
+            {
+                String term = words.get( random.nextInt( words.size() ) ) + words.get( random.nextInt( words.size() ) );
+                boolean remove = i % 10 == 9;
+                if( remove )
+                {
+                    term = touched.get( random.nextInt( touched.size() ) );
+                }
+                touched.add( term );
+                long t = System.nanoTime();
+                if( remove )
+                {
+                    expected.remove( term );
+                }
+                else
+                {
+                    expected.add( term, 1000000 + i, i % 100 );
+                }
+                long u = System.nanoTime();
+                if( remove )
+                {
+                    tst.remove( term );
+                }
+                else
+                {
+                    tst.add( term, 1000000 + i, i % 100 );
+                }
+                long v = System.nanoTime();
+                plain += u - t;
+                logged += v - u;
+            }
+            long bytes = journal.size();
+            journal.close();
+
+            System.out.println( expected.size() + " terms, " + changes + " changes logged in " + ( bytes >> 10 )
+                + " KB" );
+            System.out.println( String.format( "  add()/remove() ns          %10d plain, %d with the journal",
+                plain / changes, logged / changes ) );
+            System.out.println( String.format( "  compact() ms               %10d", compact / 1000000 ) );
+            System.out.println( String.format( "%-28s %10s %10s %10s", "startup", "ms", "replayed", "check" ) );
+            // without the log: index the text and make the changes again
+            System.out.println( String.format( "%-28s %10d %10s %10s", "index() + changes", ( rebuild + plain )
+                / 1000000, "", "" ) );
+
+            recover( "snapshot + log", dir, expected, touched );
+
+            // a crash in the middle of writing a record
+            Path last = last( dir );
+            Files.write( last, new byte[] { 0, 0, 0, 42, 1, 2 }, StandardOpenOption.APPEND );
+            recover( "snapshot + log, torn tail", dir, expected, touched );
+
+            journal = TSTJournal.open( dir, new ArrayNodeStore() );
+            journal.compact();
+            journal.close();
+            recover( "snapshot after compact()", dir, expected, touched );
+        }
+        finally
+        {
+            try( DirectoryStream<Path> files = Files.newDirectoryStream( dir ) )
+            {
+                for( Path file : files )
+                {
+                    Files.delete( file );
+                }
+            }
+            Files.delete( dir );
+        }
+    }
+
+    private static void recover( String name, Path dir, TernarySearchTree expected, List<String> touched )
+        throws IOException
+    {
+        long t = System.nanoTime();
+        TSTJournal journal = TSTJournal.open( dir, new ArrayNodeStore() );
+        long nanos = System.nanoTime() - t;
+        TernarySearchTree tst = journal.tree();
+
+        boolean same = tst.size() == expected.size();
+        for( String term : touched )
+        {
+            same &= tst.contains( term ) == expected.contains( term ) && tst.getWeight( term ) == expected.getWeight( term );
+        }
+        for( String term : touched.subList( 0, 200 ) )
+        {
+            HashSet<String> a = new HashSet<String>();
+            HashSet<String> b = new HashSet<String>();
+            tst.levenshteinNeighbours( a, term, 1 );
+            expected.levenshteinNeighbours( b, term, 1 );
+            same &= a.equals( b );
+        }
+        journal.close();
+        System.out.println( String.format( "%-28s %10d %10d %10s", name, nanos / 1000000, journal.replayed(),
+            same ? "same" : "DIFFERENT" ) );
+    }
+
+    /**
+     * @return the journal with the highest generation.
+     */
+    private static Path last( Path dir ) throws IOException
+    {
+        Path ret = null;
+        long highest = -1;
+        try( DirectoryStream<Path> files = Files.newDirectoryStream( dir, "journal.*" ) )
+        {
+            for( Path file : files )
+            {
+                long generation = Long.parseLong( file.getFileName().toString().substring( "journal.".length() ) );
+                if( generation > highest )
+                {
+                    highest = generation;
+                    ret = file;
+                }
+            }
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,107 @@
+package searchtool;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Log-linear histogram in the style of HdrHistogram: every power of two
+ * is split into 16 buckets, so a value is kept within 6.25%, from 1 ns
+ * up to Long.MAX_VALUE, in a fixed 960 buckets. The buckets are striped
+ * LongAdders, recording never blocks or loses counts.
+ */
+final class LatencyHistogram
+{
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = ( 64 - SUB_BITS + 1 ) * SUB_BUCKETS;
+
+    private final LongAdder[] m_buckets = new LongAdder[ BUCKETS ];
+
+    LatencyHistogram()
+    {
+        for( int i = 0; i < BUCKETS; i++ )
+        {
+            m_buckets[i] = new LongAdder();
+        }
+    }
+
+    static int bucket( long value )
+    {
+        if( value < SUB_BUCKETS )
+        {
+            return (int)Math.max( value, 0 );
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros( value );
+        int sub = (int)( value >>> ( exponent - SUB_BITS ) ) & ( SUB_BUCKETS - 1 );
+        return ( exponent - SUB_BITS + 1 ) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * @return the middle of the values of the bucket.
+     */
+    static long value( int bucket )
+    {
+        if( bucket < SUB_BUCKETS )
+        {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        int sub = bucket % SUB_BUCKETS;
+        long low = (long)( SUB_BUCKETS + sub ) << ( exponent - SUB_BITS );
+        return low + ( ( 1L << ( exponent - SUB_BITS ) ) >>> 1 );
+    }
+
+    void record( long value )
+    {
+        m_buckets[ bucket( value ) ].increment();
+    }
+
+    /**
+     * @return a copy of the bucket counts.
+     */
+    long[] counts()
+    {
+        long[] counts = new long[ BUCKETS ];
+        for( int i = 0; i < BUCKETS; i++ )
+        {
+            counts[i] = m_buckets[i].sum();
+        }
+        return counts;
+    }
+
+    /**
+     * @param counts as returned by counts()
+     * @param quantile 0 .. 1
+     * @return the value at the quantile, 0 if nothing was recorded.
+     */
+    static long quantile( long[] counts, double quantile )
+    {
+        long total = 0;
+        for( long count : counts )
+        {
+            total += count;
+        }
+        if( total == 0 )
+        {
+            return 0;
+        }
+        long rank = Math.max( 1, (long)Math.ceil( quantile * total ) );
+        long seen = 0;
+        for( int i = 0; i < counts.length; i++ )
+        {
+            seen += counts[i];
+            if( seen >= rank )
+            {
+                return value( i );
+            }
+        }
+        return value( counts.length - 1 );
+    }
+
+    void reset()
+    {
+        for( LongAdder bucket : m_buckets )
+        {
+            bucket.reset();
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package searchtool;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Throughput of the dictionary loaders in terms per second: the former
+ * index() loop (BufferedReader, a String per line, contains() then add())
+ * against load( Path ) and load( InputStream ). The input is the given
+ * dictionary grown with plural, past tense and capitalized forms and
+ * shuffled, so about a third of the lines are duplicates after folding.
+ * Checks that all loaders build the same tree.
+ *
+ *      java -cp target/classes searchtool.LoadReport data/dic.txt
+ */
+public class LoadReport
+{
+    private static final int ROUNDS = 6;
+
+    static public final void main( String args[] ) throws IOException
+    {
+        String fileName = args.length > 0 ? args[0] : TernarySearchTree.SOURCE_FILE_NAME;
+        List<String> words = new ArrayList<String>();
+        BufferedReader br = Files.newBufferedReader( new File( fileName ).toPath(), StandardCharsets.UTF_8 );
+        String line;
+        while( ( line = br.readLine() ) != null )
+        {
+            if( line.length() > 0 )
+            {
+                words.add( line );
+            }
+        }
+        br.close();
+
+        List<String> lines = new ArrayList<String>();
+        for( String word : words )
+        {
+            lines.add( word );
+            lines.add( word + "s" );
+            lines.add( word + "ed" );
+            lines.add( Character.toUpperCase( word.charAt( 0 ) ) + word.substring( 1 ) );
+            lines.add( word.toUpperCase() );
+        }
+        Collections.shuffle( lines, new Random( 9 ) );
+        Path file = Files.createTempFile( "dictionary", ".txt" );
+        try
+        {
+            Files.write( file, lines, StandardCharsets.UTF_8 );
+            long bytes = Files.size( file );
+
+            String[] names = { "BufferedReader + contains() + add()", "load( Path )", "load( InputStream )" };
+            long[] nanos = new long[ names.length ];
+            long[] allocated = new long[ names.length ];
+            TernarySearchTree[] trees = new TernarySearchTree[ names.length ];
+            for( int round = 0; round < ROUNDS; round++ )
+            {
+                for( int i = 0; i < names.length; i++ )
+                {
+                    int loader = ( i + round ) % names.length;
+                    System.gc();
+                    TernarySearchTree tst = new TernarySearchTree( new ArrayNodeStore() );
+                    long a1 = allocatedBytes();
+                    long t1 = System.nanoTime();
+                    load( loader, tst, file );
+                    long t2 = System.nanoTime();
+                    long a2 = allocatedBytes();
+                    if( round > 0 )
+                    {
+                        nanos[ loader ] += t2 - t1;
+                        allocated[ loader ] += a2 - a1;
+                    }
+                    trees[ loader ] = tst;
+                }
+            }
+
+            int terms = trees[0].size();
+            System.out.println( lines.size() + " lines, " + bytes + " bytes, " + terms + " distinct terms" );
+            System.out.println( String.format( "%-36s %12s %10s %16s", "loader", "terms/s", "MB/s", "allocated/line" ) );
+            for( int i = 0; i < names.length; i++ )
+            {
+                double seconds = nanos[i] / 1e9 / ( ROUNDS - 1 );
+                System.out.println( String.format( "%-36s %12d %10.1f %16d", names[i], (long)( terms / seconds ),
+                    bytes / seconds / 1e6, allocated[i] / ( ROUNDS - 1 ) / lines.size() ) );
+            }
+            System.out.println( same( trees ) ? "same trees" : "DIFFERENT TREES" );
+        }
+        finally
+        {
+            Files.delete( file );
+        }
+    }
+
+    private static void load( int loader, TernarySearchTree tst, Path file ) throws IOException
+    {
+        if( loader == 0 )
+        {
+            BufferedReader br = new BufferedReader( new InputStreamReader( new FileInputStream( file.toFile() ),
+                StandardCharsets.UTF_8 ) );
+            tst.setCaseFolding( true );
+            String strLine;
+            int id = 0;
+            while( ( strLine = br.readLine() ) != null )
+            {
+                String strLower = TSTFolding.fold( strLine );
+                if( !tst.contains( strLower ) )
+                {
+                    tst.add( strLower, id );
+                    id++;
+                }
+            }
+            br.close();
+        }
+        else if( loader == 1 )
+        {
+            tst.load( file );
+        }
+        else
+        {
+            InputStream in = Files.newInputStream( file );
+            try
+            {
+                tst.load( in );
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+    }
+
+    private static boolean same( TernarySearchTree[] trees )
+    {
+        for( TernarySearchTree tst : trees )
+        {
+            if( tst.size() != trees[0].size() || tst.getTotalNodes() != trees[0].getTotalNodes() )
+            {
+                return false;
+            }
+            for( int ref = 0; ref < tst.size(); ref++ )
+            {
+                String term = tst.getTerm( ref );
+                if( term == null || !term.equals( trees[0].getTerm( ref ) ) )
+                {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return bytes allocated by this thread so far, 0 if the JVM can't tell.
+     */
+    private static long allocatedBytes()
+    {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if( threads instanceof com.sun.management.ThreadMXBean )
+        {
+            return ( (com.sun.management.ThreadMXBean)threads ).getThreadAllocatedBytes(
+                Thread.currentThread().getId() );
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,87 @@
+package searchtool;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing set of primitive longs, used to drop duplicate results
+ * without boxing. Long.MIN_VALUE marks an empty slot and can't be stored.
+ */
+final class LongHashSet
+{
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private long[] m_table;
+    private int m_size = 0;
+
+    LongHashSet()
+    {
+        m_table = new long[ 16 ];
+        Arrays.fill( m_table, EMPTY );
+    }
+
+    /**
+     * @param key
+     * @return true if the key was not in the set.
+     */
+    boolean add( long key )
+    {
+        if( 2 * ( m_size + 1 ) > m_table.length )
+        {
+            rehash();
+        }
+        int mask = m_table.length - 1;
+        int i = hash( key ) & mask;
+        while( m_table[i] != EMPTY )
+        {
+            if( m_table[i] == key )
+            {
+                return false;
+            }
+            i = ( i + 1 ) & mask;
+        }
+        m_table[i] = key;
+        m_size++;
+        return true;
+    }
+
+    boolean contains( long key )
+    {
+        int mask = m_table.length - 1;
+        int i = hash( key ) & mask;
+        while( m_table[i] != EMPTY )
+        {
+            if( m_table[i] == key )
+            {
+                return true;
+            }
+            i = ( i + 1 ) & mask;
+        }
+        return false;
+    }
+
+    int size()
+    {
+        return m_size;
+    }
+
+    private static int hash( long key )
+    {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int)( h ^ ( h >>> 32 ) );
+    }
+
+    private void rehash()
+    {
+        long[] old = m_table;
+        m_table = new long[ old.length * 2 ];
+        Arrays.fill( m_table, EMPTY );
+        m_size = 0;
+        for( long key : old )
+        {
+            if( key != EMPTY )
+            {
+                add( key );
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package searchtool;
+
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Run every search over terms with very deep middle chains (long URLs or
+ * SKUs) on a thread with a small stack. The walks use an explicit stack,
+ * so nothing here may throw StackOverflowError whatever the term length.
+ *
+ *      java -cp target/classes searchtool.LongTermCheck 200000
+ */
+public class LongTermCheck
+{
+    private static int s_failures = 0;
+
+    private static void check( String name, boolean ok )
+    {
+        System.out.println( ( ok ? "ok     " : "FAILED " ) + name );
+        if( !ok )
+        {
+            s_failures++;
+        }
+    }
+
+    private static void run( TernarySearchTree tst, int length )
+    {
+        StringBuilder sb = new StringBuilder( length );
+        for( int i = 0; i < length; i++ )
+        {
+            sb.append( (char)( 'a' + i % 26 ) );
+        }
+        String term = sb.toString();
+        String sibling = term.substring( 0, length - 1 ) + '!';
+        String shorter = term.substring( 0, length / 2 );
+        tst.add( term, 0 );
+        tst.add( sibling, 1 );
+        tst.add( shorter, 2 );
+        tst.add( "short", 3 );
+
+        check( "contains", tst.contains( term ) && tst.contains( shorter ) );
+        check( "height", tst.height() >= length );
+
+        HashSet<String> ret = new HashSet<String>();
+        tst.beginWith( ret, "", 0 );
+        check( "beginWith everything", ret.size() == 4 );
+
+        ret.clear();
+        tst.nearNeighbours( ret, term, 0 );
+        check( "nearNeighbours exact", ret.size() == 1 && ret.contains( term ) );
+
+        ret.clear();
+        tst.nearNeighbours( ret, term, 1 );
+        check( "nearNeighbours distance 1", ret.contains( term ) && ret.contains( sibling ) );
+
+        // the dynamic programming rows take length squared ints, keep that
+        // query to a few thousand characters
+        String url = term.substring( 0, Math.min( length, 4000 ) );
+        tst.add( url, 4 );
+        tst.add( url + "/", 5 );
+        ret.clear();
+        tst.levenshteinNeighbours( ret, url + "?", 1 );
+        check( "levenshteinNeighbours", ret.size() == 2 && ret.contains( url ) );
+        tst.remove( url );
+        tst.remove( url + "/" );
+
+        // beginWith() stops at a prefix which is itself a word
+        String prefix = shorter.substring( 0, shorter.length() - 1 );
+        ret.clear();
+        tst.beginWith( ret, prefix, 0 );
+        check( "beginWith", ret.size() == 3 && !ret.contains( "short" ) );
+
+        ret.clear();
+        tst.nearSearchWithSuffix( ret, term + "suffix", 0 );
+        check( "nearSearchWithSuffix", ret.contains( term + ",suffix,0" ) );
+
+        List<TSTSegmentation> segments = tst.segment( term + "short", 0, 2 );
+        check( "segment", segments.size() == 1 && segments.get( 0 ).end( 0 ) == length
+            && segments.get( 0 ).word( 1 ).equals( "short" ) );
+
+        int[] seen = new int[1];
+        tst.beginWith( (String word) -> ++seen[0] < 2, prefix, 0 );
+        check( "visitor stops early", seen[0] == 2 );
+    }
+
+    static public final void main( String args[] ) throws InterruptedException
+    {
+        final int length = args.length > 0 ? Integer.parseInt( args[0] ) : 200000;
+
+        // a 256k thread stack overflowed the recursive walks long before this
+        Thread thread = new Thread( null, () ->
+        {
+            try
+            {
+                System.out.println( "Object nodes, term length " + length );
+                run( new TernarySearchTree(), length );
+                System.out.println( "Array nodes, term length " + length );
+                run( new TernarySearchTree( new ArrayNodeStore() ), length );
+            }
+            catch( Throwable e )
+            {
+                e.printStackTrace();
+                s_failures++;
+            }
+        }, "long-terms", 256 * 1024 );
+        thread.start();
+        thread.join();
+
+        System.out.println( s_failures == 0 ? "All checks passed" : s_failures + " checks failed" );
+        if( s_failures != 0 )
+        {
+            System.exit( 1 );
+        }
+    }
+}
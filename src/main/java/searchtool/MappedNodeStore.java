@@ -0,0 +1,109 @@
+package searchtool;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Read-only node store walking the node section of a mapped index file
+ * in place. See TSTIndexFile for the record layout.
+ */
+public class MappedNodeStore implements TSTNodeStore
+{
+    private final ByteBuffer m_buffer;
+    private final int m_base;
+    private final int m_size;
+
+    /**
+     * @param buffer mapped index file
+     * @param base offset of the first node record
+     * @param size number of node records
+     */
+    public MappedNodeStore( ByteBuffer buffer, int base, int size )
+    {
+        m_buffer = buffer;
+        m_base = base;
+        m_size = size;
+    }
+
+    private int offset( int node )
+    {
+        return m_base + node * TSTIndexFile.NODE_BYTES;
+    }
+
+    public int newNode( char ch )
+    {
+        throw new UnsupportedOperationException( "mapped index is read-only" );
+    }
+
+    public char value( int node )
+    {
+        return m_buffer.getChar( offset( node ) );
+    }
+
+    public long getRef( int node )
+    {
+        return m_buffer.getInt( offset( node ) + 14 );
+    }
+
+    public int getWeight( int node )
+    {
+        return m_buffer.getInt( offset( node ) + 18 );
+    }
+
+    public void setWeight( int node, int weight )
+    {
+        throw new UnsupportedOperationException( "mapped index is read-only" );
+    }
+
+    public void setComplete( int node, long ref )
+    {
+        throw new UnsupportedOperationException( "mapped index is read-only" );
+    }
+
+    public int getLeft( int node )
+    {
+        return m_buffer.getInt( offset( node ) + 2 );
+    }
+
+    public int getMiddle( int node )
+    {
+        return m_buffer.getInt( offset( node ) + 6 );
+    }
+
+    public int getRight( int node )
+    {
+        return m_buffer.getInt( offset( node ) + 10 );
+    }
+
+    public void setLeft( int node, int child )
+    {
+        throw new UnsupportedOperationException( "mapped index is read-only" );
+    }
+
+    public void setMiddle( int node, int child )
+    {
+        throw new UnsupportedOperationException( "mapped index is read-only" );
+    }
+
+    public void setRight( int node, int child )
+    {
+        throw new UnsupportedOperationException( "mapped index is read-only" );
+    }
+
+    public int size()
+    {
+        return m_size;
+    }
+
+    /**
+     * Mapped pages live in the page cache, not on the heap.
+     */
+    public long memoryUsage()
+    {
+        return 0;
+    }
+
+    public TSTNode getNode( int node )
+    {
+        return node == NULL ? null : new StoredTSTNode( this, node );
+    }
+}
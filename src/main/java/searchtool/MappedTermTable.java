@@ -0,0 +1,92 @@
+package searchtool;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Read-only ref to term lookup over the term section of a mapped index
+ * file. See TSTIndexFile for the layout.
+ */
+public class MappedTermTable implements TSTTermStore
+{
+    private final ByteBuffer m_buffer;
+    private final int m_offsets;
+    private final int m_weights;
+    private final int m_chars;
+    private final int m_slots;
+    private final int m_size;
+
+    /**
+     * @param buffer mapped index file
+     * @param offsets offset of the ( slots + 1 ) term offsets
+     * @param weights offset of the slots term weights
+     * @param chars offset of the term characters
+     * @param slots number of ref slots
+     * @param size number of terms
+     */
+    public MappedTermTable( ByteBuffer buffer, int offsets, int weights, int chars, int slots, int size )
+    {
+        m_size = size;
+        m_buffer = buffer;
+        m_offsets = offsets;
+        m_weights = weights;
+        m_chars = chars;
+        m_slots = slots;
+    }
+
+    public String get( long ref )
+    {
+        if( ref < 0 || ref >= m_slots )
+        {
+            return null;
+        }
+        int start = m_buffer.getInt( m_offsets + 4 * (int)ref );
+        int end = m_buffer.getInt( m_offsets + 4 * (int)ref + 4 );
+        if( start == end )
+        {
+            return null;
+        }
+        char[] term = new char[ end - start ];
+        for( int i = 0; i < term.length; i++ )
+        {
+            term[i] = m_buffer.getChar( m_chars + 2 * ( start + i ) );
+        }
+        return new String( term );
+    }
+
+    public int getWeight( long ref )
+    {
+        if( ref < 0 || ref >= m_slots )
+        {
+            return 0;
+        }
+        return m_buffer.getInt( m_weights + 4 * (int)ref );
+    }
+
+    public void setWeight( int ref, int weight )
+    {
+        throw new UnsupportedOperationException( "mapped index is read-only" );
+    }
+
+    public void put( int ref, String term )
+    {
+        throw new UnsupportedOperationException( "mapped index is read-only" );
+    }
+
+    public int size()
+    {
+        return m_size;
+    }
+
+    public int slots()
+    {
+        return m_slots;
+    }
+
+    /**
+     * Mapped pages live in the page cache, not on the heap.
+     */
+    public long memoryUsage()
+    {
+        return 0;
+    }
+}
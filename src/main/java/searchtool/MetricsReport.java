@@ -0,0 +1,107 @@
+package searchtool;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Run a mixed workload with the metrics off and with a TSTMetricsRecorder,
+ * print the overhead of the recording and the recorded snapshot.
+ *
+ *      java -cp target/classes searchtool.MetricsReport data/dic.txt
+ */
+public class MetricsReport
+{
+    private static final int ROUNDS = 8;
+
+    static public final void main( String args[] ) throws IOException
+    {
+        String fileName = args.length > 0 ? args[0] : TernarySearchTree.SOURCE_FILE_NAME;
+        List<String> terms = new ArrayList<String>();
+        BufferedReader br = new BufferedReader( new FileReader( fileName ) );
+        String line;
+        while( ( line = br.readLine() ) != null )
+        {
+            if( line.length() > 0 )
+            {
+                terms.add( line.toLowerCase() );
+            }
+        }
+        br.close();
+
+        TernarySearchTree tst = new TernarySearchTree( new ArrayNodeStore() );
+        tst.bulkLoad( terms );
+        Random random = new Random( 6 );
+        List<String> queries = new ArrayList<String>();
+        for( int i = 0; i < 2000; i++ )
+        {
+            queries.add( terms.get( random.nextInt( terms.size() ) ) );
+        }
+
+        TSTMetricsRecorder recorder = new TSTMetricsRecorder();
+        long off = 0;
+        long on = 0;
+        int sink = 0;
+        for( int round = 0; round < ROUNDS; round++ )
+        {
+            // alternate the order so warm up and GC hit both sides alike
+            for( int side = 0; side < 2; side++ )
+            {
+                boolean enabled = ( side + round ) % 2 == 0;
+                if( enabled )
+                {
+                    recorder.reset();
+                }
+                tst.setMetrics( enabled ? recorder : null );
+                long t1 = System.nanoTime();
+                sink += workload( tst, queries );
+                long t2 = System.nanoTime();
+                if( round >= ROUNDS / 2 )
+                {
+                    if( enabled )
+                    {
+                        on += t2 - t1;
+                    }
+                    else
+                    {
+                        off += t2 - t1;
+                    }
+                }
+            }
+        }
+
+        System.out.println( "workload ms, metrics off : " + off / 1000000 / ( ROUNDS / 2 ) );
+        System.out.println( "workload ms, metrics on  : " + on / 1000000 / ( ROUNDS / 2 ) );
+        System.out.println( String.format( "overhead : %.1f%%", 100.0 * ( on - off ) / off ) );
+        System.out.println();
+        TSTMetricsSnapshot snapshot = recorder.snapshot();
+        System.out.print( snapshot );
+        System.out.println();
+        for( Map.Entry<String, Number> e : snapshot.toMap().entrySet() )
+        {
+            if( e.getKey().startsWith( TSTOperation.CONTAINS.label() + "." ) )
+            {
+                System.out.println( e.getKey() + " = " + e.getValue() );
+            }
+        }
+        System.out.println( "(" + sink + ")" );
+    }
+
+    private static int workload( TernarySearchTree tst, List<String> queries )
+    {
+        int sink = 0;
+        for( String q : queries )
+        {
+            sink += tst.contains( q ) ? 1 : 0;
+            HashSet<String> ret = new HashSet<String>();
+            tst.nearNeighbours( ret, q, 1 );
+            tst.levenshteinNeighbours( ret, q, 1 );
+            tst.beginWith( ret, q.substring( 0, Math.min( 3, q.length() ) ), 0 );
+            sink += ret.size() + tst.topK( q.substring( 0, 1 ), 5 ).size();
+        }
+        return sink;
+    }
+}
@@ -0,0 +1,52 @@
+package searchtool;
+
+/**
+ * Compare the memory per term of the object graph, the array backed and
+ * the alphabet encoded node stores.
+ *
+ *      java -cp target/classes searchtool.NodeStoreMemoryReport data/dic.txt
+ */
+public class NodeStoreMemoryReport
+{
+    private static void report( String name, TSTNodeStore nodes, String fileName )
+    {
+        Runtime rt = Runtime.getRuntime();
+        System.gc();
+        long before = rt.totalMemory() - rt.freeMemory();
+
+        TernarySearchTree tst = new TernarySearchTree( nodes );
+        tst.index( fileName );
+        if( nodes instanceof ArrayNodeStore )
+        {
+            ( (ArrayNodeStore)nodes ).trimToSize();
+        }
+        else if( nodes instanceof AlphabetNodeStore )
+        {
+            ( (AlphabetNodeStore)nodes ).trimToSize();
+        }
+
+        System.gc();
+        long after = rt.totalMemory() - rt.freeMemory();
+
+        int terms = Math.max( tst.size(), 1 );
+        System.out.println( name );
+        System.out.println( "  terms             : " + tst.size() );
+        System.out.println( "  nodes             : " + tst.getTotalNodes() );
+        System.out.println( "  bytes             : " + tst.memoryUsage() );
+        System.out.println( "  bytes/term        : " + tst.memoryUsage() / terms );
+        System.out.println( "  heap delta/term   : " + ( after - before ) / terms + " (includes terms)" );
+        // keep the tree reachable until measured
+        if( tst.height() < 0 )
+        {
+            System.out.println();
+        }
+    }
+
+    static public final void main( String args[] )
+    {
+        String fileName = args.length > 0 ? args[0] : TernarySearchTree.SOURCE_FILE_NAME;
+        report( "ObjectNodeStore", new ObjectNodeStore(), fileName );
+        report( "ArrayNodeStore", new ArrayNodeStore(), fileName );
+        report( "AlphabetNodeStore", new AlphabetNodeStore(), fileName );
+    }
+}
@@ -0,0 +1,121 @@
+package searchtool;
+
+/**
+ * Node store keeping one TernarySearchNode object per character.
+ * This is the original object graph layout; handles index into a
+ * table of the allocated nodes.
+ */
+public class ObjectNodeStore implements TSTNodeStore
+{
+    /**
+     * Object header + 3 compressed references + char + int id + int weight
+     * + long ref, rounded up to 8 bytes.
+     */
+    private static final int NODE_BYTES = 48;
+
+    private TernarySearchNode[] m_nodes;
+    private int m_size = 0;
+
+    public ObjectNodeStore()
+    {
+        this( 1024 );
+    }
+
+    public ObjectNodeStore( int capacity )
+    {
+        m_nodes = new TernarySearchNode[ Math.max( capacity, 16 ) ];
+    }
+
+    public int newNode( char ch )
+    {
+        if( m_size == m_nodes.length )
+        {
+            TernarySearchNode[] nodes = new TernarySearchNode[ m_size + ( m_size >> 1 ) ];
+            System.arraycopy( m_nodes, 0, nodes, 0, m_size );
+            m_nodes = nodes;
+        }
+        m_nodes[ m_size ] = new TernarySearchNode( ch, m_size );
+        return m_size++;
+    }
+
+    public char value( int node )
+    {
+        return m_nodes[ node ].m_ch;
+    }
+
+    public long getRef( int node )
+    {
+        return m_nodes[ node ].getRef();
+    }
+
+    public void setComplete( int node, long ref )
+    {
+        m_nodes[ node ].setComplete( ref );
+    }
+
+    public int getWeight( int node )
+    {
+        return m_nodes[ node ].m_weight;
+    }
+
+    public void setWeight( int node, int weight )
+    {
+        m_nodes[ node ].m_weight = weight;
+    }
+
+    public int getLeft( int node )
+    {
+        return handle( m_nodes[ node ].m_left );
+    }
+
+    public int getMiddle( int node )
+    {
+        return handle( m_nodes[ node ].m_middle );
+    }
+
+    public int getRight( int node )
+    {
+        return handle( m_nodes[ node ].m_right );
+    }
+
+    public void setLeft( int node, int child )
+    {
+        m_nodes[ node ].m_left = node( child );
+    }
+
+    public void setMiddle( int node, int child )
+    {
+        m_nodes[ node ].m_middle = node( child );
+    }
+
+    public void setRight( int node, int child )
+    {
+        m_nodes[ node ].m_right = node( child );
+    }
+
+    public int size()
+    {
+        return m_size;
+    }
+
+    public long memoryUsage()
+    {
+        // the nodes plus one reference per slot of the handle table
+        return (long)m_size * NODE_BYTES + 4L * m_nodes.length;
+    }
+
+    public TSTNode getNode( int node )
+    {
+        return node( node );
+    }
+
+    private static int handle( TernarySearchNode node )
+    {
+        return node == null ? NULL : node.m_id;
+    }
+
+    private TernarySearchNode node( int handle )
+    {
+        return handle == NULL ? null : m_nodes[ handle ];
+    }
+}
@@ -0,0 +1,142 @@
+package searchtool;
+
+import java.io.*;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Build a large tree of two word compounds of the dictionary on each node
+ * store and print the heap it keeps, the pause of a full collection and
+ * the young collections while searching. Run one store per JVM for clean
+ * numbers, e.g. with -Xmx4g and 10000000 terms:
+ *
+ *      java -cp target/classes searchtool.OffHeapReport data/dic.txt [terms] [object|array|direct ...]
+ */
+public class OffHeapReport
+{
+    private static final int FULL_GCS = 5;
+    private static final int SEARCH_SECONDS = 10;
+
+    static public final void main( String args[] ) throws IOException
+    {
+        String fileName = args.length > 0 ? args[0] : TernarySearchTree.SOURCE_FILE_NAME;
+        int terms = args.length > 1 ? Integer.parseInt( args[1] ) : 2000000;
+        List<String> stores = new ArrayList<String>();
+        for( int i = 2; i < args.length; i++ )
+        {
+            stores.add( args[i] );
+        }
+        if( stores.isEmpty() )
+        {
+            stores.add( "object" );
+            stores.add( "array" );
+            stores.add( "direct" );
+        }
+
+        List<String> words = new ArrayList<String>();
+        BufferedReader br = new BufferedReader( new FileReader( fileName ) );
+        String line;
+        while( ( line = br.readLine() ) != null )
+        {
+            if( line.length() > 0 )
+            {
+                words.add( TSTFolding.fold( line ) );
+            }
+        }
+        br.close();
+
+        System.out.println( String.format( "%-8s %10s %10s %10s %10s %12s %12s %10s %12s", "store", "terms", "nodes",
+            "heap MB", "native MB", "full gc ms", "young gcs", "young ms", "searches/s" ) );
+        for( String store : stores )
+        {
+            report( store, words, terms );
+        }
+    }
+
+    private static void report( String store, List<String> words, int terms )
+    {
+        TSTNodeStore nodes = store.equals( "object" ) ? new ObjectNodeStore()
+            : store.equals( "array" ) ? new ArrayNodeStore() : new DirectNodeStore();
+        long baseline = heapAfterGc();
+
+        TernarySearchTree tst = new TernarySearchTree( nodes, new TermTable() );
+        int n = words.size();
+        for( int i = 0; i < terms; i++ )
+        {
+            // distinct for terms < n * n
+            tst.add( words.get( i % n ) + words.get( ( i / n + i ) % n ), i );
+        }
+        if( nodes instanceof ArrayNodeStore )
+        {
+            ( (ArrayNodeStore)nodes ).trimToSize();
+        }
+        else if( nodes instanceof DirectNodeStore )
+        {
+            ( (DirectNodeStore)nodes ).trimToSize();
+        }
+        long heap = heapAfterGc() - baseline;
+
+        // a full collection marks everything live
+        long t1 = System.nanoTime();
+        for( int i = 0; i < FULL_GCS; i++ )
+        {
+            System.gc();
+        }
+        long fullNanos = ( System.nanoTime() - t1 ) / FULL_GCS;
+
+        // searching allocates the results, the young collections must
+        // still scan whatever old objects point into the young generation
+        long[] before = collections();
+        Random random = new Random( 24 );
+        long searches = 0;
+        long deadline = System.nanoTime() + SEARCH_SECONDS * 1000000000L;
+        long t2 = System.nanoTime();
+        while( System.nanoTime() < deadline )
+        {
+            for( int i = 0; i < 100; i++ )
+            {
+                HashSet<String> ret = new HashSet<String>();
+                String word = words.get( random.nextInt( n ) );
+                tst.levenshteinNeighbours( ret, word, 1 );
+                tst.beginWith( ret, word, 0 );
+                searches += 2;
+            }
+        }
+        long searchNanos = System.nanoTime() - t2;
+        long[] after = collections();
+
+        System.out.println( String.format( "%-8s %10d %10d %10d %10d %12d %12d %10d %12d", store, tst.size(),
+            tst.getTotalNodes(), heap >> 20,
+            nodes instanceof DirectNodeStore ? ( (DirectNodeStore)nodes ).offHeapUsage() >> 20 : 0,
+            fullNanos / 1000000, after[0] - before[0], after[1] - before[1],
+            searches * 1000000000L / searchNanos ) );
+
+        tst.close();
+    }
+
+    private static long heapAfterGc()
+    {
+        Runtime rt = Runtime.getRuntime();
+        System.gc();
+        System.gc();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    /**
+     * @return number and milliseconds of the collections so far.
+     */
+    private static long[] collections()
+    {
+        long[] ret = new long[2];
+        for( GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans() )
+        {
+            ret[0] += gc.getCollectionCount();
+            ret[1] += gc.getCollectionTime();
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,366 @@
+package searchtool;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Keystroke by keystroke autocomplete. Instead of searching the whole
+ * prefix from the root on every keystroke, the cursor keeps the states
+ * reached for the prefix typed so far and advances them by one character;
+ * backspace pops the last states. The work per keystroke depends on the
+ * distance and the alphabet, not on the prefix length.
+ *
+ * A state is ( node, errors ): the node ends a tree prefix within errors
+ * edits of the typed prefix, NULL standing for the empty tree prefix. The
+ * exact cursor has at most one state per level. With a distance the states
+ * of the next level are, for every state ( node, e ):
+ *   ( node, e + 1 )      the typed character is dropped
+ *   ( m, e + k - 1 )     a node k levels below node holds the character,
+ *                        after k - 1 inserted ones, k <= distance - e + 1
+ *   ( m, e + 1 )         a child of node holds another character
+ * keeping the lowest errors of every node.
+ *
+ * A cursor works on the tree as it was when created. In copy on write mode
+ * that snapshot stays consistent; otherwise call reset() after changes.
+ * Not thread safe, use one cursor per input box.
+ */
+public class PrefixCursor
+{
+    private final TernarySearchTree m_tree;
+    private final TSTNodeStore m_nodes;
+    private final int m_distance;
+    private int m_root;
+
+    private final StringBuilder m_prefix = new StringBuilder();
+
+    /** ( node, errors ) pairs of all levels, level i starts at m_levels[i] */
+    private int[] m_states = new int[ 64 ];
+    private int m_top = 0;
+    private int[] m_levels = new int[ 16 ];
+
+    private long[] m_scratch = new long[ 32 ];
+
+    PrefixCursor( TernarySearchTree tree, int distance )
+    {
+        if( distance < 0 )
+        {
+            throw new IllegalArgumentException( "distance must not be negative" );
+        }
+        m_tree = tree;
+        m_nodes = tree.getNodes();
+        m_distance = distance;
+        reset();
+    }
+
+    /**
+     * Back to the empty prefix, on the current tree.
+     */
+    public void reset()
+    {
+        m_root = m_tree.getRootHandle();
+        m_prefix.setLength( 0 );
+        m_top = 0;
+        m_levels[0] = 0;
+        addState( TSTNodeStore.NULL, 0 );
+    }
+
+    /**
+     * Type one character.
+     * @param ch
+     * @return true if some term still matches the prefix.
+     */
+    public boolean push( char ch )
+    {
+        long started = m_tree.started();
+        ch = m_tree.normalize( ch );
+        int visited = 0;
+        int level = m_prefix.length();
+        int from = m_levels[ level ];
+        int to = m_top;
+        for( int i = from; i < to; i += 2 )
+        {
+            int node = m_states[i];
+            int errors = m_states[ i + 1 ];
+            visited++;
+            if( errors < m_distance )
+            {
+                addState( node, errors + 1 );
+                visited += descend( node, errors, ch );
+            }
+            else
+            {
+                int child = findChild( node, ch );
+                if( child != TSTNodeStore.NULL )
+                {
+                    addState( child, errors );
+                }
+            }
+        }
+        if( to - from > 2 || m_distance > 0 )
+        {
+            dedup( to );
+        }
+
+        if( level + 2 > m_levels.length )
+        {
+            m_levels = Arrays.copyOf( m_levels, m_levels.length * 2 );
+        }
+        m_levels[ level + 1 ] = to;
+        m_prefix.append( ch );
+        m_tree.record( TSTOperation.PREFIX_CURSOR, started, visited, ( m_top - to ) / 2 );
+        return m_top > to;
+    }
+
+    /**
+     * Type several characters.
+     * @param chars
+     * @return true if some term still matches the prefix.
+     */
+    public boolean push( CharSequence chars )
+    {
+        for( int i = 0; i < chars.length(); i++ )
+        {
+            push( chars.charAt( i ) );
+        }
+        return matches();
+    }
+
+    /**
+     * Backspace, drop the states of the last character.
+     * @return false if the prefix was already empty.
+     */
+    public boolean pop()
+    {
+        int level = m_prefix.length();
+        if( level == 0 )
+        {
+            return false;
+        }
+        m_top = m_levels[ level ];
+        m_prefix.setLength( level - 1 );
+        return true;
+    }
+
+    public String prefix()
+    {
+        return m_prefix.toString();
+    }
+
+    public int length()
+    {
+        return m_prefix.length();
+    }
+
+    public int distance()
+    {
+        return m_distance;
+    }
+
+    /**
+     * @return number of states for the current prefix.
+     */
+    public int frontierSize()
+    {
+        return ( m_top - m_levels[ m_prefix.length() ] ) / 2;
+    }
+
+    /**
+     * @return true if some term matches the prefix.
+     */
+    public boolean matches()
+    {
+        return m_top > m_levels[ m_prefix.length() ];
+    }
+
+    /**
+     * All terms beginning with the prefix, or with a prefix within the
+     * distance of it.
+     * @param ret
+     */
+    public void results( HashSet<String> ret )
+    {
+        for( int i = m_levels[ m_prefix.length() ]; i < m_top; i += 2 )
+        {
+            int node = m_states[i];
+            if( node == TSTNodeStore.NULL )
+            {
+                m_tree.returnAllResults( ret, m_root );
+                continue;
+            }
+            if( m_nodes.getRef( node ) != -1 )
+            {
+                ret.add( m_tree.getTerm( m_nodes.getRef( node ) ) );
+            }
+            m_tree.returnAllResults( ret, m_nodes.getMiddle( node ) );
+        }
+    }
+
+    /**
+     * Streaming results(), see TernarySearchTree.nearNeighbours( TSTResultVisitor, ... ).
+     * @param visitor
+     */
+    public void results( TSTResultVisitor visitor )
+    {
+        final HashSet<String> seen = new HashSet<String>();
+        final boolean[] stopped = new boolean[1];
+        TSTResultVisitor distinct = ( String word ) ->
+        {
+            if( seen.add( word ) && !visitor.visit( word ) )
+            {
+                stopped[0] = true;
+            }
+            return !stopped[0];
+        };
+        for( int i = m_levels[ m_prefix.length() ]; i < m_top && !stopped[0]; i += 2 )
+        {
+            int node = m_states[i];
+            if( node == TSTNodeStore.NULL )
+            {
+                m_tree.returnAllResults( distinct, m_root );
+                continue;
+            }
+            if( m_nodes.getRef( node ) != -1 )
+            {
+                distinct.visit( m_tree.getTerm( m_nodes.getRef( node ) ) );
+            }
+            if( !stopped[0] )
+            {
+                m_tree.returnAllResults( distinct, m_nodes.getMiddle( node ) );
+            }
+        }
+    }
+
+    /**
+     * The k highest weighted results, highest first, see
+     * TernarySearchTree.topK().
+     * @param k
+     * @return
+     */
+    public List<String> topK( int k )
+    {
+        int from = m_levels[ m_prefix.length() ];
+        int count = ( m_top - from ) / 2;
+        int[] starts = new int[ count ];
+        for( int i = 0; i < count; i++ )
+        {
+            starts[i] = m_states[ from + 2 * i ];
+        }
+        return m_tree.topK( m_root, starts, count, k, m_tree.started(), 0 );
+    }
+
+    private void addState( int node, int errors )
+    {
+        if( m_top + 2 > m_states.length )
+        {
+            m_states = Arrays.copyOf( m_states, m_states.length * 2 );
+        }
+        m_states[ m_top++ ] = node;
+        m_states[ m_top++ ] = errors;
+    }
+
+    /**
+     * The child of the prefix node holding ch, a binary search of the
+     * left/right links below its middle child.
+     */
+    private int findChild( int node, char ch )
+    {
+        int cur = node == TSTNodeStore.NULL ? m_root : m_nodes.getMiddle( node );
+        while( cur != TSTNodeStore.NULL )
+        {
+            char value = m_nodes.value( cur );
+            if( value > ch )
+            {
+                cur = m_nodes.getLeft( cur );
+            }
+            else if( value < ch )
+            {
+                cur = m_nodes.getRight( cur );
+            }
+            else
+            {
+                break;
+            }
+        }
+        return cur;
+    }
+
+    /**
+     * Add the states reached from ( node, errors ) by a match or a
+     * substitution of ch, after up to distance - errors inserted
+     * characters. The frames hold ( node, levels below the prefix node, 0 ).
+     * @return number of visited nodes.
+     */
+    private int descend( int node, int errors, char ch )
+    {
+        int visited = 0;
+        int limit = m_distance - errors + 1;
+        SearchStack stack = SearchStack.acquire();
+        try
+        {
+            int first = node == TSTNodeStore.NULL ? m_root : m_nodes.getMiddle( node );
+            if( first != TSTNodeStore.NULL )
+            {
+                stack.push( first, 1, 0 );
+            }
+            while( !stack.isEmpty() )
+            {
+                stack.pop();
+                visited++;
+                int cur = stack.node();
+                int k = stack.offset();
+                if( m_nodes.getLeft( cur ) != TSTNodeStore.NULL )
+                {
+                    stack.push( m_nodes.getLeft( cur ), k, 0 );
+                }
+                if( m_nodes.getRight( cur ) != TSTNodeStore.NULL )
+                {
+                    stack.push( m_nodes.getRight( cur ), k, 0 );
+                }
+                if( m_nodes.value( cur ) == ch )
+                {
+                    addState( cur, errors + k - 1 );
+                }
+                else if( k == 1 )
+                {
+                    addState( cur, errors + 1 );
+                }
+                if( k < limit && m_nodes.getMiddle( cur ) != TSTNodeStore.NULL )
+                {
+                    stack.push( m_nodes.getMiddle( cur ), k + 1, 0 );
+                }
+            }
+        }
+        finally
+        {
+            SearchStack.release( stack );
+        }
+        return visited;
+    }
+
+    /**
+     * Keep one state per node of the level starting at from, the one with
+     * the fewest errors.
+     */
+    private void dedup( int from )
+    {
+        int n = ( m_top - from ) / 2;
+        if( n > m_scratch.length )
+        {
+            m_scratch = new long[ Math.max( n, 2 * m_scratch.length ) ];
+        }
+        for( int i = 0; i < n; i++ )
+        {
+            m_scratch[i] = ( (long)( m_states[ from + 2 * i ] + 1 ) << 32 ) | m_states[ from + 2 * i + 1 ];
+        }
+        Arrays.sort( m_scratch, 0, n );
+        m_top = from;
+        for( int i = 0; i < n; i++ )
+        {
+            if( i == 0 || ( m_scratch[i] >>> 32 ) != ( m_scratch[ i - 1 ] >>> 32 ) )
+            {
+                addState( (int)( m_scratch[i] >>> 32 ) - 1, (int)m_scratch[i] );
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package searchtool;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Type long terms one keystroke at a time and print, by prefix length,
+ * the time to reach the states of the prefix: walking the whole prefix
+ * from the root again against one PrefixCursor.push(), exact and within
+ * distance 1.
+ *
+ * The dictionary is extended with URL like terms so the prefixes get long.
+ *
+ *      java -cp target/classes searchtool.PrefixCursorReport data/dic.txt
+ */
+public class PrefixCursorReport
+{
+    private static final int[] LENGTHS = { 1, 2, 4, 8, 16, 32, 64 };
+    private static final int ROUNDS = 20;
+
+    static public final void main( String args[] ) throws IOException
+    {
+        String fileName = args.length > 0 ? args[0] : TernarySearchTree.SOURCE_FILE_NAME;
+        List<String> terms = new ArrayList<String>();
+        BufferedReader br = new BufferedReader( new FileReader( fileName ) );
+        String line;
+        while( ( line = br.readLine() ) != null )
+        {
+            if( line.length() > 0 )
+            {
+                terms.add( line.toLowerCase() );
+            }
+        }
+        br.close();
+
+        Random random = new Random( 5 );
+        TernarySearchTree tst = new TernarySearchTree( new ArrayNodeStore() );
+        List<String> urls = new ArrayList<String>();
+        int ref = 0;
+        for( String term : terms )
+        {
+            tst.add( term, ref++, random.nextInt( 1000 ) );
+        }
+        for( int i = 0; i < 20000; i++ )
+        {
+            String url = "https://www.example.com/" + terms.get( random.nextInt( terms.size() ) ) + "/"
+                + terms.get( random.nextInt( terms.size() ) ) + "/" + terms.get( random.nextInt( terms.size() ) )
+                + "/item-" + random.nextInt( 100000 );
+            if( !tst.contains( url ) )
+            {
+                tst.add( url, ref++, random.nextInt( 1000 ) );
+            }
+            urls.add( url );
+        }
+
+        int maxLength = LENGTHS[ LENGTHS.length - 1 ];
+        long[][] times = new long[4][ maxLength + 1 ];
+        long[] count = new long[ maxLength + 1 ];
+        int sink = 0;
+        for( int round = 0; round < ROUNDS; round++ )
+        {
+            boolean measure = round >= ROUNDS / 4;
+            for( int i = 0; i < 200; i++ )
+            {
+                String url = urls.get( random.nextInt( urls.size() ) );
+                PrefixCursor[] cursors = { tst.prefixCursor( 0 ), tst.prefixCursor( 1 ) };
+                for( int len = 1; len <= Math.min( url.length(), maxLength ); len++ )
+                {
+                    for( int d = 0; d < 2; d++ )
+                    {
+                        // the whole prefix from the root, as a search per keystroke does
+                        long t1 = System.nanoTime();
+                        PrefixCursor fresh = tst.prefixCursor( d );
+                        for( int j = 0; j < len; j++ )
+                        {
+                            fresh.push( url.charAt( j ) );
+                        }
+                        long t2 = System.nanoTime();
+                        cursors[d].push( url.charAt( len - 1 ) );
+                        long t3 = System.nanoTime();
+                        sink += fresh.frontierSize() + cursors[d].frontierSize();
+                        if( measure )
+                        {
+                            times[ 2 * d ][len] += t2 - t1;
+                            times[ 2 * d + 1 ][len] += t3 - t2;
+                        }
+                    }
+                    if( measure )
+                    {
+                        count[len]++;
+                    }
+                }
+                sink += cursors[0].topK( 10 ).size();
+            }
+        }
+
+        System.out.println( "ns per keystroke to reach the prefix states, " + urls.size() + " URLs in " + tst.size() + " terms" );
+        System.out.println( String.format( "%8s %12s %12s %12s %12s", "length", "from root", "cursor", "root d=1", "cursor d=1" ) );
+        for( int len : LENGTHS )
+        {
+            if( count[len] > 0 )
+            {
+                System.out.println( String.format( "%8d %12d %12d %12d %12d", len, times[0][len] / count[len],
+                    times[1][len] / count[len], times[2][len] / count[len], times[3][len] / count[len] ) );
+            }
+        }
+        System.out.println( "(" + sink + ")" );
+    }
+}
@@ -0,0 +1,140 @@
+package searchtool;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Replay a skewed autocomplete workload, a Zipf distribution over
+ * prefixes and one letter typos of the dictionary, with and without a
+ * TSTQueryCache and print the time per query and the cache statistics.
+ *
+ *      java -cp target/classes searchtool.QueryCacheReport data/dic.txt
+ */
+public class QueryCacheReport
+{
+    private static final int QUERIES = 200000;
+
+    private static List<String> workload( List<String> terms, int distinct, long seed )
+    {
+        Random random = new Random( seed );
+        String[] pool = new String[ distinct ];
+        for( int i = 0; i < distinct; i++ )
+        {
+            String term = terms.get( random.nextInt( terms.size() ) );
+            if( i % 2 == 0 )
+            {
+                pool[i] = term.substring( 0, Math.min( term.length(), 1 + random.nextInt( 4 ) ) );
+            }
+            else
+            {
+                int at = random.nextInt( term.length() );
+                pool[i] = term.substring( 0, at ) + (char)( 'a' + random.nextInt( 26 ) ) + term.substring( at + 1 );
+            }
+        }
+
+        // Zipf, s = 1: rank r is drawn with probability proportional to 1 / r
+        double[] cumulative = new double[ distinct ];
+        double sum = 0;
+        for( int r = 0; r < distinct; r++ )
+        {
+            sum += 1.0 / ( r + 1 );
+            cumulative[r] = sum;
+        }
+        List<String> queries = new ArrayList<String>( QUERIES );
+        for( int i = 0; i < QUERIES; i++ )
+        {
+            double u = random.nextDouble() * sum;
+            int lo = 0;
+            int hi = distinct - 1;
+            while( lo < hi )
+            {
+                int mid = ( lo + hi ) >>> 1;
+                if( cumulative[mid] < u )
+                {
+                    lo = mid + 1;
+                }
+                else
+                {
+                    hi = mid;
+                }
+            }
+            queries.add( pool[lo] );
+        }
+        return queries;
+    }
+
+    private static long run( TernarySearchTree tst, List<String> queries )
+    {
+        long found = 0;
+        HashSet<String> ret = new HashSet<String>();
+        for( int i = 0; i < queries.size(); i++ )
+        {
+            String query = queries.get( i );
+            ret.clear();
+            if( query.length() < 5 )
+            {
+                tst.beginWith( ret, query, 0 );
+            }
+            else
+            {
+                tst.nearNeighbours( ret, query, 1 );
+            }
+            found += ret.size();
+        }
+        return found;
+    }
+
+    private static void report( String name, TernarySearchTree tst, List<String> queries )
+    {
+        run( tst, queries.subList( 0, queries.size() / 4 ) );
+        TSTQueryCache cache = tst.getQueryCache();
+        if( cache != null )
+        {
+            cache.resetStats();
+        }
+        long t1 = System.nanoTime();
+        long found = run( tst, queries );
+        long t2 = System.nanoTime();
+        System.out.println( name );
+        System.out.println( "  ns/query : " + ( t2 - t1 ) / queries.size() + "  (" + found + " results)" );
+        if( cache != null )
+        {
+            System.out.println( "  " + cache );
+        }
+    }
+
+    static public final void main( String args[] ) throws IOException
+    {
+        String fileName = args.length > 0 ? args[0] : TernarySearchTree.SOURCE_FILE_NAME;
+        List<String> terms = new ArrayList<String>();
+        BufferedReader br = new BufferedReader( new FileReader( fileName ) );
+        String line;
+        while( ( line = br.readLine() ) != null )
+        {
+            if( line.length() > 0 )
+            {
+                terms.add( line.toLowerCase() );
+            }
+        }
+        br.close();
+
+        TernarySearchTree tst = new TernarySearchTree( new ArrayNodeStore() );
+        tst.index( fileName );
+        List<String> queries = workload( terms, 50000, 11 );
+
+        report( "No cache", tst, queries );
+        tst.setQueryCache( new TSTQueryCache( 5000, 4L << 20 ) );
+        report( "Cache, 5000 entries", tst, queries );
+
+        // a change of the tree must never leave stale results behind
+        HashSet<String> before = new HashSet<String>();
+        tst.beginWith( before, "zzq", 0 );
+        tst.add( "zzqx", terms.size() );
+        HashSet<String> after = new HashSet<String>();
+        tst.beginWith( after, "zzq", 0 );
+        System.out.println( "Invalidation on add : " + ( after.contains( "zzqx" ) && !before.contains( "zzqx" ) ? "ok" : "FAILED" ) );
+    }
+}
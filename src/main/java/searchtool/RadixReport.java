@@ -0,0 +1,152 @@
+package searchtool;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Build the dictionary as a TernarySearchTree on the array store and as a
+ * RadixTernarySearchTree, both balanced, and print the node count, the
+ * memory and the ns per contains(), prefix and Levenshtein query of each.
+ * Checks that both trees return the same words.
+ *
+ *      java -cp target/classes searchtool.RadixReport data/dic.txt
+ */
+public class RadixReport
+{
+    private static final int ROUNDS = 5;
+
+    static public final void main( String args[] ) throws IOException
+    {
+        String fileName = args.length > 0 ? args[0] : TernarySearchTree.SOURCE_FILE_NAME;
+        List<String> terms = new ArrayList<String>();
+        BufferedReader br = new BufferedReader( new FileReader( fileName ) );
+        String line;
+        while( ( line = br.readLine() ) != null )
+        {
+            if( line.length() > 0 )
+            {
+                terms.add( TSTFolding.fold( line ) );
+            }
+        }
+        br.close();
+
+        TernarySearchTree tst = new TernarySearchTree( new ArrayNodeStore() );
+        tst.bulkLoad( terms );
+        ( (ArrayNodeStore)tst.getNodes() ).trimToSize();
+        RadixTernarySearchTree radix = new RadixTernarySearchTree();
+        radix.bulkLoad( terms );
+        radix.trimToSize();
+
+        Random random = new Random( 8 );
+        List<String> queries = new ArrayList<String>();
+        for( int i = 0; i < 5000; i++ )
+        {
+            String term = terms.get( random.nextInt( terms.size() ) );
+            if( i % 2 == 0 && term.length() > 2 )
+            {
+                int at = random.nextInt( term.length() );
+                term = term.substring( 0, at ) + (char)( 'a' + random.nextInt( 26 ) ) + term.substring( at + 1 );
+            }
+            queries.add( term );
+        }
+
+        int bad = 0;
+        for( String q : queries )
+        {
+            if( tst.contains( q ) != radix.contains( q ) )
+            {
+                bad++;
+            }
+            for( int d = 0; d <= 1; d++ )
+            {
+                HashSet<String> expected = new HashSet<String>();
+                HashSet<String> got = new HashSet<String>();
+                tst.levenshteinNeighbours( expected, q, d );
+                radix.levenshteinNeighbours( got, q, d );
+                bad += expected.equals( got ) ? 0 : 1;
+
+                String prefix = q.substring( 0, Math.min( 3, q.length() ) );
+                PrefixCursor cursor = tst.prefixCursor( d );
+                cursor.push( prefix );
+                expected = new HashSet<String>();
+                got = new HashSet<String>();
+                cursor.results( expected );
+                radix.beginWith( got, prefix, d );
+                bad += expected.equals( got ) ? 0 : 1;
+            }
+        }
+
+        long[] tstTimes = new long[3];
+        long[] radixTimes = new long[3];
+        int sink = 0;
+        for( int round = 0; round < ROUNDS; round++ )
+        {
+            boolean measure = round > 0;
+            for( int i = 0; i < 2; i++ )
+            {
+                boolean compressed = ( i + round ) % 2 == 0;
+                long t1 = System.nanoTime();
+                for( String q : queries )
+                {
+                    sink += ( compressed ? radix.contains( q ) : tst.contains( q ) ) ? 1 : 0;
+                }
+                long t2 = System.nanoTime();
+                for( String q : queries )
+                {
+                    HashSet<String> ret = new HashSet<String>();
+                    String prefix = q.substring( 0, Math.min( 4, q.length() ) );
+                    if( compressed )
+                    {
+                        radix.beginWith( ret, prefix, 0 );
+                    }
+                    else
+                    {
+                        // TernarySearchTree.beginWith() stops at a prefix which is a word
+                        PrefixCursor cursor = tst.prefixCursor( 0 );
+                        cursor.push( prefix );
+                        cursor.results( ret );
+                    }
+                    sink += ret.size();
+                }
+                long t3 = System.nanoTime();
+                for( String q : queries )
+                {
+                    HashSet<String> ret = new HashSet<String>();
+                    if( compressed )
+                    {
+                        radix.levenshteinNeighbours( ret, q, 1 );
+                    }
+                    else
+                    {
+                        tst.levenshteinNeighbours( ret, q, 1 );
+                    }
+                    sink += ret.size();
+                }
+                long t4 = System.nanoTime();
+                if( measure )
+                {
+                    long[] times = compressed ? radixTimes : tstTimes;
+                    times[0] += t2 - t1;
+                    times[1] += t3 - t2;
+                    times[2] += t4 - t3;
+                }
+            }
+        }
+
+        long n = (long)queries.size() * ( ROUNDS - 1 );
+        System.out.println( tst.size() + " terms, " + queries.size() + " queries, half with a typo" );
+        System.out.println( String.format( "%-24s %10s %10s %12s %12s %14s", "tree", "nodes", "bytes",
+            "contains ns", "prefix ns", "levenshtein ns" ) );
+        System.out.println( String.format( "%-24s %10d %10d %12d %12d %14d", "TernarySearchTree", tst.getTotalNodes(),
+            tst.memoryUsage(), tstTimes[0] / n, tstTimes[1] / n, tstTimes[2] / n ) );
+        System.out.println( String.format( "%-24s %10d %10d %12d %12d %14d", "RadixTernarySearchTree",
+            radix.getTotalNodes(), radix.memoryUsage(), radixTimes[0] / n, radixTimes[1] / n, radixTimes[2] / n ) );
+        System.out.println( String.format( "nodes -%.1f%%, %d characters in runs", 100.0 - 100.0 * radix.getTotalNodes()
+            / tst.getTotalNodes(), radix.getTotalChars() ) );
+        System.out.println( bad == 0 ? "same results" : bad + " DIFFERENT RESULTS" );
+        System.out.println( "(" + sink + ")" );
+    }
+}
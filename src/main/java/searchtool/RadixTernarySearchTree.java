@@ -0,0 +1,524 @@
+package searchtool;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+
+/**
+ * Path compressed ternary search tree: a node holds a run of characters
+ * instead of one. Left and right compare on the first character of the
+ * run, the middle child continues after the whole run, and a ref marks a
+ * word ending at the end of the run. A dictionary's unique suffixes, which
+ * TernarySearchTree stores as chains of single child nodes, become one node
+ * each; add() splits a run where a new branch appears.
+ *
+ * Nodes live in parallel arrays, 26 bytes each with the first character
+ * of the run kept inline for the left/right steps, and the runs in one
+ * shared char array, 2 bytes per character; a split reuses the characters
+ * of the run it splits. contains(), beginWith() and levenshteinNeighbours()
+ * consume a run in one step. The searches whose results depend on the
+ * tree shape, nearNeighbours() and nearSearchWithSuffix(), are left to
+ * TernarySearchTree, and so is remove(): merging runs back would need
+ * their characters to be adjacent in the shared array.
+ */
+public class RadixTernarySearchTree
+{
+    private static final int LEFT = 1;
+    private static final int RIGHT = 2;
+    private static final int MIDDLE = 3;
+
+    private char[] m_first;
+    private int[] m_left;
+    private int[] m_middle;
+    private int[] m_right;
+    private int[] m_ref;
+    private int[] m_start;
+    private int[] m_length;
+    private int m_nodes = 0;
+
+    private char[] m_chars;
+    private int m_used = 0;
+
+    private int m_root = TSTNodeStore.NULL;
+    private int m_size = 0;
+    private final TermTable m_terms = new TermTable();
+
+    public RadixTernarySearchTree()
+    {
+        allocate( 1024 );
+        m_chars = new char[ 8192 ];
+    }
+
+    private void allocate( int capacity )
+    {
+        m_first = Arrays.copyOf( m_first == null ? new char[ 0 ] : m_first, capacity );
+        m_left = Arrays.copyOf( m_left == null ? new int[ 0 ] : m_left, capacity );
+        m_middle = Arrays.copyOf( m_middle == null ? new int[ 0 ] : m_middle, capacity );
+        m_right = Arrays.copyOf( m_right == null ? new int[ 0 ] : m_right, capacity );
+        m_ref = Arrays.copyOf( m_ref == null ? new int[ 0 ] : m_ref, capacity );
+        m_start = Arrays.copyOf( m_start == null ? new int[ 0 ] : m_start, capacity );
+        m_length = Arrays.copyOf( m_length == null ? new int[ 0 ] : m_length, capacity );
+    }
+
+    private int newNode( int start, int length )
+    {
+        if( m_nodes == m_left.length )
+        {
+            allocate( m_nodes + ( m_nodes >> 1 ) );
+        }
+        int node = m_nodes++;
+        m_left[ node ] = TSTNodeStore.NULL;
+        m_middle[ node ] = TSTNodeStore.NULL;
+        m_right[ node ] = TSTNodeStore.NULL;
+        m_ref[ node ] = -1;
+        m_first[ node ] = m_chars[ start ];
+        m_start[ node ] = start;
+        m_length[ node ] = length;
+        return node;
+    }
+
+    /**
+     * Node with the run term[ from .. ).
+     */
+    private int newRun( String term, int from )
+    {
+        int length = term.length() - from;
+        if( m_used + length > m_chars.length )
+        {
+            m_chars = Arrays.copyOf( m_chars, Math.max( m_used + length, m_chars.length + ( m_chars.length >> 1 ) ) );
+        }
+        term.getChars( from, term.length(), m_chars, m_used );
+        m_used += length;
+        return newNode( m_used - length, length );
+    }
+
+    /**
+     * Cut the run of node after k characters, the rest moves to a new
+     * middle child which takes over the ref and the middle subtree.
+     */
+    private void split( int node, int k )
+    {
+        int rest = newNode( m_start[ node ] + k, m_length[ node ] - k );
+        m_middle[ rest ] = m_middle[ node ];
+        m_ref[ rest ] = m_ref[ node ];
+        m_length[ node ] = k;
+        m_middle[ node ] = rest;
+        m_ref[ node ] = -1;
+    }
+
+    /**
+     * Add a word.
+     * @param term
+     * @param ref
+     */
+    public void add( String term, int ref )
+    {
+        if( term == null || term.length() <= 0 )
+        {
+            return;
+        }
+        int len = term.length();
+        int idx = 0;
+        int parent = TSTNodeStore.NULL;
+        int dir = MIDDLE;
+        int cur = m_root;
+        while( cur != TSTNodeStore.NULL )
+        {
+            char ch = term.charAt( idx );
+            char first = m_first[ cur ];
+            if( ch < first )
+            {
+                parent = cur;
+                dir = LEFT;
+                cur = m_left[ cur ];
+                continue;
+            }
+            if( ch > first )
+            {
+                parent = cur;
+                dir = RIGHT;
+                cur = m_right[ cur ];
+                continue;
+            }
+            int start = m_start[ cur ];
+            int run = m_length[ cur ];
+            int k = 1;
+            idx++;
+            while( k < run && idx < len && m_chars[ start + k ] == term.charAt( idx ) )
+            {
+                k++;
+                idx++;
+            }
+            if( k < run )
+            {
+                split( cur, k );
+            }
+            if( idx == len )
+            {
+                if( m_ref[ cur ] == -1 )
+                {
+                    m_size++;
+                }
+                m_ref[ cur ] = ref;
+                m_terms.put( ref, term );
+                return;
+            }
+            parent = cur;
+            dir = MIDDLE;
+            cur = m_middle[ cur ];
+        }
+
+        int node = newRun( term, idx );
+        m_ref[ node ] = ref;
+        if( parent == TSTNodeStore.NULL )
+        {
+            m_root = node;
+        }
+        else if( dir == LEFT )
+        {
+            m_left[ parent ] = node;
+        }
+        else if( dir == RIGHT )
+        {
+            m_right[ parent ] = node;
+        }
+        else
+        {
+            m_middle[ parent ] = node;
+        }
+        m_size++;
+        m_terms.put( ref, term );
+    }
+
+    /**
+     * Add the terms balanced, like TernarySearchTree.bulkLoad(). Refs are
+     * assigned in sorted order, starting after the largest ref in use.
+     * @param terms
+     */
+    public void bulkLoad( Collection<String> terms )
+    {
+        String[] sorted = new String[ terms.size() ];
+        int n = 0;
+        for( String term : terms )
+        {
+            if( term != null && term.length() > 0 )
+            {
+                sorted[n++] = term;
+            }
+        }
+        Arrays.sort( sorted, 0, n );
+        int unique = 0;
+        for( int i = 0; i < n; i++ )
+        {
+            if( unique == 0 || !sorted[i].equals( sorted[unique - 1] ) )
+            {
+                sorted[unique++] = sorted[i];
+            }
+        }
+        addMedians( sorted, 0, unique, m_terms.slots() );
+    }
+
+    private void addMedians( String[] sorted, int from, int to, int baseRef )
+    {
+        if( from >= to )
+        {
+            return;
+        }
+        int mid = ( from + to ) >>> 1;
+        add( sorted[mid], baseRef + mid );
+        addMedians( sorted, from, mid, baseRef );
+        addMedians( sorted, mid + 1, to, baseRef );
+    }
+
+    /**
+     * @param prefix
+     * @param whole the prefix must end with a run
+     * @return the node whose run holds the last character of the prefix,
+     *         NULL if no term begins with it.
+     */
+    private int find( String prefix, boolean whole )
+    {
+        int len = prefix.length();
+        int idx = 0;
+        int cur = m_root;
+        while( cur != TSTNodeStore.NULL )
+        {
+            char ch = prefix.charAt( idx );
+            char first = m_first[ cur ];
+            if( ch < first )
+            {
+                cur = m_left[ cur ];
+            }
+            else if( ch > first )
+            {
+                cur = m_right[ cur ];
+            }
+            else
+            {
+                int start = m_start[ cur ];
+                int run = m_length[ cur ];
+                if( run > len - idx )
+                {
+                    if( whole )
+                    {
+                        return TSTNodeStore.NULL;
+                    }
+                    run = len - idx;
+                }
+                for( int k = 1; k < run; k++ )
+                {
+                    if( m_chars[ start + k ] != prefix.charAt( idx + k ) )
+                    {
+                        return TSTNodeStore.NULL;
+                    }
+                }
+                idx += run;
+                if( idx == len )
+                {
+                    return cur;
+                }
+                cur = m_middle[ cur ];
+            }
+        }
+        return TSTNodeStore.NULL;
+    }
+
+    /**
+     * Exact match.
+     * @param term
+     * @return
+     */
+    public boolean contains( String term )
+    {
+        if( term == null || term.length() <= 0 )
+        {
+            return false;
+        }
+        int node = find( term, true );
+        return node != TSTNodeStore.NULL && m_ref[ node ] != -1;
+    }
+
+    /**
+     * Words beginning with a prefix within the edit distance of the word,
+     * the PrefixCursor semantics. Distance 0 returns every word beginning
+     * with the word.
+     * @param ret
+     * @param word
+     * @param distance
+     */
+    public void beginWith( HashSet<String> ret, String word, int distance )
+    {
+        if( word == null || distance < 0 )
+        {
+            return;
+        }
+        if( distance == 0 )
+        {
+            if( word.length() == 0 )
+            {
+                collect( ret, m_root );
+                return;
+            }
+            int node = find( word, false );
+            if( node != TSTNodeStore.NULL )
+            {
+                addRef( ret, node );
+                collect( ret, m_middle[ node ] );
+            }
+            return;
+        }
+        walk( ret, word, distance, true );
+    }
+
+    /**
+     * All the words within the Levenshtein distance of the word, same
+     * result as TernarySearchTree.levenshteinNeighbours().
+     * @param ret
+     * @param word
+     * @param distance
+     */
+    public void levenshteinNeighbours( HashSet<String> ret, String word, int distance )
+    {
+        if( word == null || distance < 0 )
+        {
+            return;
+        }
+        walk( ret, word, distance, false );
+    }
+
+    /**
+     * Depth first walk with one dynamic programming row per character of
+     * the middle path, a run computes its rows in one go. The frames hold
+     * ( node, depth, 0 ), depth being the number of characters above the
+     * node's run. The middle child is pushed last so its subtree is done
+     * before a sibling reuses the rows below depth.
+     * @param prefix match the word against prefixes of the terms
+     */
+    private void walk( HashSet<String> ret, String word, int distance, boolean prefix )
+    {
+        int len = word.length();
+        int width = len + 1;
+        if( prefix && len <= distance )
+        {
+            collect( ret, m_root );
+            return;
+        }
+        int[] rows = new int[ ( len + distance + 2 ) * width ];
+        for( int j = 0; j < width; j++ )
+        {
+            rows[j] = j;
+        }
+        SearchStack stack = SearchStack.acquire();
+        try
+        {
+            push( stack, m_root, 0 );
+            while( !stack.isEmpty() )
+            {
+                stack.pop();
+                int node = stack.node();
+                int depth = stack.offset();
+                push( stack, m_right[ node ], depth );
+                push( stack, m_left[ node ], depth );
+
+                int start = m_start[ node ];
+                int run = m_length[ node ];
+                int min = 0;
+                boolean matched = false;
+                int k = 0;
+                while( k < run )
+                {
+                    char ch = m_chars[ start + k ];
+                    int prev = ( depth + k ) * width;
+                    int cur = prev + width;
+                    rows[cur] = rows[prev] + 1;
+                    min = rows[cur];
+                    for( int j = 1; j <= len; j++ )
+                    {
+                        int d = Math.min( rows[cur + j - 1], rows[prev + j] ) + 1;
+                        int sub = rows[prev + j - 1] + ( word.charAt( j - 1 ) == ch ? 0 : 1 );
+                        rows[cur + j] = Math.min( d, sub );
+                        min = Math.min( min, rows[cur + j] );
+                    }
+                    k++;
+                    if( prefix && rows[cur + len] <= distance )
+                    {
+                        matched = true;
+                        break;
+                    }
+                    if( min > distance )
+                    {
+                        break;
+                    }
+                }
+                if( matched )
+                {
+                    // every word through the rest of the run
+                    addRef( ret, node );
+                    collect( ret, m_middle[ node ] );
+                    continue;
+                }
+                if( k < run )
+                {
+                    continue;
+                }
+                if( !prefix && rows[ ( depth + run ) * width + len ] <= distance )
+                {
+                    addRef( ret, node );
+                }
+                if( min <= distance )
+                {
+                    push( stack, m_middle[ node ], depth + run );
+                }
+            }
+        }
+        finally
+        {
+            SearchStack.release( stack );
+        }
+    }
+
+    private void addRef( HashSet<String> ret, int node )
+    {
+        if( m_ref[ node ] != -1 )
+        {
+            ret.add( m_terms.get( m_ref[ node ] ) );
+        }
+    }
+
+    /**
+     * Add every word of the subtree.
+     */
+    private void collect( HashSet<String> ret, int node )
+    {
+        SearchStack stack = SearchStack.acquire();
+        try
+        {
+            push( stack, node, 0 );
+            while( !stack.isEmpty() )
+            {
+                stack.pop();
+                node = stack.node();
+                addRef( ret, node );
+                push( stack, m_right[ node ], 0 );
+                push( stack, m_middle[ node ], 0 );
+                push( stack, m_left[ node ], 0 );
+            }
+        }
+        finally
+        {
+            SearchStack.release( stack );
+        }
+    }
+
+    private static void push( SearchStack stack, int node, int depth )
+    {
+        if( node != TSTNodeStore.NULL )
+        {
+            stack.push( node, depth, 0 );
+        }
+    }
+
+    /**
+     * @return number of words.
+     */
+    public int size()
+    {
+        return m_size;
+    }
+
+    /**
+     * @return number of nodes, each holding a run of characters.
+     */
+    public int getTotalNodes()
+    {
+        return m_nodes;
+    }
+
+    /**
+     * @return number of characters in the runs, the node count of the
+     *         same tree without path compression.
+     */
+    public int getTotalChars()
+    {
+        return m_used;
+    }
+
+    /**
+     * Release the unused tail of the arrays once the tree is built.
+     */
+    public void trimToSize()
+    {
+        allocate( Math.max( m_nodes, 16 ) );
+        m_chars = Arrays.copyOf( m_chars, Math.max( m_used, 16 ) );
+    }
+
+    /**
+     * Estimated heap footprint of the nodes, runs and terms in bytes.
+     * @return
+     */
+    public long memoryUsage()
+    {
+        // 7 node arrays and the run chars with 16 byte headers
+        return 8L * 16 + 26L * m_left.length + 2L * m_chars.length + m_terms.memoryUsage();
+    }
+}
@@ -0,0 +1,86 @@
+package searchtool;
+
+/**
+ * Explicit stack of ( node, offset, distance ) frames for the tree walks.
+ *
+ * Each thread keeps one stack and reuses it from query to query, so a walk
+ * allocates nothing once the stack has grown to the depth it needs. A
+ * search started from inside a result visitor finds the thread's stack
+ * busy and gets a fresh one.
+ */
+final class SearchStack
+{
+    private static final int INITIAL_FRAMES = 64;
+
+    /** a stack grown beyond this is dropped on release instead of kept */
+    private static final int MAX_RETAINED_FRAMES = 1 << 16;
+
+    private static final ThreadLocal<SearchStack> STACKS = ThreadLocal.withInitial( SearchStack::new );
+
+    private int[] m_frames = new int[ 3 * INITIAL_FRAMES ];
+    private int m_top = 0;
+    private boolean m_busy = false;
+
+    static SearchStack acquire()
+    {
+        SearchStack stack = STACKS.get();
+        if( stack.m_busy )
+        {
+            stack = new SearchStack();
+        }
+        stack.m_busy = true;
+        return stack;
+    }
+
+    static void release( SearchStack stack )
+    {
+        stack.m_top = 0;
+        stack.m_busy = false;
+        if( stack.m_frames.length > 3 * MAX_RETAINED_FRAMES )
+        {
+            stack.m_frames = new int[ 3 * INITIAL_FRAMES ];
+        }
+    }
+
+    void push( int node, int offset, int distance )
+    {
+        if( m_top + 3 > m_frames.length )
+        {
+            int[] grown = new int[ m_frames.length * 2 ];
+            System.arraycopy( m_frames, 0, grown, 0, m_top );
+            m_frames = grown;
+        }
+        m_frames[ m_top++ ] = node;
+        m_frames[ m_top++ ] = offset;
+        m_frames[ m_top++ ] = distance;
+    }
+
+    boolean isEmpty()
+    {
+        return m_top == 0;
+    }
+
+    /**
+     * Drop the top frame, its fields stay readable through node(), offset()
+     * and distance() until the next push.
+     */
+    void pop()
+    {
+        m_top -= 3;
+    }
+
+    int node()
+    {
+        return m_frames[ m_top ];
+    }
+
+    int offset()
+    {
+        return m_frames[ m_top + 1 ];
+    }
+
+    int distance()
+    {
+        return m_frames[ m_top + 2 ];
+    }
+}
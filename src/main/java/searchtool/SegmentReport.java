@@ -0,0 +1,155 @@
+package searchtool;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Segment run together queries of 2 to 4 dictionary words, half of them
+ * with a typo, and print the ns per query of segment() and how often the
+ * original words are among its results, next to splitting the query by
+ * chaining nearSearchWithSuffix() overflow tokens.
+ *
+ *      java -cp target/classes searchtool.SegmentReport data/dic.txt
+ */
+public class SegmentReport
+{
+    private static final int MAX = 10;
+    private static final int ROUNDS = 6;
+
+    static public final void main( String args[] ) throws IOException
+    {
+        String fileName = args.length > 0 ? args[0] : TernarySearchTree.SOURCE_FILE_NAME;
+        TernarySearchTree tst = new TernarySearchTree( new ArrayNodeStore() );
+        tst.setBalancedIndex( true );
+        tst.index( fileName );
+
+        List<String> words = new ArrayList<String>();
+        BufferedReader br = new BufferedReader( new FileReader( fileName ) );
+        String line;
+        while( ( line = br.readLine() ) != null )
+        {
+            // short words make too many ties to expect the original split first
+            if( line.length() >= 3 )
+            {
+                words.add( TSTFolding.fold( line ) );
+            }
+        }
+        br.close();
+
+        Random random = new Random( 21 );
+        List<String> queries = new ArrayList<String>();
+        List<String> originals = new ArrayList<String>();
+        for( int i = 0; i < 1000; i++ )
+        {
+            StringBuilder query = new StringBuilder();
+            StringBuilder original = new StringBuilder();
+            int n = 2 + random.nextInt( 3 );
+            for( int w = 0; w < n; w++ )
+            {
+                String word = words.get( random.nextInt( words.size() ) );
+                query.append( word );
+                original.append( w > 0 ? " " : "" ).append( word );
+            }
+            if( i % 2 == 1 )
+            {
+                int at = random.nextInt( query.length() );
+                query.setCharAt( at, (char)( 'a' + random.nextInt( 26 ) ) );
+            }
+            queries.add( query.toString() );
+            originals.add( original.toString() );
+        }
+
+        // segment() is only compiled after many calls, warm it up
+        for( int i = 0; i < 30 * queries.size(); i++ )
+        {
+            tst.segment( queries.get( i % queries.size() ), 0, MAX );
+        }
+
+        System.out.println( queries.size() + " queries of 2 to 4 words, half with a typo, max " + MAX
+            + " segmentations" );
+        System.out.println( String.format( "%-24s %8s %12s %12s %12s", "", "distance", "ns/query", "found",
+            "found first" ) );
+        for( int distance = 0; distance <= 1; distance++ )
+        {
+            for( int legacy = 0; legacy <= 1; legacy++ )
+            {
+                long nanos = 0;
+                int found = 0;
+                int first = 0;
+                for( int round = 0; round < ROUNDS; round++ )
+                {
+                    found = 0;
+                    first = 0;
+                    long t1 = System.nanoTime();
+                    for( int i = 0; i < queries.size(); i++ )
+                    {
+                        List<String> results = legacy == 1 ? chain( tst, queries.get( i ), distance )
+                            : strings( tst.segment( queries.get( i ), distance, MAX ) );
+                        int at = results.indexOf( originals.get( i ) );
+                        found += at >= 0 ? 1 : 0;
+                        first += at == 0 ? 1 : 0;
+                    }
+                    long t2 = System.nanoTime();
+                    // the first half warms up
+                    if( round >= ROUNDS / 2 )
+                    {
+                        nanos += t2 - t1;
+                    }
+                }
+                System.out.println( String.format( "%-24s %8d %12d %12d %12d", legacy == 1 ? "nearSearchWithSuffix"
+                    : "segment()", distance, nanos / ( ROUNDS - ROUNDS / 2 ) / queries.size(), found, first ) );
+            }
+        }
+
+        for( String query : new String[] { "newyorkhotels", "thecatsat", "helloworld" } )
+        {
+            System.out.println( query + " -> " + tst.segment( query, 1, 3 ) );
+        }
+    }
+
+    private static List<String> strings( List<TSTSegmentation> segmentations )
+    {
+        List<String> ret = new ArrayList<String>( segmentations.size() );
+        for( TSTSegmentation segmentation : segmentations )
+        {
+            ret.add( segmentation.toString() );
+        }
+        return ret;
+    }
+
+    /**
+     * Split the query the way callers of nearSearchWithSuffix() had to:
+     * parse every "term,suffix,distance" token and search the suffix again.
+     */
+    private static List<String> chain( TernarySearchTree tst, String query, int distance )
+    {
+        List<String> ret = new ArrayList<String>();
+        chain( tst, query, distance, "", ret );
+        return ret;
+    }
+
+    private static void chain( TernarySearchTree tst, String query, int distance, String words, List<String> ret )
+    {
+        HashSet<String> results = new HashSet<String>();
+        tst.nearSearchWithSuffix( results, query, distance );
+        for( String result : results )
+        {
+            if( ret.size() >= MAX )
+            {
+                return;
+            }
+            String[] token = result.split( "," );
+            if( token.length == 3 )
+            {
+                chain( tst, token[1], Integer.parseInt( token[2] ), words + token[0] + " ", ret );
+            }
+            else
+            {
+                ret.add( words + result );
+            }
+        }
+    }
+}
@@ -0,0 +1,449 @@
+package searchtool;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * TernarySearchTree.segment(): split a run together query into dictionary
+ * words with at most a given number of edits over all the words.
+ *
+ * A forward pass walks the tree once from every offset the query can be
+ * split at, collecting the words that match query[ offset .. end ) for
+ * some end, with their edits. The walk carries a banded Levenshtein row
+ * per depth: a prefix of length k can only be within b edits of
+ * query[ offset .. offset + j ) for k - b <= j <= k + b, so a row costs
+ * 2b + 1 cells, and a subtree is pruned once its row exceeds the budget.
+ * An offset is only walked if it is reachable, with the edits left after
+ * the cheapest way to reach it.
+ *
+ * A backward pass then computes, for each state ( offset, edits left ),
+ * the best max segmentations of query[ offset .. ) once; a state combines
+ * each word starting at offset with the memoized best of ( end, edits
+ * left - edits of the word ). Segmentations share their tails, so a state
+ * allocates one link per kept segmentation. Best is fewest words, then
+ * fewest edits, then highest total term weight, then longest first words.
+ */
+final class Segmenter
+{
+    private final TernarySearchTree m_tree;
+    private final TSTNodeStore m_nodes;
+    private final int m_root;
+    private final String m_query;
+    private final int m_len;
+    private final int m_distance;
+    private final int m_max;
+    private int m_visited;
+
+    // matches[offset] holds ( ref, end, edits ) triples
+    private final int[][] m_matches;
+    private final int[] m_matchCount;
+    // fewest edits to split query[ 0 .. offset ), > m_distance if unreachable
+    private final int[] m_minEdits;
+    private int[] m_rows;
+
+    // merge heap of match indices, with the rests after each match, the
+    // next rest to take and the weight of its word
+    private int[] m_heap = new int[ 0 ];
+    private Segment[][] m_rests;
+    private int[] m_next;
+    private int[] m_weights;
+
+    /**
+     * A word of a segmentation and the rest after it, shared between the
+     * segmentations of the states before it.
+     */
+    private static final class Segment
+    {
+        final int ref;
+        final int end;
+        final int distance;
+        final int words;
+        final long weight;
+        final Segment next;
+
+        Segment( int ref, int end, int distance, int words, long weight, Segment next )
+        {
+            this.ref = ref;
+            this.end = end;
+            this.distance = distance;
+            this.words = words;
+            this.weight = weight;
+            this.next = next;
+        }
+    }
+
+    private static final Segment END = new Segment( -1, -1, 0, 0, 0, null );
+    private static final Segment[] AT_END = { END };
+
+    private static final Comparator<Segment> BEST_FIRST = ( a, b ) ->
+    {
+        if( a.words != b.words )
+        {
+            return a.words - b.words;
+        }
+        if( a.distance != b.distance )
+        {
+            return a.distance - b.distance;
+        }
+        if( a.weight != b.weight )
+        {
+            return a.weight > b.weight ? -1 : 1;
+        }
+        for( ; a != null && b != null; a = a.next, b = b.next )
+        {
+            if( a.end != b.end )
+            {
+                return b.end - a.end;
+            }
+            if( a.ref != b.ref )
+            {
+                return a.ref < b.ref ? -1 : 1;
+            }
+        }
+        return 0;
+    };
+
+    /**
+     * @param query normalized query
+     */
+    Segmenter( TernarySearchTree tree, String query, int distance, int max )
+    {
+        m_tree = tree;
+        m_nodes = tree.getNodes();
+        m_root = tree.getRootHandle();
+        m_query = query;
+        m_len = query.length();
+        m_distance = distance;
+        m_max = max;
+        m_matches = new int[ m_len ][];
+        m_matchCount = new int[ m_len ];
+        m_minEdits = new int[ m_len + 1 ];
+    }
+
+    /**
+     * @return number of tree nodes visited by the last segment().
+     */
+    int visited()
+    {
+        return m_visited;
+    }
+
+    List<TSTSegmentation> segment()
+    {
+        List<TSTSegmentation> ret = new ArrayList<TSTSegmentation>();
+        if( m_len == 0 || m_max <= 0 || m_distance < 0 )
+        {
+            return ret;
+        }
+
+        Arrays.fill( m_minEdits, m_distance + 1 );
+        m_minEdits[0] = 0;
+        for( int offset = 0; offset < m_len; offset++ )
+        {
+            if( m_minEdits[ offset ] > m_distance )
+            {
+                continue;
+            }
+            match( offset, m_distance - m_minEdits[ offset ] );
+            int[] matches = m_matches[ offset ];
+            for( int i = 0; i < m_matchCount[ offset ]; i++ )
+            {
+                int end = matches[ 3 * i + 1 ];
+                m_minEdits[ end ] = Math.min( m_minEdits[ end ], m_minEdits[ offset ] + matches[ 3 * i + 2 ] );
+            }
+        }
+        if( m_minEdits[ m_len ] > m_distance )
+        {
+            return ret;
+        }
+
+        // best[offset][left], the best segmentations of query[ offset .. )
+        // with at most left edits
+        Segment[][][] best = new Segment[ m_len + 1 ][][];
+        best[ m_len ] = new Segment[ m_distance + 1 ][];
+        Arrays.fill( best[ m_len ], AT_END );
+        List<Segment> kept = new ArrayList<Segment>();
+        for( int offset = m_len - 1; offset >= 0; offset-- )
+        {
+            if( m_minEdits[ offset ] > m_distance )
+            {
+                continue;
+            }
+            int budget = m_distance - m_minEdits[ offset ];
+            best[ offset ] = new Segment[ budget + 1 ][];
+            int count = m_matchCount[ offset ];
+            if( m_heap.length < count )
+            {
+                m_heap = new int[ count ];
+                m_rests = new Segment[ count ][];
+                m_next = new int[ count ];
+                m_weights = new int[ count ];
+            }
+            int[] matches = m_matches[ offset ];
+            for( int i = 0; i < count; i++ )
+            {
+                m_weights[i] = m_tree.getTermWeight( matches[ 3 * i ] );
+            }
+            for( int left = 0; left <= budget; left++ )
+            {
+                // each word's candidates come sorted with the sorted rests
+                // after it, merge them until max are kept
+                int size = 0;
+                for( int i = 0; i < count; i++ )
+                {
+                    int end = matches[ 3 * i + 1 ];
+                    int edits = matches[ 3 * i + 2 ];
+                    if( edits <= left && best[ end ] != null && left - edits < best[ end ].length
+                        && best[ end ][ left - edits ].length > 0 )
+                    {
+                        m_rests[i] = best[ end ][ left - edits ];
+                        m_next[i] = 0;
+                        m_heap[ size++ ] = i;
+                    }
+                }
+                for( int i = size / 2 - 1; i >= 0; i-- )
+                {
+                    siftDown( matches, i, size );
+                }
+                kept.clear();
+                while( size > 0 && kept.size() < m_max )
+                {
+                    int i = m_heap[0];
+                    Segment rest = m_rests[i][ m_next[i]++ ];
+                    kept.add( new Segment( matches[ 3 * i ], matches[ 3 * i + 1 ], matches[ 3 * i + 2 ] + rest.distance,
+                        rest.words + 1, m_weights[i] + rest.weight, rest == END ? null : rest ) );
+                    if( m_next[i] == m_rests[i].length )
+                    {
+                        m_heap[0] = m_heap[ --size ];
+                    }
+                    siftDown( matches, 0, size );
+                }
+                best[ offset ][ left ] = kept.toArray( new Segment[ kept.size() ] );
+            }
+        }
+
+        for( Segment first : best[0][ m_distance ] )
+        {
+            String[] words = new String[ first.words ];
+            int[] ends = new int[ first.words ];
+            int i = 0;
+            for( Segment s = first; s != null; s = s.next )
+            {
+                words[i] = m_tree.getTerm( s.ref );
+                ends[i++] = s.end;
+            }
+            ret.add( new TSTSegmentation( words, ends, first.distance ) );
+        }
+        return ret;
+    }
+
+    private void siftDown( int[] matches, int at, int size )
+    {
+        int i = m_heap[ at ];
+        while( 2 * at + 1 < size )
+        {
+            int child = 2 * at + 1;
+            if( child + 1 < size && compare( matches, m_heap[ child + 1 ], m_heap[ child ] ) < 0 )
+            {
+                child++;
+            }
+            if( compare( matches, i, m_heap[ child ] ) <= 0 )
+            {
+                break;
+            }
+            m_heap[ at ] = m_heap[ child ];
+            at = child;
+        }
+        m_heap[ at ] = i;
+    }
+
+    /**
+     * BEST_FIRST order of the next candidates of matches a and b, word
+     * plus rest, without building them.
+     */
+    private int compare( int[] matches, int a, int b )
+    {
+        Segment restA = m_rests[a][ m_next[a] ];
+        Segment restB = m_rests[b][ m_next[b] ];
+        if( restA.words != restB.words )
+        {
+            return restA.words - restB.words;
+        }
+        int distanceA = matches[ 3 * a + 2 ] + restA.distance;
+        int distanceB = matches[ 3 * b + 2 ] + restB.distance;
+        if( distanceA != distanceB )
+        {
+            return distanceA - distanceB;
+        }
+        long weightA = m_weights[a] + restA.weight;
+        long weightB = m_weights[b] + restB.weight;
+        if( weightA != weightB )
+        {
+            return weightA > weightB ? -1 : 1;
+        }
+        if( matches[ 3 * a + 1 ] != matches[ 3 * b + 1 ] )
+        {
+            return matches[ 3 * b + 1 ] - matches[ 3 * a + 1 ];
+        }
+        if( matches[ 3 * a ] != matches[ 3 * b ] )
+        {
+            return matches[ 3 * a ] < matches[ 3 * b ] ? -1 : 1;
+        }
+        return BEST_FIRST.compare( restA, restB );
+    }
+
+    private void addMatch( int offset, long ref, int end, int edits )
+    {
+        int[] matches = m_matches[ offset ];
+        int n = m_matchCount[ offset ];
+        if( matches == null )
+        {
+            matches = new int[ 3 * 8 ];
+        }
+        else if( 3 * n == matches.length )
+        {
+            matches = Arrays.copyOf( matches, 2 * matches.length );
+        }
+        matches[ 3 * n ] = (int)ref;
+        matches[ 3 * n + 1 ] = end;
+        matches[ 3 * n + 2 ] = edits;
+        m_matches[ offset ] = matches;
+        m_matchCount[ offset ] = n + 1;
+    }
+
+    /**
+     * Collect the words within budget edits of query[ offset .. end ).
+     */
+    private void match( int offset, int budget )
+    {
+        if( budget == 0 )
+        {
+            matchExact( offset );
+            return;
+        }
+        int width = m_len - offset;
+        int stride = width + 2;
+        int depths = width + budget + 2;
+        if( m_rows == null || m_rows.length < depths * stride )
+        {
+            m_rows = new int[ depths * stride ];
+        }
+        int[] rows = m_rows;
+        int inf = budget + 1;
+        for( int j = 0; j <= Math.min( width, budget ); j++ )
+        {
+            rows[j] = j;
+        }
+        rows[ Math.min( width, budget ) + 1 ] = inf;
+
+        SearchStack stack = SearchStack.acquire();
+        try
+        {
+            push( stack, m_root, 0 );
+            while( !stack.isEmpty() )
+            {
+                stack.pop();
+                int node = stack.node();
+                int depth = stack.offset();
+                m_visited++;
+                push( stack, m_nodes.getRight( node ), depth );
+                push( stack, m_nodes.getLeft( node ), depth );
+
+                // row depth + 1 from row depth, cells lo .. hi of the band
+                int lo = Math.max( 0, depth + 1 - budget );
+                int hi = Math.min( width, depth + 1 + budget );
+                if( lo > hi )
+                {
+                    continue;
+                }
+                char ch = m_nodes.value( node );
+                int prev = depth * stride;
+                int cur = prev + stride;
+                int j = lo;
+                int min;
+                if( lo == 0 )
+                {
+                    rows[ cur ] = rows[ prev ] + 1;
+                    min = rows[ cur ];
+                    j = 1;
+                }
+                else
+                {
+                    rows[ cur + lo - 1 ] = inf;
+                    min = inf;
+                }
+                for( ; j <= hi; j++ )
+                {
+                    int d = Math.min( rows[ cur + j - 1 ], rows[ prev + j ] ) + 1;
+                    int sub = rows[ prev + j - 1 ] + ( m_query.charAt( offset + j - 1 ) == ch ? 0 : 1 );
+                    rows[ cur + j ] = Math.min( d, sub );
+                    min = Math.min( min, rows[ cur + j ] );
+                }
+                rows[ cur + hi + 1 ] = inf;
+
+                long ref = m_nodes.getRef( node );
+                if( ref != -1 )
+                {
+                    for( j = Math.max( lo, 1 ); j <= hi; j++ )
+                    {
+                        if( rows[ cur + j ] <= budget )
+                        {
+                            addMatch( offset, ref, offset + j, rows[ cur + j ] );
+                        }
+                    }
+                }
+                if( min <= budget )
+                {
+                    push( stack, m_nodes.getMiddle( node ), depth + 1 );
+                }
+            }
+        }
+        finally
+        {
+            SearchStack.release( stack );
+        }
+    }
+
+    /**
+     * The words which are prefixes of query[ offset .. ).
+     */
+    private void matchExact( int offset )
+    {
+        int node = m_root;
+        int i = offset;
+        while( node != TSTNodeStore.NULL && i < m_len )
+        {
+            m_visited++;
+            char ch = m_query.charAt( i );
+            char value = m_nodes.value( node );
+            if( ch < value )
+            {
+                node = m_nodes.getLeft( node );
+            }
+            else if( ch > value )
+            {
+                node = m_nodes.getRight( node );
+            }
+            else
+            {
+                i++;
+                long ref = m_nodes.getRef( node );
+                if( ref != -1 )
+                {
+                    addMatch( offset, ref, i, 0 );
+                }
+                node = m_nodes.getMiddle( node );
+            }
+        }
+    }
+
+    private static void push( SearchStack stack, int node, int depth )
+    {
+        if( node != TSTNodeStore.NULL )
+        {
+            stack.push( node, depth, 0 );
+        }
+    }
+}
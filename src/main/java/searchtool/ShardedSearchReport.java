@@ -0,0 +1,127 @@
+package searchtool;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Compare one tree with range and hash sharded trees: time per
+ * levenshteinNeighbours() and beginWith() query, and check that the merged
+ * results equal those of the single tree, also after writing the shards
+ * and mapping them again.
+ *
+ * beginWith() stops at a prefix which is itself a word, but with hash
+ * shards the longer words can sit in another shard, so there the prefix
+ * results differ.
+ *
+ *      java -cp target/classes searchtool.ShardedSearchReport data/dic.txt 4
+ */
+public class ShardedSearchReport
+{
+    private static final int QUERIES = 2000;
+
+    interface Search
+    {
+        void search( HashSet<String> ret, String word );
+    }
+
+    private static long[] run( List<String> queries, Search search, List<HashSet<String>> results )
+    {
+        long found = 0;
+        long t1 = System.nanoTime();
+        for( String query : queries )
+        {
+            HashSet<String> ret = new HashSet<String>();
+            search.search( ret, query );
+            found += ret.size();
+            results.add( ret );
+        }
+        long t2 = System.nanoTime();
+        return new long[] { ( t2 - t1 ) / queries.size(), found };
+    }
+
+    private static void report( String name, List<String> queries, Search fuzzy, Search prefix,
+                                List<HashSet<String>> expectFuzzy, List<HashSet<String>> expectPrefix )
+    {
+        List<HashSet<String>> gotFuzzy = new ArrayList<HashSet<String>>();
+        List<HashSet<String>> gotPrefix = new ArrayList<HashSet<String>>();
+        run( queries.subList( 0, QUERIES / 4 ), fuzzy, new ArrayList<HashSet<String>>() );
+        long[] f = run( queries, fuzzy, gotFuzzy );
+        long[] p = run( queries, prefix, gotPrefix );
+        String fuzzySame = expectFuzzy == null ? "" : gotFuzzy.equals( expectFuzzy ) ? "same" : "DIFFERENT";
+        String prefixSame = expectPrefix == null ? "" : gotPrefix.equals( expectPrefix ) ? "same" : "DIFFERENT";
+        System.out.println( String.format( "%-24s %10d %10d %10s %10s", name, f[0], p[0], fuzzySame, prefixSame ) );
+    }
+
+    static public final void main( String args[] ) throws Exception
+    {
+        String fileName = args.length > 0 ? args[0] : TernarySearchTree.SOURCE_FILE_NAME;
+        int shards = args.length > 1 ? Integer.parseInt( args[1] ) : 4;
+
+        LinkedHashSet<String> terms = new LinkedHashSet<String>();
+        BufferedReader br = new BufferedReader( new FileReader( fileName ) );
+        String line;
+        while( ( line = br.readLine() ) != null )
+        {
+            terms.add( line.toLowerCase() );
+        }
+        br.close();
+        List<String> list = new ArrayList<String>( terms );
+        list.remove( "" );
+
+        Random random = new Random( 9 );
+        List<String> queries = new ArrayList<String>();
+        for( int i = 0; i < QUERIES; i++ )
+        {
+            String term = list.get( random.nextInt( list.size() ) );
+            if( i % 2 == 0 && term.length() > 2 )
+            {
+                int at = random.nextInt( term.length() );
+                term = term.substring( 0, at ) + (char)( 'a' + random.nextInt( 26 ) ) + term.substring( at + 1 );
+            }
+            queries.add( term );
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool( shards );
+        try
+        {
+            TernarySearchTree single = new TernarySearchTree( new ArrayNodeStore() );
+            single.bulkLoad( terms );
+            ShardedTernarySearchTree byRange = new ShardedTernarySearchTree( ShardedTernarySearchTree.balancedBounds( terms, shards ), executor );
+            byRange.bulkLoad( terms );
+            ShardedTernarySearchTree byHash = new ShardedTernarySearchTree( shards, executor );
+            byHash.bulkLoad( terms );
+
+            System.out.println( shards + " shards, " + Runtime.getRuntime().availableProcessors() + " cpus, ns per query, results against the single tree" );
+            System.out.println( String.format( "%-24s %10s %10s %10s %10s", "", "lev d=1", "prefix", "lev d=1", "prefix" ) );
+            List<HashSet<String>> fuzzy = new ArrayList<HashSet<String>>();
+            List<HashSet<String>> prefix = new ArrayList<HashSet<String>>();
+            run( queries, ( ret, word ) -> single.levenshteinNeighbours( ret, word, 1 ), fuzzy );
+            run( queries, ( ret, word ) -> single.beginWith( ret, word.substring( 0, Math.min( 3, word.length() ) ), 0 ), prefix );
+
+            report( "single tree", queries, ( ret, word ) -> single.levenshteinNeighbours( ret, word, 1 ),
+                ( ret, word ) -> single.beginWith( ret, word.substring( 0, Math.min( 3, word.length() ) ), 0 ), null, null );
+            report( "range shards", queries, ( ret, word ) -> byRange.levenshteinNeighbours( ret, word, 1 ),
+                ( ret, word ) -> byRange.beginWith( ret, word.substring( 0, Math.min( 3, word.length() ) ), 0 ), fuzzy, prefix );
+            report( "hash shards", queries, ( ret, word ) -> byHash.levenshteinNeighbours( ret, word, 1 ),
+                ( ret, word ) -> byHash.beginWith( ret, word.substring( 0, Math.min( 3, word.length() ) ), 0 ), fuzzy, prefix );
+
+            Path dir = Files.createTempDirectory( "shards" );
+            byRange.write( dir );
+            ShardedTernarySearchTree mapped = ShardedTernarySearchTree.open( dir, executor );
+            report( "mapped range shards", queries, ( ret, word ) -> mapped.levenshteinNeighbours( ret, word, 1 ),
+                ( ret, word ) -> mapped.beginWith( ret, word.substring( 0, Math.min( 3, word.length() ) ), 0 ), fuzzy, prefix );
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,597 @@
+package searchtool;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * A vocabulary split over independent TernarySearchTree shards, either by
+ * ranges of the leading character or by the hash of the whole term.
+ *
+ * Queries go to the shards which can hold a result and run on the
+ * executor when there is more than one; the results are merged. With range
+ * shards an exact or prefix query touches a single shard. Fuzzy queries
+ * may change the first character, so they go to every shard.
+ *
+ * Every shard is a plain tree: it can be written with shard( i ).write()
+ * and replaced with loadShard(), so shards can later be served by separate
+ * processes. Refs are assigned per shard.
+ *
+ * add() and remove() lock only the shard they change. As for a single
+ * tree, they may run alongside searches only if the shards are in copy on
+ * write mode, shard( i ).setCopyOnWrite( true ).
+ */
+public class ShardedTernarySearchTree
+{
+    private static final String MANIFEST = "shards.properties";
+
+    /** first leading character of shard i + 1, null for hash shards */
+    private final char[] m_bounds;
+    // replaced as a whole by loadShard(), read it once per operation
+    private volatile TernarySearchTree[] m_shards;
+    private final ExecutorService m_executor;
+
+    /**
+     * Shards by leading character: shard 0 holds terms starting below
+     * bounds[0], shard i those from bounds[i - 1] up to below bounds[i].
+     * @param bounds ascending, bounds.length + 1 shards
+     * @param executor runs the shards of a query in parallel
+     */
+    public ShardedTernarySearchTree( char[] bounds, ExecutorService executor )
+    {
+        for( int i = 1; i < bounds.length; i++ )
+        {
+            if( bounds[i] <= bounds[ i - 1 ] )
+            {
+                throw new IllegalArgumentException( "bounds must be ascending" );
+            }
+        }
+        m_bounds = bounds.clone();
+        TernarySearchTree[] trees = new TernarySearchTree[ bounds.length + 1 ];
+        for( int i = 0; i < trees.length; i++ )
+        {
+            trees[i] = new TernarySearchTree( new ArrayNodeStore() );
+        }
+        m_shards = trees;
+        m_executor = executor;
+    }
+
+    /**
+     * Shards by hash of the whole term. Only exact queries go to a single
+     * shard.
+     * @param shards
+     * @param executor
+     */
+    public ShardedTernarySearchTree( int shards, ExecutorService executor )
+    {
+        if( shards <= 0 )
+        {
+            throw new IllegalArgumentException( "shards must be positive" );
+        }
+        m_bounds = null;
+        TernarySearchTree[] trees = new TernarySearchTree[ shards ];
+        for( int i = 0; i < shards; i++ )
+        {
+            trees[i] = new TernarySearchTree( new ArrayNodeStore() );
+        }
+        m_shards = trees;
+        m_executor = executor;
+    }
+
+    /**
+     * Range bounds giving every shard about the same number of terms, for
+     * shards which don't fold case.
+     * @param terms
+     * @param shards
+     * @return
+     */
+    public static char[] balancedBounds( Collection<String> terms, int shards )
+    {
+        return balancedBounds( terms, shards, false );
+    }
+
+    /**
+     * Range bounds giving every shard about the same number of terms.
+     * Terms sharing a leading character always stay in one shard.
+     * @param terms
+     * @param shards
+     * @param caseFolding the terms are counted folded, as shardOf() sees
+     *                    them once the shards fold case, e.g. for index()
+     * @return
+     */
+    public static char[] balancedBounds( Collection<String> terms, int shards, boolean caseFolding )
+    {
+        int[] counts = new int[ Character.MAX_VALUE + 1 ];
+        int total = 0;
+        for( String term : terms )
+        {
+            if( term != null && caseFolding )
+            {
+                term = TSTFolding.fold( term );
+            }
+            if( term != null && term.length() > 0 )
+            {
+                counts[ term.charAt( 0 ) ]++;
+                total++;
+            }
+        }
+        char[] bounds = new char[ shards - 1 ];
+        int n = 0;
+        long seen = 0;
+        for( int ch = 0; ch <= Character.MAX_VALUE && n < bounds.length; ch++ )
+        {
+            // close shard n before ch once it has its share
+            if( counts[ch] > 0 && seen >= (long)total * ( n + 1 ) / shards )
+            {
+                bounds[ n++ ] = (char)ch;
+            }
+            seen += counts[ch];
+        }
+        while( n < bounds.length )
+        {
+            // fewer distinct leading characters than shards
+            bounds[n] = (char)( n == 0 ? Character.MAX_VALUE - bounds.length : bounds[ n - 1 ] + 1 );
+            n++;
+        }
+        return bounds;
+    }
+
+    public int getShardCount()
+    {
+        return m_shards.length;
+    }
+
+    public TernarySearchTree shard( int i )
+    {
+        return m_shards[i];
+    }
+
+    /**
+     * Shard a term belongs to.
+     * @param term
+     * @return
+     */
+    public int shardOf( String term )
+    {
+        term = m_shards[0].normalize( term );
+        if( m_bounds == null )
+        {
+            return ( term.hashCode() & 0x7FFFFFFF ) % m_shards.length;
+        }
+        return shardOfChar( term.charAt( 0 ) );
+    }
+
+    private int shardOfChar( char ch )
+    {
+        int lo = 0;
+        int hi = m_bounds.length;
+        while( lo < hi )
+        {
+            int mid = ( lo + hi ) >>> 1;
+            if( m_bounds[mid] <= ch )
+            {
+                lo = mid + 1;
+            }
+            else
+            {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Fold the case of terms and queries in every shard, see
+     * TernarySearchTree.setCaseFolding(). index() switches it on.
+     * @param caseFolding
+     */
+    public void setCaseFolding( boolean caseFolding )
+    {
+        for( TernarySearchTree shard : m_shards )
+        {
+            shard.setCaseFolding( caseFolding );
+        }
+    }
+
+    /**
+     * Add a word with a ranking weight to its shard.
+     * @param term
+     * @param weight
+     */
+    public void add( String term, int weight )
+    {
+        if( term == null || term.length() <= 0 )
+        {
+            return;
+        }
+        TernarySearchTree shard = m_shards[ shardOf( term ) ];
+        synchronized( shard )
+        {
+            if( !shard.contains( term ) )
+            {
+                shard.add( term, shard.nextRef(), weight );
+            }
+        }
+    }
+
+    public boolean remove( String term )
+    {
+        if( term == null || term.length() <= 0 )
+        {
+            return false;
+        }
+        TernarySearchTree shard = m_shards[ shardOf( term ) ];
+        synchronized( shard )
+        {
+            return shard.remove( term );
+        }
+    }
+
+    /**
+     * Distribute the terms to their shards, then bulkLoad() the shards in
+     * parallel on the executor.
+     * @param terms
+     */
+    public void bulkLoad( Collection<String> terms )
+    {
+        List<List<String>> parts = new ArrayList<List<String>>();
+        for( int i = 0; i < m_shards.length; i++ )
+        {
+            parts.add( new ArrayList<String>() );
+        }
+        for( String term : terms )
+        {
+            if( term != null && term.length() > 0 )
+            {
+                parts.get( shardOf( term ) ).add( term );
+            }
+        }
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        TernarySearchTree[] shards = m_shards;
+        for( int i = 0; i < shards.length; i++ )
+        {
+            final TernarySearchTree shard = shards[i];
+            final List<String> part = parts.get( i );
+            tasks.add( () ->
+            {
+                synchronized( shard )
+                {
+                    shard.bulkLoad( part );
+                }
+                return null;
+            } );
+        }
+        invokeAll( tasks );
+    }
+
+    /**
+     * Load a UTF-8 dictionary, one term per line, case folded like
+     * TernarySearchTree.index().
+     * @param fileName
+     * @throws IOException
+     */
+    public void index( String fileName ) throws IOException
+    {
+        long t1 = System.currentTimeMillis();
+        setCaseFolding( true );
+        final LinkedHashSet<String> terms = new LinkedHashSet<String>();
+        FileChannel channel = FileChannel.open( Paths.get( fileName ), StandardOpenOption.READ );
+        try
+        {
+            TSTLoader.read( channel, ( chars, length ) ->
+            {
+                terms.add( new String( chars, 0, length ) );
+                return true;
+            } );
+        }
+        finally
+        {
+            channel.close();
+        }
+        bulkLoad( terms );
+        long t2 = System.currentTimeMillis();
+        System.out.println( "Index time = " + ( t2 - t1 ) + " ms\n" );
+    }
+
+    /**
+     * Write every shard to dir/shard-i.tst and the partitioning to
+     * dir/shards.properties.
+     * @param dir
+     * @throws IOException
+     */
+    public void write( Path dir ) throws IOException
+    {
+        Files.createDirectories( dir );
+        TernarySearchTree[] shards = m_shards;
+        for( int i = 0; i < shards.length; i++ )
+        {
+            synchronized( shards[i] )
+            {
+                shards[i].write( dir.resolve( shardFileName( i ) ) );
+            }
+        }
+        Properties manifest = new Properties();
+        manifest.setProperty( "shards", Integer.toString( m_shards.length ) );
+        if( m_bounds != null )
+        {
+            StringBuilder sb = new StringBuilder();
+            for( char bound : m_bounds )
+            {
+                sb.append( sb.length() > 0 ? "," : "" ).append( (int)bound );
+            }
+            manifest.setProperty( "bounds", sb.toString() );
+        }
+        OutputStream out = Files.newOutputStream( dir.resolve( MANIFEST ) );
+        try
+        {
+            manifest.store( new OutputStreamWriter( out, StandardCharsets.UTF_8 ), "ShardedTernarySearchTree" );
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    /**
+     * Map the shards written by write(). The shards are read-only.
+     * @param dir
+     * @param executor
+     * @return
+     * @throws IOException
+     */
+    public static ShardedTernarySearchTree open( Path dir, ExecutorService executor ) throws IOException
+    {
+        Properties manifest = new Properties();
+        InputStream in = Files.newInputStream( dir.resolve( MANIFEST ) );
+        try
+        {
+            manifest.load( new InputStreamReader( in, StandardCharsets.UTF_8 ) );
+        }
+        finally
+        {
+            in.close();
+        }
+        int shards = Integer.parseInt( manifest.getProperty( "shards" ) );
+        String bounds = manifest.getProperty( "bounds" );
+        ShardedTernarySearchTree tst;
+        if( bounds == null )
+        {
+            tst = new ShardedTernarySearchTree( shards, executor );
+        }
+        else
+        {
+            String[] values = bounds.split( "," );
+            char[] chars = new char[ values.length ];
+            for( int i = 0; i < values.length; i++ )
+            {
+                chars[i] = (char)Integer.parseInt( values[i] );
+            }
+            tst = new ShardedTernarySearchTree( chars, executor );
+        }
+        for( int i = 0; i < shards; i++ )
+        {
+            tst.loadShard( i, dir.resolve( shardFileName( i ) ) );
+        }
+        return tst;
+    }
+
+    /**
+     * Replace a shard with the read-only index file written by
+     * shard( i ).write().
+     * @param i
+     * @param indexFile
+     * @throws IOException
+     */
+    public synchronized void loadShard( int i, Path indexFile ) throws IOException
+    {
+        TernarySearchTree[] shards = m_shards.clone();
+        shards[i] = TernarySearchTree.open( indexFile );
+        m_shards = shards;
+    }
+
+    private static String shardFileName( int i )
+    {
+        return "shard-" + i + ".tst";
+    }
+
+    public int size()
+    {
+        int size = 0;
+        for( TernarySearchTree shard : m_shards )
+        {
+            size += shard.size();
+        }
+        return size;
+    }
+
+    public long memoryUsage()
+    {
+        long bytes = 0;
+        for( TernarySearchTree shard : m_shards )
+        {
+            bytes += shard.memoryUsage();
+        }
+        return bytes;
+    }
+
+    public boolean contains( String term )
+    {
+        if( term == null || term.length() <= 0 )
+        {
+            return false;
+        }
+        return m_shards[ shardOf( term ) ].contains( term );
+    }
+
+    /**
+     * A search run on one shard, see scatter().
+     */
+    private interface ShardSearch
+    {
+        void search( TernarySearchTree shard, HashSet<String> ret );
+    }
+
+    public void nearNeighbours( HashSet<String> ret, String word, int distance )
+    {
+        scatter( ret, word, distance == 0, ( shard, part ) -> shard.nearNeighbours( part, word, distance ) );
+    }
+
+    public void levenshteinNeighbours( HashSet<String> ret, String word, int distance )
+    {
+        scatter( ret, word, distance == 0, ( shard, part ) -> shard.levenshteinNeighbours( part, word, distance ) );
+    }
+
+    public void nearSearchWithSuffix( HashSet<String> ret, String word, int distance )
+    {
+        scatter( ret, word, distance == 0, ( shard, part ) -> shard.nearSearchWithSuffix( part, word, distance ) );
+    }
+
+    public void beginWith( HashSet<String> ret, String word, int distance )
+    {
+        scatter( ret, word, distance == 0, ( shard, part ) -> shard.beginWith( part, word, distance ) );
+    }
+
+    /**
+     * The k highest weighted words beginning with the prefix over all
+     * shards, highest first.
+     * @param prefix
+     * @param k
+     * @return
+     */
+    public List<String> topK( String prefix, int k )
+    {
+        List<String> ret = new ArrayList<String>();
+        if( prefix == null || k <= 0 )
+        {
+            return ret;
+        }
+        int[] shards = relevantShards( prefix, true );
+        if( shards.length == 1 )
+        {
+            return m_shards[ shards[0] ].topK( prefix, k );
+        }
+        List<Callable<List<String>>> tasks = new ArrayList<Callable<List<String>>>();
+        int[][] weights = new int[ shards.length ][];
+        for( int i = 0; i < shards.length; i++ )
+        {
+            final TernarySearchTree tree = m_shards[ shards[i] ];
+            final int[] w = weights[i] = new int[ Math.min( k, tree.size() ) ];
+            tasks.add( () -> tree.topK( prefix, k, w ) );
+        }
+        List<List<String>> parts = invokeAll( tasks );
+
+        // merge the per shard lists, each is sorted by weight already
+        int[] next = new int[ parts.size() ];
+        while( ret.size() < k )
+        {
+            int best = -1;
+            int bestWeight = Integer.MIN_VALUE;
+            for( int i = 0; i < parts.size(); i++ )
+            {
+                if( next[i] < parts.get( i ).size() )
+                {
+                    int weight = weights[i][ next[i] ];
+                    if( best == -1 || weight > bestWeight )
+                    {
+                        best = i;
+                        bestWeight = weight;
+                    }
+                }
+            }
+            if( best == -1 )
+            {
+                break;
+            }
+            ret.add( parts.get( best ).get( next[ best ]++ ) );
+        }
+        return ret;
+    }
+
+    /**
+     * @param exact the query can only match terms of the word's own range
+     * @return shards which can hold a result.
+     */
+    private int[] relevantShards( String word, boolean exact )
+    {
+        if( exact && m_bounds != null && word.length() > 0 )
+        {
+            return new int[] { shardOfChar( m_shards[0].normalize( word.charAt( 0 ) ) ) };
+        }
+        int[] all = new int[ m_shards.length ];
+        for( int i = 0; i < all.length; i++ )
+        {
+            all[i] = i;
+        }
+        return all;
+    }
+
+    private void scatter( HashSet<String> ret, String word, boolean exact, ShardSearch search )
+    {
+        if( word == null )
+        {
+            return;
+        }
+        int[] shards = relevantShards( word, exact );
+        if( shards.length == 1 )
+        {
+            search.search( m_shards[ shards[0] ], ret );
+            return;
+        }
+        List<Callable<HashSet<String>>> tasks = new ArrayList<Callable<HashSet<String>>>();
+        for( int shard : shards )
+        {
+            final TernarySearchTree tree = m_shards[shard];
+            tasks.add( () ->
+            {
+                HashSet<String> part = new HashSet<String>();
+                search.search( tree, part );
+                return part;
+            } );
+        }
+        for( HashSet<String> part : invokeAll( tasks ) )
+        {
+            ret.addAll( part );
+        }
+    }
+
+    private <T> List<T> invokeAll( List<Callable<T>> tasks )
+    {
+        List<T> results = new ArrayList<T>( tasks.size() );
+        try
+        {
+            for( Future<T> future : m_executor.invokeAll( tasks ) )
+            {
+                results.add( future.get() );
+            }
+        }
+        catch( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException( "interrupted while waiting for the shards", e );
+        }
+        catch( ExecutionException e )
+        {
+            Throwable cause = e.getCause();
+            if( cause instanceof RuntimeException )
+            {
+                throw (RuntimeException)cause;
+            }
+            throw new IllegalStateException( cause );
+        }
+        return results;
+    }
+}
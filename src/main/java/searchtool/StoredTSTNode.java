@@ -0,0 +1,46 @@
+package searchtool;
+
+/**
+ * Lightweight TSTNode view of a handle in a TSTNodeStore.
+ */
+final class StoredTSTNode implements TSTNode
+{
+    private final TSTNodeStore m_store;
+    private final int m_node;
+
+    StoredTSTNode( TSTNodeStore store, int node )
+    {
+        m_store = store;
+        m_node = node;
+    }
+
+    public void setComplete( long ref )
+    {
+        m_store.setComplete( m_node, ref );
+    }
+
+    public long getRef()
+    {
+        return m_store.getRef( m_node );
+    }
+
+    public TSTNode getLeftNode()
+    {
+        return m_store.getNode( m_store.getLeft( m_node ) );
+    }
+
+    public TSTNode getMiddleNode()
+    {
+        return m_store.getNode( m_store.getMiddle( m_node ) );
+    }
+
+    public TSTNode getRightNode()
+    {
+        return m_store.getNode( m_store.getRight( m_node ) );
+    }
+
+    public char value()
+    {
+        return m_store.value( m_node );
+    }
+}
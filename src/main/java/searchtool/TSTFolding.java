@@ -0,0 +1,133 @@
+package searchtool;
+
+/**
+ * Case folding shared by indexing and queries, see
+ * TernarySearchTree.setCaseFolding().
+ *
+ * A character folds to Character.toLowerCase( Character.toUpperCase() ),
+ * the simple one to one folding of String.equalsIgnoreCase(): it doesn't
+ * depend on the default locale (no Turkish dotless i), never changes the
+ * length of a term and maps variants such as final sigma or the long s to
+ * one letter. Supplementary characters are folded as code points.
+ */
+public final class TSTFolding
+{
+    private TSTFolding()
+    {
+    }
+
+    /**
+     * @param term
+     * @return the folded term, the same instance if it is already folded,
+     *         so lower case queries allocate nothing.
+     */
+    public static String fold( String term )
+    {
+        if( term == null )
+        {
+            return null;
+        }
+        int len = term.length();
+        int i = 0;
+        while( i < len )
+        {
+            char ch = term.charAt( i );
+            if( ch < 0x80 )
+            {
+                if( ch >= 'A' && ch <= 'Z' )
+                {
+                    break;
+                }
+                i++;
+                continue;
+            }
+            int cp = term.codePointAt( i );
+            if( foldCodePoint( cp ) != cp )
+            {
+                break;
+            }
+            i += Character.charCount( cp );
+        }
+        if( i == len )
+        {
+            return term;
+        }
+
+        char[] chars = new char[ len ];
+        term.getChars( 0, i, chars, 0 );
+        while( i < len )
+        {
+            int cp = term.codePointAt( i );
+            int n = Character.charCount( cp );
+            int folded = foldCodePoint( cp );
+            if( Character.charCount( folded ) == n )
+            {
+                Character.toChars( folded, chars, i );
+            }
+            else
+            {
+                // folding never crosses planes in practice, keep it if it does
+                term.getChars( i, i + n, chars, i );
+            }
+            i += n;
+        }
+        return new String( chars );
+    }
+
+    /**
+     * Fold chars[ offset .. offset + length ) in place, as fold( String ).
+     * @param chars
+     * @param offset
+     * @param length
+     */
+    public static void fold( char[] chars, int offset, int length )
+    {
+        int end = offset + length;
+        int i = offset;
+        while( i < end )
+        {
+            char ch = chars[i];
+            if( ch < 0x80 )
+            {
+                if( ch >= 'A' && ch <= 'Z' )
+                {
+                    chars[i] = (char)( ch + ( 'a' - 'A' ) );
+                }
+                i++;
+                continue;
+            }
+            int cp = Character.codePointAt( chars, i, end );
+            int n = Character.charCount( cp );
+            int folded = foldCodePoint( cp );
+            if( folded != cp && Character.charCount( folded ) == n )
+            {
+                Character.toChars( folded, chars, i );
+            }
+            i += n;
+        }
+    }
+
+    /**
+     * Fold one character typed on its own, e.g. into a PrefixCursor.
+     * Surrogates are left as they are.
+     * @param ch
+     * @return
+     */
+    public static char fold( char ch )
+    {
+        if( ch < 0x80 )
+        {
+            return ch >= 'A' && ch <= 'Z' ? (char)( ch + ( 'a' - 'A' ) ) : ch;
+        }
+        if( Character.isSurrogate( ch ) )
+        {
+            return ch;
+        }
+        return (char)foldCodePoint( ch );
+    }
+
+    private static int foldCodePoint( int cp )
+    {
+        return Character.toLowerCase( Character.toUpperCase( cp ) );
+    }
+}
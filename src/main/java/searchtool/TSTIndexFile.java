@@ -0,0 +1,264 @@
+package searchtool;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+
+/**
+ * Versioned binary index file for a TernarySearchTree.
+ *
+ * Layout, big endian:
+ *      header   magic "TSTI", version, root, node count, term count,
+ *               ref slots, term chars, flags (8 ints)
+ *      nodes    node count records of 22 bytes:
+ *               char value, int left, int middle, int right, int ref,
+ *               int subtree max weight
+ *      offsets  ( ref slots + 1 ) ints into the term chars, a term is
+ *               the range [ offsets[ref], offsets[ref+1] )
+ *      weights  ref slots ints, term weights
+ *      chars    term chars, UTF-16
+ *
+ * Nodes are renumbered in pre-order from the root so a middle chain is
+ * laid out contiguously. Node handles in the file are record numbers, so
+ * a MappedNodeStore walks the mapped buffer without decoding.
+ */
+public final class TSTIndexFile
+{
+    public static final int MAGIC = 0x54535449;
+    public static final int VERSION = 2;
+    public static final int HEADER_BYTES = 32;
+    public static final int NODE_BYTES = 22;
+
+    /** flag: the terms are case folded, see TernarySearchTree.setCaseFolding() */
+    public static final int CASE_FOLDING = 1;
+
+    private TSTIndexFile()
+    {
+    }
+
+    /**
+     * Write the tree reachable from root and the term table to file.
+     * @param file
+     * @param nodes
+     * @param root
+     * @param terms
+     * @throws IOException
+     */
+    public static void write( Path file, TSTNodeStore nodes, int root, TSTTermStore terms ) throws IOException
+    {
+        write( file, nodes, root, terms, 0 );
+    }
+
+    /**
+     * Write the tree reachable from root and the term table to file.
+     * @param file
+     * @param nodes
+     * @param root
+     * @param terms
+     * @param flags e.g. CASE_FOLDING
+     * @throws IOException
+     */
+    public static void write( Path file, TSTNodeStore nodes, int root, TSTTermStore terms, int flags ) throws IOException
+    {
+        write( file, nodes, root, terms, terms.slots(), flags );
+    }
+
+    /**
+     * Write the tree reachable from root and the refs of the term table
+     * below slots to file. Each term is read once for its length, so the
+     * file stays well formed if terms are added meanwhile.
+     * @param file
+     * @param nodes
+     * @param root
+     * @param terms
+     * @param slots refs from here on are left out
+     * @param flags e.g. CASE_FOLDING
+     * @throws IOException
+     */
+    static void write( Path file, TSTNodeStore nodes, int root, TSTTermStore terms, int slots, int flags )
+        throws IOException
+    {
+        // pre-order renumbering with an explicit stack, middle chains can be deep
+        int[] newId = new int[ nodes.size() ];
+        int[] order = new int[ nodes.size() ];
+        int count = 0;
+        int[] stack = new int[ 64 ];
+        int top = 0;
+        if( root != TSTNodeStore.NULL )
+        {
+            stack[ top++ ] = root;
+        }
+        while( top > 0 )
+        {
+            int node = stack[ --top ];
+            newId[ node ] = count;
+            order[ count++ ] = node;
+            if( top + 3 > stack.length )
+            {
+                int[] grown = new int[ stack.length * 2 ];
+                System.arraycopy( stack, 0, grown, 0, top );
+                stack = grown;
+            }
+            // pushed in reverse so middle is visited first
+            if( nodes.getRight( node ) != TSTNodeStore.NULL )
+            {
+                stack[ top++ ] = nodes.getRight( node );
+            }
+            if( nodes.getLeft( node ) != TSTNodeStore.NULL )
+            {
+                stack[ top++ ] = nodes.getLeft( node );
+            }
+            if( nodes.getMiddle( node ) != TSTNodeStore.NULL )
+            {
+                stack[ top++ ] = nodes.getMiddle( node );
+            }
+        }
+
+        int[] lengths = new int[ slots ];
+        int size = 0;
+        long termChars = 0;
+        for( int ref = 0; ref < slots; ref++ )
+        {
+            String term = terms.get( ref );
+            if( term != null )
+            {
+                lengths[ ref ] = term.length();
+                termChars += term.length();
+                size++;
+            }
+        }
+        long total = HEADER_BYTES + (long)count * NODE_BYTES + 4L * ( 2 * slots + 1 ) + 2 * termChars;
+        if( total > Integer.MAX_VALUE )
+        {
+            throw new IOException( "index too large to map: " + total + " bytes" );
+        }
+
+        Path tmp = file.resolveSibling( file.getFileName() + ".tmp" );
+        try( DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream( Files.newOutputStream( tmp ), 1 << 16 ) ) )
+        {
+            out.writeInt( MAGIC );
+            out.writeInt( VERSION );
+            out.writeInt( count > 0 ? 0 : TSTNodeStore.NULL );
+            out.writeInt( count );
+            out.writeInt( size );
+            out.writeInt( slots );
+            out.writeInt( (int)termChars );
+            out.writeInt( flags );
+
+            for( int i = 0; i < count; i++ )
+            {
+                int node = order[i];
+                out.writeChar( nodes.value( node ) );
+                out.writeInt( remap( newId, nodes.getLeft( node ) ) );
+                out.writeInt( remap( newId, nodes.getMiddle( node ) ) );
+                out.writeInt( remap( newId, nodes.getRight( node ) ) );
+                out.writeInt( (int)nodes.getRef( node ) );
+                out.writeInt( nodes.getWeight( node ) );
+            }
+
+            int offset = 0;
+            for( int ref = 0; ref < slots; ref++ )
+            {
+                out.writeInt( offset );
+                offset += lengths[ ref ];
+            }
+            out.writeInt( offset );
+
+            for( int ref = 0; ref < slots; ref++ )
+            {
+                out.writeInt( terms.getWeight( ref ) );
+            }
+
+            for( int ref = 0; ref < slots; ref++ )
+            {
+                String term = terms.get( ref );
+                if( term != null && term.length() == lengths[ ref ] )
+                {
+                    out.writeChars( term );
+                }
+                else
+                {
+                    // re-put since the first pass, keep the offsets right
+                    for( int i = 0; i < lengths[ ref ]; i++ )
+                    {
+                        out.writeChar( term != null && i < term.length() ? term.charAt( i ) : 0 );
+                    }
+                }
+            }
+        }
+        // on disk before it replaces the old file
+        try( FileChannel ch = FileChannel.open( tmp, StandardOpenOption.WRITE ) )
+        {
+            ch.force( true );
+        }
+        Files.move( tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+    }
+
+    private static int remap( int[] newId, int node )
+    {
+        return node == TSTNodeStore.NULL ? TSTNodeStore.NULL : newId[ node ];
+    }
+
+    /**
+     * Map an index file read-only.
+     * @param file
+     * @return buffer positioned at 0, header validated
+     * @throws IOException if the file is not an index of a supported version
+     */
+    public static ByteBuffer map( Path file ) throws IOException
+    {
+        try( FileChannel ch = FileChannel.open( file, StandardOpenOption.READ ) )
+        {
+            if( ch.size() < HEADER_BYTES || ch.size() > Integer.MAX_VALUE )
+            {
+                throw new IOException( "not a TST index: " + file );
+            }
+            MappedByteBuffer buffer = ch.map( FileChannel.MapMode.READ_ONLY, 0, ch.size() );
+            if( buffer.getInt( 0 ) != MAGIC )
+            {
+                throw new IOException( "not a TST index: " + file );
+            }
+            if( buffer.getInt( 4 ) != VERSION )
+            {
+                throw new IOException( "unsupported TST index version " + buffer.getInt( 4 ) + ": " + file );
+            }
+            return buffer;
+        }
+    }
+
+    static int root( ByteBuffer buffer )
+    {
+        return buffer.getInt( 8 );
+    }
+
+    static int nodeCount( ByteBuffer buffer )
+    {
+        return buffer.getInt( 12 );
+    }
+
+    static int termCount( ByteBuffer buffer )
+    {
+        return buffer.getInt( 16 );
+    }
+
+    static int flags( ByteBuffer buffer )
+    {
+        return buffer.getInt( 28 );
+    }
+
+    static MappedNodeStore nodes( ByteBuffer buffer )
+    {
+        return new MappedNodeStore( buffer, HEADER_BYTES, nodeCount( buffer ) );
+    }
+
+    static MappedTermTable terms( ByteBuffer buffer )
+    {
+        int slots = buffer.getInt( 20 );
+        int offsets = HEADER_BYTES + nodeCount( buffer ) * NODE_BYTES;
+        int weights = offsets + 4 * ( slots + 1 );
+        return new MappedTermTable( buffer, offsets, weights, weights + 4 * slots, slots, termCount( buffer ) );
+    }
+}
@@ -0,0 +1,573 @@
+package searchtool;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead log of the add() and remove() calls of a TernarySearchTree
+ * on top of its last index snapshot, so that a restart reads the snapshot
+ * and replays a short log instead of rebuilding the tree.
+ *
+ * A directory holds
+ *      snapshot.<g>.tst   index file, see TSTIndexFile, of every change
+ *                         logged in the journals before generation g
+ *      journal.<g>        changes since, one record each:
+ *                         int length, byte op, int ref, int weight,
+ *                         UTF-8 term, int CRC32 of op .. term;
+ *                         setCaseFolding() is logged with ref 1 or 0
+ * open() reads the newest snapshot, replays the journals from its
+ * generation on, dropping a torn last record, and attaches to the tree.
+ *
+ * Records are buffered and written and fsynced together every sync
+ * interval, so a crash loses at most that much of the latest changes;
+ * sync() forces them out now. Once a write or fsync has failed, the log
+ * misses changes: the tree rejects further changes before applying them,
+ * sync() throws, and the directory has to be recovered with open(). compact() writes a new
+ * snapshot and deletes the files it replaces, startCompaction() does so
+ * periodically in the background. Writers wait while the snapshot is
+ * written, unless the tree is in copy on write mode.
+ *
+ * The tree takes its write lock for every update while attached, so that
+ * the log order is the order applied. index() and the other bulk loads
+ * then go through add() too.
+ */
+public final class TSTJournal implements AutoCloseable
+{
+    /** Default sync interval in milliseconds. */
+    public static final long SYNC_MILLIS = 10;
+
+    private static final byte ADD = 1;
+    private static final byte REMOVE = 2;
+    private static final byte CASE_FOLDING = 3;
+    private static final String SNAPSHOT = "snapshot.";
+    private static final String SNAPSHOT_SUFFIX = ".tst";
+    private static final String JOURNAL = "journal.";
+    // the appending thread writes a buffer this large itself
+    private static final int FLUSH_BYTES = 1 << 20;
+
+    private final Path m_dir;
+    private final TernarySearchTree m_tree;
+    private final int m_replayed;
+    private final ScheduledExecutorService m_executor;
+    private final CRC32 m_crc = new CRC32();
+
+    // orders the writes to the channel and the segment switches
+    private final Object m_syncLock = new Object();
+    // one compaction at a time
+    private final Object m_compactLock = new Object();
+
+    // guarded by this
+    private ByteBuffer m_pending = ByteBuffer.allocate( 64 * 1024 );
+    private long m_bytes = 0;
+    private boolean m_closed = false;
+
+    // guarded by m_syncLock
+    private ByteBuffer m_writing = ByteBuffer.allocate( 64 * 1024 );
+    private FileChannel m_channel;
+    private long m_generation;
+    // written since the last fsync
+    private boolean m_dirty = false;
+
+    // the first write or fsync failure
+    private volatile IOException m_failure;
+
+    private TSTJournal( Path dir, TernarySearchTree tree, int replayed, long generation, long syncMillis )
+        throws IOException
+    {
+        m_dir = dir;
+        m_tree = tree;
+        m_replayed = replayed;
+        m_generation = generation;
+        m_channel = FileChannel.open( journal( generation ), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.APPEND );
+        m_executor = Executors.newScheduledThreadPool( 2, r ->
+        {
+            Thread thread = new Thread( r, "tst-journal" );
+            thread.setDaemon( true );
+            return thread;
+        } );
+        m_executor.scheduleWithFixedDelay( () ->
+        {
+            try
+            {
+                sync();
+            }
+            catch( IOException e )
+            {
+                // reported by the next append() and sync(), stop syncing
+                throw new UncheckedIOException( e );
+            }
+        }, syncMillis, syncMillis, TimeUnit.MILLISECONDS );
+    }
+
+    /**
+     * Recover the tree of a journal directory, see open( dir, nodes, syncMillis ).
+     */
+    public static TSTJournal open( Path dir, TSTNodeStore nodes ) throws IOException
+    {
+        return open( dir, nodes, SYNC_MILLIS );
+    }
+
+    /**
+     * Recover the tree of a journal directory, created if missing: read the
+     * newest snapshot into the node store, replay the journals after it
+     * and log the changes from now on.
+     * @param dir
+     * @param nodes empty node store for the tree
+     * @param syncMillis interval of the batched fsync
+     * @return
+     * @throws IOException if a snapshot or an older journal is corrupt
+     */
+    public static TSTJournal open( Path dir, TSTNodeStore nodes, long syncMillis ) throws IOException
+    {
+        Files.createDirectories( dir );
+        List<Long> snapshots = generations( dir, SNAPSHOT, SNAPSHOT_SUFFIX );
+        long base = snapshots.isEmpty() ? 0 : snapshots.get( snapshots.size() - 1 );
+        TernarySearchTree tree = snapshots.isEmpty() ? new TernarySearchTree( nodes )
+            : TernarySearchTree.read( dir.resolve( SNAPSHOT + base + SNAPSHOT_SUFFIX ), nodes );
+
+        int replayed = 0;
+        long current = base;
+        List<Long> journals = generations( dir, JOURNAL, "" );
+        for( int i = 0; i < journals.size(); i++ )
+        {
+            long generation = journals.get( i );
+            if( generation >= base )
+            {
+                replayed += replay( dir.resolve( JOURNAL + generation ), tree, i == journals.size() - 1 );
+                current = generation;
+            }
+        }
+
+        // carry on appending to the last journal
+        TSTJournal journal = new TSTJournal( dir, tree, replayed, current, syncMillis );
+        tree.setJournal( journal );
+        return journal;
+    }
+
+    /**
+     * @return the recovered tree, changes to it are logged.
+     */
+    public TernarySearchTree tree()
+    {
+        return m_tree;
+    }
+
+    /**
+     * @return number of changes replayed by open().
+     */
+    public int replayed()
+    {
+        return m_replayed;
+    }
+
+    /**
+     * @return bytes logged since the last snapshot.
+     */
+    public synchronized long size()
+    {
+        return m_bytes;
+    }
+
+    /**
+     * Called by the tree before it applies a change.
+     * @throws UncheckedIOException once a write or fsync has failed
+     * @throws IllegalStateException once closed
+     */
+    void check()
+    {
+        synchronized( this )
+        {
+            if( m_closed )
+            {
+                throw new IllegalStateException( "journal is closed" );
+            }
+        }
+        IOException failure = m_failure;
+        if( failure != null )
+        {
+            throw new UncheckedIOException( "journal failed", failure );
+        }
+    }
+
+    /**
+     * Log an applied change, see check().
+     */
+    void add( String term, int ref, int weight )
+    {
+        append( ADD, ref, weight, term );
+    }
+
+    void remove( String term )
+    {
+        append( REMOVE, -1, 0, term );
+    }
+
+    void caseFolding( boolean caseFolding )
+    {
+        append( CASE_FOLDING, caseFolding ? 1 : 0, 0, "" );
+    }
+
+    private void append( byte op, int ref, int weight, String term )
+    {
+        byte[] bytes = term.getBytes( StandardCharsets.UTF_8 );
+        int payload = 9 + bytes.length;
+        boolean full;
+        synchronized( this )
+        {
+            if( m_closed )
+            {
+                throw new IllegalStateException( "journal is closed" );
+            }
+            if( m_failure != null )
+            {
+                // failed since check(), the change is applied and the log
+                // is lost anyway; sync() and the next check() report it
+                return;
+            }
+            if( m_pending.remaining() < payload + 8 )
+            {
+                ByteBuffer grown = ByteBuffer.allocate( Math.max( 2 * m_pending.capacity(),
+                    m_pending.position() + payload + 8 ) );
+                m_pending.flip();
+                grown.put( m_pending );
+                m_pending = grown;
+            }
+            int start = m_pending.position();
+            m_pending.putInt( payload );
+            m_pending.put( op );
+            m_pending.putInt( ref );
+            m_pending.putInt( weight );
+            m_pending.put( bytes );
+            m_crc.reset();
+            m_crc.update( m_pending.array(), start + 4, payload );
+            m_pending.putInt( (int)m_crc.getValue() );
+            m_bytes += payload + 8;
+            full = m_pending.position() >= FLUSH_BYTES;
+        }
+        if( full )
+        {
+            try
+            {
+                flush( false );
+            }
+            catch( IOException e )
+            {
+                // the change is applied, the failure is kept and rejects
+                // the next one
+            }
+        }
+    }
+
+    /**
+     * Write and fsync the buffered changes now.
+     * @throws IOException also if an earlier write or fsync failed
+     */
+    public void sync() throws IOException
+    {
+        flush( true );
+    }
+
+    /**
+     * Write the pending records, and fsync with force. Nothing is done if
+     * nothing was logged since the last call.
+     */
+    private void flush( boolean force ) throws IOException
+    {
+        synchronized( m_syncLock )
+        {
+            if( m_failure != null )
+            {
+                throw new IOException( "journal failed", m_failure );
+            }
+            synchronized( this )
+            {
+                if( m_pending.position() == 0 && ( !force || !m_dirty ) )
+                {
+                    return;
+                }
+                ByteBuffer swap = m_writing;
+                m_writing = m_pending;
+                m_pending = swap;
+            }
+            try
+            {
+                m_writing.flip();
+                while( m_writing.hasRemaining() )
+                {
+                    m_channel.write( m_writing );
+                }
+                m_writing.clear();
+                m_dirty = true;
+                if( force )
+                {
+                    m_channel.force( false );
+                    m_dirty = false;
+                }
+            }
+            catch( IOException | RuntimeException e )
+            {
+                // the log has a gap now, nothing after it may be written
+                m_failure = e instanceof IOException ? (IOException)e : new IOException( e );
+                m_writing.clear();
+                synchronized( this )
+                {
+                    m_pending.clear();
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Start the next generation, called by the tree under its write lock
+     * before it writes the snapshot.
+     * @return the snapshot file of the new generation
+     */
+    Path rotate() throws IOException
+    {
+        synchronized( m_syncLock )
+        {
+            // the new journal starts where the snapshot ends
+            flush( true );
+            try
+            {
+                m_channel.close();
+                m_generation++;
+                m_channel = FileChannel.open( journal( m_generation ), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND );
+            }
+            catch( IOException e )
+            {
+                m_failure = e;
+                throw e;
+            }
+            synchronized( this )
+            {
+                m_bytes = 0;
+            }
+            return m_dir.resolve( SNAPSHOT + m_generation + SNAPSHOT_SUFFIX );
+        }
+    }
+
+    /**
+     * Write a snapshot of the tree, then delete the journals and the
+     * snapshot it replaces. Writers wait until the snapshot is written,
+     * in copy on write mode only until the journal is switched.
+     * @throws IOException
+     */
+    public void compact() throws IOException
+    {
+        synchronized( m_compactLock )
+        {
+            Path snapshot = m_tree.writeSnapshot( this );
+            long generation;
+            synchronized( m_syncLock )
+            {
+                generation = m_generation;
+            }
+            force( m_dir );
+
+            for( long older : generations( m_dir, SNAPSHOT, SNAPSHOT_SUFFIX ) )
+            {
+                if( older < generation )
+                {
+                    Files.deleteIfExists( m_dir.resolve( SNAPSHOT + older + SNAPSHOT_SUFFIX ) );
+                }
+            }
+            for( long older : generations( m_dir, JOURNAL, "" ) )
+            {
+                if( older < generation )
+                {
+                    Files.deleteIfExists( m_dir.resolve( JOURNAL + older ) );
+                }
+            }
+        }
+    }
+
+    /**
+     * Compact in the background every period once minBytes have been
+     * logged since the last snapshot.
+     * @param periodMillis
+     * @param minBytes
+     */
+    public void startCompaction( long periodMillis, final long minBytes )
+    {
+        m_executor.scheduleWithFixedDelay( () ->
+        {
+            try
+            {
+                if( size() >= minBytes )
+                {
+                    compact();
+                }
+            }
+            catch( IOException e )
+            {
+                System.err.println( "journal compaction failed: " + e );
+            }
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS );
+    }
+
+    /**
+     * Sync, stop the background work and detach from the tree, which can
+     * still be searched and changed without logging.
+     * @throws IOException
+     */
+    public void close() throws IOException
+    {
+        m_tree.setJournal( null );
+        m_executor.shutdown();
+        try
+        {
+            m_executor.awaitTermination( 1, TimeUnit.MINUTES );
+        }
+        catch( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+        synchronized( m_compactLock )
+        {
+            synchronized( this )
+            {
+                if( m_closed )
+                {
+                    return;
+                }
+                m_closed = true;
+            }
+            synchronized( m_syncLock )
+            {
+                try
+                {
+                    flush( true );
+                }
+                finally
+                {
+                    m_channel.close();
+                }
+            }
+        }
+    }
+
+    private Path journal( long generation )
+    {
+        return m_dir.resolve( JOURNAL + generation );
+    }
+
+    /**
+     * Apply the records of a journal to the tree.
+     * @param last a torn record is expected at the end of the last journal
+     *             only, it is cut off
+     * @return number of records applied.
+     */
+    private static int replay( Path file, TernarySearchTree tree, boolean last ) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.wrap( Files.readAllBytes( file ) );
+        CRC32 crc = new CRC32();
+        int records = 0;
+        while( buffer.remaining() > 0 )
+        {
+            int start = buffer.position();
+            int payload = buffer.remaining() >= 4 ? buffer.getInt() : -1;
+            boolean valid = payload >= 9 && buffer.remaining() >= payload + 4;
+            if( valid )
+            {
+                crc.reset();
+                crc.update( buffer.array(), start + 4, payload );
+                valid = buffer.getInt( start + 4 + payload ) == (int)crc.getValue();
+            }
+            if( !valid )
+            {
+                if( !last )
+                {
+                    throw new IOException( "corrupt journal " + file + " at " + start );
+                }
+                try( FileChannel channel = FileChannel.open( file, StandardOpenOption.WRITE ) )
+                {
+                    channel.truncate( start );
+                    channel.force( false );
+                }
+                break;
+            }
+            byte op = buffer.get();
+            int ref = buffer.getInt();
+            int weight = buffer.getInt();
+            String term = new String( buffer.array(), buffer.position(), payload - 9, StandardCharsets.UTF_8 );
+            buffer.position( buffer.position() + payload - 9 + 4 );
+            if( op != ADD && op != REMOVE && op != CASE_FOLDING )
+            {
+                throw new IOException( "unknown journal record " + op + " in " + file + " at " + start );
+            }
+            if( op == CASE_FOLDING )
+            {
+                tree.setCaseFolding( ref != 0 );
+            }
+            // add() used to log empty terms in copy on write mode, they
+            // have no node and are skipped
+            else if( term.length() > 0 )
+            {
+                if( op == ADD )
+                {
+                    tree.add( term, ref, weight );
+                }
+                else
+                {
+                    tree.remove( term );
+                }
+            }
+            records++;
+        }
+        return records;
+    }
+
+    /**
+     * @return the generations of the files named prefix + generation + suffix, sorted.
+     */
+    private static List<Long> generations( Path dir, String prefix, String suffix ) throws IOException
+    {
+        List<Long> ret = new ArrayList<Long>();
+        try( DirectoryStream<Path> files = Files.newDirectoryStream( dir ) )
+        {
+            for( Path file : files )
+            {
+                String name = file.getFileName().toString();
+                if( name.startsWith( prefix ) && name.endsWith( suffix ) )
+                {
+                    try
+                    {
+                        ret.add( Long.parseLong( name.substring( prefix.length(), name.length() - suffix.length() ) ) );
+                    }
+                    catch( NumberFormatException e )
+                    {
+                        // e.g. a snapshot .tmp left by a crash
+                    }
+                }
+            }
+        }
+        Collections.sort( ret );
+        return ret;
+    }
+
+    private static void force( Path file ) throws IOException
+    {
+        try( FileChannel channel = FileChannel.open( file, StandardOpenOption.READ ) )
+        {
+            channel.force( true );
+        }
+    }
+}
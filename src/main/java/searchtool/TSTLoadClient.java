@@ -0,0 +1,244 @@
+package searchtool;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Load generator for TSTServer. Every connection keeps up to depth
+ * requests in flight, a mix of contains, prefix, fuzzy and topk queries
+ * on dictionary words half of them with a typo, and the QPS and the
+ * latency quantiles from sending a request to reading its response are
+ * printed. Without a server address a server is started in this JVM on a
+ * free port.
+ *
+ *      java -cp target/classes searchtool.TSTLoadClient data/dic.txt [port | socket path | -] [connections] [seconds] [depth]
+ */
+public class TSTLoadClient
+{
+    static public final void main( String args[] ) throws Exception
+    {
+        String fileName = args.length > 0 ? args[0] : TernarySearchTree.SOURCE_FILE_NAME;
+        String server = args.length > 1 ? args[1] : "-";
+        int connections = args.length > 2 ? Integer.parseInt( args[2] ) : 4;
+        int seconds = args.length > 3 ? Integer.parseInt( args[3] ) : 5;
+        int depth = args.length > 4 ? Integer.parseInt( args[4] ) : 16;
+
+        final List<byte[]> requests = requests( fileName );
+
+        TSTServer embedded = null;
+        SocketAddress address;
+        if( server.equals( "-" ) )
+        {
+            embedded = new TSTServer( TSTServer.tree( fileName ), new InetSocketAddress( "127.0.0.1", 0 ),
+                Runtime.getRuntime().availableProcessors() );
+            final TSTServer serving = embedded;
+            Thread thread = new Thread( "tst-server" )
+            {
+                public void run()
+                {
+                    try
+                    {
+                        serving.serve();
+                    }
+                    catch( IOException e )
+                    {
+                        System.err.println( e );
+                    }
+                }
+            };
+            thread.setDaemon( true );
+            thread.start();
+            address = embedded.getAddress();
+        }
+        else
+        {
+            address = TSTServer.address( server );
+        }
+
+        // a first run warms up both sides
+        run( address, requests, connections, Math.max( 1, seconds / 2 ), depth );
+        Result result = run( address, requests, connections, seconds, depth );
+        if( embedded != null )
+        {
+            embedded.close();
+        }
+
+        long[] counts = result.m_latency.counts();
+        System.out.println( connections + " connections, " + depth + " requests in flight each, " + seconds
+            + " s on " + address );
+        System.out.println( String.format( "%12s %10s %10s %10s %10s %10s %8s", "QPS", "p50 us", "p90 us", "p99 us",
+            "p99.9 us", "max us", "errors" ) );
+        System.out.println( String.format( "%12d %10d %10d %10d %10d %10d %8d",
+            result.m_responses * 1000000000L / result.m_nanos,
+            LatencyHistogram.quantile( counts, 0.5 ) / 1000, LatencyHistogram.quantile( counts, 0.9 ) / 1000,
+            LatencyHistogram.quantile( counts, 0.99 ) / 1000, LatencyHistogram.quantile( counts, 0.999 ) / 1000,
+            LatencyHistogram.quantile( counts, 1.0 ) / 1000, result.m_errors ) );
+    }
+
+    private static final class Result
+    {
+        final LatencyHistogram m_latency = new LatencyHistogram();
+        long m_responses;
+        long m_errors;
+        long m_nanos;
+    }
+
+    /**
+     * Requests on the dictionary words: half contains, then prefix, fuzzy
+     * distance 1 and topk 10.
+     */
+    private static List<byte[]> requests( String fileName ) throws IOException
+    {
+        List<String> words = new ArrayList<String>();
+        BufferedReader br = new BufferedReader( new InputStreamReader( new FileInputStream( fileName ),
+            StandardCharsets.UTF_8 ) );
+        String line;
+        while( ( line = br.readLine() ) != null )
+        {
+            if( line.length() > 0 )
+            {
+                words.add( line );
+            }
+        }
+        br.close();
+
+        Random random = new Random( 23 );
+        List<byte[]> ret = new ArrayList<byte[]>();
+        for( int i = 0; i < 10000; i++ )
+        {
+            String word = words.get( random.nextInt( words.size() ) );
+            if( i % 2 == 1 && word.length() > 2 )
+            {
+                int at = random.nextInt( word.length() );
+                word = word.substring( 0, at ) + (char)( 'a' + random.nextInt( 26 ) ) + word.substring( at + 1 );
+            }
+            String prefix = word.substring( 0, Math.min( 4, word.length() ) );
+            int op = random.nextInt( 10 );
+            String request = op < 5 ? "contains " + word
+                : op < 7 ? "prefix 0 " + prefix
+                : op < 9 ? "fuzzy 1 " + word
+                : "topk 10 " + prefix;
+            ret.add( ( request + "\n" ).getBytes( StandardCharsets.UTF_8 ) );
+        }
+        return ret;
+    }
+
+    private static Result run( final SocketAddress address, final List<byte[]> requests, int connections,
+        int seconds, final int depth ) throws Exception
+    {
+        final Result result = new Result();
+        final LongAdder responses = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final long started = System.nanoTime();
+        final long deadline = started + TimeUnit.SECONDS.toNanos( seconds );
+        ExecutorService pool = Executors.newFixedThreadPool( connections );
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        for( int c = 0; c < connections; c++ )
+        {
+            final int start = c * 7919;
+            futures.add( pool.submit( new Callable<Void>()
+            {
+                public Void call() throws IOException
+                {
+                    connection( address, requests, start, depth, deadline, result.m_latency, responses, errors );
+                    return null;
+                }
+            } ) );
+        }
+        for( Future<?> f : futures )
+        {
+            f.get();
+        }
+        pool.shutdown();
+        result.m_nanos = System.nanoTime() - started;
+        result.m_responses = responses.sum();
+        result.m_errors = errors.sum();
+        return result;
+    }
+
+    /**
+     * Keep depth requests in flight on one connection until the deadline:
+     * write the requests the window allows in one go, then read what has
+     * arrived and time every complete response line.
+     */
+    private static void connection( SocketAddress address, List<byte[]> requests, int next, int depth, long deadline,
+        LatencyHistogram latency, LongAdder responses, LongAdder errors ) throws IOException
+    {
+        SocketChannel channel = SocketChannel.open( address );
+        try
+        {
+            if( address instanceof InetSocketAddress )
+            {
+                channel.setOption( StandardSocketOptions.TCP_NODELAY, true );
+            }
+            ByteBuffer out = ByteBuffer.allocate( 64 * 1024 );
+            ByteBuffer in = ByteBuffer.allocate( 256 * 1024 );
+            long[] sent = new long[ depth ];
+            int head = 0;
+            int inFlight = 0;
+            boolean lineStart = true;
+            while( true )
+            {
+                long now = System.nanoTime();
+                out.clear();
+                while( now < deadline && inFlight < depth )
+                {
+                    byte[] request = requests.get( next++ % requests.size() );
+                    if( request.length > out.remaining() )
+                    {
+                        break;
+                    }
+                    out.put( request );
+                    sent[ ( head + inFlight++ ) % depth ] = now;
+                }
+                out.flip();
+                while( out.hasRemaining() )
+                {
+                    channel.write( out );
+                }
+                if( inFlight == 0 )
+                {
+                    return;
+                }
+
+                in.clear();
+                if( channel.read( in ) < 0 )
+                {
+                    throw new EOFException( "server closed the connection" );
+                }
+                now = System.nanoTime();
+                in.flip();
+                byte[] bytes = in.array();
+                for( int i = 0; i < in.limit(); i++ )
+                {
+                    if( lineStart && bytes[i] == '-' )
+                    {
+                        errors.increment();
+                    }
+                    lineStart = bytes[i] == '\n';
+                    if( lineStart )
+                    {
+                        latency.record( now - sent[ head ] );
+                        head = ( head + 1 ) % depth;
+                        inFlight--;
+                        responses.increment();
+                    }
+                }
+            }
+        }
+        finally
+        {
+            channel.close();
+        }
+    }
+}
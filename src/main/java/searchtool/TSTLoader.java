@@ -0,0 +1,208 @@
+package searchtool;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Streaming dictionary reader behind TernarySearchTree.load(). The channel
+ * is read through one direct buffer, each line is decoded from UTF-8 and
+ * case folded into a reused char array, so a line allocates nothing
+ * unless the receiver keeps it.
+ *
+ * Lines are split on '\n' bytes, which never occur inside a multibyte
+ * UTF-8 sequence. A trailing '\r', a leading byte order mark and empty
+ * lines are skipped, malformed bytes decode to U+FFFD.
+ */
+final class TSTLoader
+{
+    static final int BUFFER_SIZE = 1 << 20;
+
+    /**
+     * Receives the lines.
+     */
+    interface Lines
+    {
+        /**
+         * @param chars the folded line, only valid during the call
+         * @param length
+         * @return false to stop reading
+         */
+        boolean line( char[] chars, int length );
+    }
+
+    private ByteBuffer m_buffer = ByteBuffer.allocateDirect( BUFFER_SIZE );
+    private char[] m_chars = new char[ 256 ];
+
+    private TSTLoader()
+    {
+    }
+
+    /**
+     * Read the channel to its end or until lines returns false. The
+     * channel is not closed.
+     * @param channel
+     * @param lines
+     * @return number of lines passed to lines.
+     * @throws IOException
+     */
+    static long read( ReadableByteChannel channel, Lines lines ) throws IOException
+    {
+        return new TSTLoader().readLines( channel, lines );
+    }
+
+    private long readLines( ReadableByteChannel channel, Lines lines ) throws IOException
+    {
+        long count = 0;
+        boolean first = true;
+        boolean eof = false;
+        while( !eof )
+        {
+            eof = fill( channel );
+            ByteBuffer buffer = m_buffer;
+            buffer.flip();
+            int limit = buffer.limit();
+            int start = 0;
+            if( first )
+            {
+                first = false;
+                if( limit >= 3 && buffer.get( 0 ) == (byte)0xEF && buffer.get( 1 ) == (byte)0xBB
+                    && buffer.get( 2 ) == (byte)0xBF )
+                {
+                    start = 3;
+                }
+            }
+            for( int i = start; i < limit; i++ )
+            {
+                if( buffer.get( i ) == '\n' )
+                {
+                    int length = decode( start, i );
+                    start = i + 1;
+                    if( length > 0 )
+                    {
+                        count++;
+                        if( !lines.line( m_chars, length ) )
+                        {
+                            return count;
+                        }
+                    }
+                }
+            }
+            if( eof )
+            {
+                // the last line has no '\n'
+                int length = decode( start, limit );
+                if( length > 0 )
+                {
+                    count++;
+                    lines.line( m_chars, length );
+                }
+            }
+            else if( start == 0 && limit == buffer.capacity() )
+            {
+                // a line longer than the buffer
+                ByteBuffer larger = ByteBuffer.allocateDirect( buffer.capacity() * 2 );
+                larger.put( buffer );
+                m_buffer = larger;
+            }
+            else
+            {
+                buffer.position( start );
+                buffer.compact();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Read until the buffer is full.
+     * @return true at the end of the channel.
+     */
+    private boolean fill( ReadableByteChannel channel ) throws IOException
+    {
+        while( m_buffer.hasRemaining() )
+        {
+            if( channel.read( m_buffer ) < 0 )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Decode and fold the bytes [ from, to ) into m_chars.
+     * @return number of chars.
+     */
+    private int decode( int from, int to )
+    {
+        ByteBuffer buffer = m_buffer;
+        if( to > from && buffer.get( to - 1 ) == '\r' )
+        {
+            to--;
+        }
+        // never more chars than bytes
+        if( m_chars.length < to - from )
+        {
+            m_chars = new char[ Math.max( to - from, m_chars.length * 2 ) ];
+        }
+        char[] chars = m_chars;
+        int n = 0;
+        boolean ascii = true;
+        int i = from;
+        while( i < to )
+        {
+            int b = buffer.get( i++ );
+            if( b >= 0 )
+            {
+                chars[n++] = b >= 'A' && b <= 'Z' ? (char)( b + ( 'a' - 'A' ) ) : (char)b;
+                continue;
+            }
+            ascii = false;
+            int cp;
+            int more;
+            int min;
+            if( ( b & 0xE0 ) == 0xC0 )
+            {
+                cp = b & 0x1F;
+                more = 1;
+                min = 0x80;
+            }
+            else if( ( b & 0xF0 ) == 0xE0 )
+            {
+                cp = b & 0x0F;
+                more = 2;
+                min = 0x800;
+            }
+            else if( ( b & 0xF8 ) == 0xF0 )
+            {
+                cp = b & 0x07;
+                more = 3;
+                min = 0x10000;
+            }
+            else
+            {
+                chars[n++] = '\uFFFD';
+                continue;
+            }
+            int end = i + more;
+            while( i < end && i < to && ( buffer.get( i ) & 0xC0 ) == 0x80 )
+            {
+                cp = ( cp << 6 ) | ( buffer.get( i++ ) & 0x3F );
+            }
+            if( i < end || cp < min || cp > Character.MAX_CODE_POINT
+                || ( cp >= Character.MIN_SURROGATE && cp <= Character.MAX_SURROGATE ) )
+            {
+                // truncated, overlong or out of range
+                chars[n++] = '\uFFFD';
+                continue;
+            }
+            n += Character.toChars( cp, chars, n );
+        }
+        if( !ascii )
+        {
+            TSTFolding.fold( chars, 0, n );
+        }
+        return n;
+    }
+}
@@ -0,0 +1,71 @@
+package searchtool;
+
+/**
+ * Instrumentation surface of a TernarySearchTree, set with setMetrics().
+ * The tree calls it on every operation, so implementations must be cheap
+ * and thread safe. The default, NOOP, records nothing and lets the tree
+ * skip reading the clock; TSTMetricsRecorder keeps striped counters and
+ * latency histograms.
+ */
+public interface TSTMetrics
+{
+    /**
+     * Event counters kept next to the latencies of an operation.
+     */
+    enum Counter
+    {
+        /** result served by the query cache */
+        CACHE_HIT,
+        /** query cache consulted, the tree searched */
+        CACHE_MISS,
+        /** nodes created by add() */
+        NODES_ALLOCATED,
+        /** nodes copied by copy on write add() and remove() */
+        NODES_COPIED
+    }
+
+    TSTMetrics NOOP = new TSTMetrics()
+    {
+        public boolean isEnabled()
+        {
+            return false;
+        }
+
+        public void record( TSTOperation operation, long nanos, long nodesVisited, long results )
+        {
+        }
+
+        public void count( TSTOperation operation, Counter counter, long n )
+        {
+        }
+    };
+
+    /**
+     * @return false to let the tree skip timing and counting.
+     */
+    boolean isEnabled();
+
+    /**
+     * One completed operation.
+     * @param operation
+     * @param nanos wall time
+     * @param nodesVisited tree nodes, or search states, looked at
+     * @param results results returned, for add() and remove() 1 if the
+     *                tree changed
+     */
+    void record( TSTOperation operation, long nanos, long nodesVisited, long results );
+
+    void count( TSTOperation operation, Counter counter, long n );
+
+    /**
+     * @return the values recorded so far, empty if nothing is kept.
+     */
+    default TSTMetricsSnapshot snapshot()
+    {
+        return new TSTMetricsSnapshot( new TSTMetricsSnapshot.OperationStats[0] );
+    }
+
+    default void reset()
+    {
+    }
+}
@@ -0,0 +1,111 @@
+package searchtool;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * TSTMetrics keeping, per operation, a latency histogram and the counts
+ * and sums of nodes visited and results, all striped so concurrent
+ * searches don't contend. Cheap enough to leave on: recording is a few
+ * LongAdder increments and one clock read on each side of the operation.
+ */
+public class TSTMetricsRecorder implements TSTMetrics
+{
+    private final Stats[] m_stats = new Stats[ TSTOperation.values().length ];
+
+    public TSTMetricsRecorder()
+    {
+        for( int i = 0; i < m_stats.length; i++ )
+        {
+            m_stats[i] = new Stats();
+        }
+    }
+
+    public boolean isEnabled()
+    {
+        return true;
+    }
+
+    public void record( TSTOperation operation, long nanos, long nodesVisited, long results )
+    {
+        Stats stats = m_stats[ operation.ordinal() ];
+        stats.m_count.increment();
+        if( results == 0 )
+        {
+            stats.m_empty.increment();
+        }
+        stats.m_nanos.add( nanos );
+        stats.m_maxNanos.accumulate( nanos );
+        stats.m_nodes.add( nodesVisited );
+        stats.m_maxNodes.accumulate( nodesVisited );
+        stats.m_results.add( results );
+        stats.m_latency.record( nanos );
+    }
+
+    public void count( TSTOperation operation, Counter counter, long n )
+    {
+        m_stats[ operation.ordinal() ].m_counters[ counter.ordinal() ].add( n );
+    }
+
+    public TSTMetricsSnapshot snapshot()
+    {
+        TSTOperation[] operations = TSTOperation.values();
+        TSTMetricsSnapshot.OperationStats[] stats = new TSTMetricsSnapshot.OperationStats[ operations.length ];
+        for( int i = 0; i < operations.length; i++ )
+        {
+            Stats s = m_stats[i];
+            long[] counters = new long[ Counter.values().length ];
+            for( int c = 0; c < counters.length; c++ )
+            {
+                counters[c] = s.m_counters[c].sum();
+            }
+            long[] latency = s.m_latency.counts();
+            stats[i] = new TSTMetricsSnapshot.OperationStats( operations[i], s.m_count.sum(), s.m_empty.sum(),
+                s.m_nanos.sum(), s.m_maxNanos.get(),
+                LatencyHistogram.quantile( latency, 0.5 ), LatencyHistogram.quantile( latency, 0.9 ),
+                LatencyHistogram.quantile( latency, 0.99 ), LatencyHistogram.quantile( latency, 0.999 ),
+                s.m_nodes.sum(), s.m_maxNodes.get(), s.m_results.sum(), counters );
+        }
+        return new TSTMetricsSnapshot( stats );
+    }
+
+    public void reset()
+    {
+        for( Stats stats : m_stats )
+        {
+            stats.m_count.reset();
+            stats.m_empty.reset();
+            stats.m_nanos.reset();
+            stats.m_maxNanos.reset();
+            stats.m_nodes.reset();
+            stats.m_maxNodes.reset();
+            stats.m_results.reset();
+            stats.m_latency.reset();
+            for( LongAdder counter : stats.m_counters )
+            {
+                counter.reset();
+            }
+        }
+    }
+
+    private static final class Stats
+    {
+        private final LongAdder m_count = new LongAdder();
+        private final LongAdder m_empty = new LongAdder();
+        private final LongAdder m_nanos = new LongAdder();
+        private final LongAccumulator m_maxNanos = new LongAccumulator( Math::max, 0 );
+        private final LongAdder m_nodes = new LongAdder();
+        private final LongAccumulator m_maxNodes = new LongAccumulator( Math::max, 0 );
+        private final LongAdder m_results = new LongAdder();
+        private final LatencyHistogram m_latency = new LatencyHistogram();
+        private final LongAdder[] m_counters = new LongAdder[ Counter.values().length ];
+
+        Stats()
+        {
+            for( int i = 0; i < m_counters.length; i++ )
+            {
+                m_counters[i] = new LongAdder();
+            }
+        }
+    }
+}
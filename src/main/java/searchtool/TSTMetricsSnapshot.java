@@ -0,0 +1,198 @@
+package searchtool;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Point in time copy of TSTMetrics values, to print or to export to a
+ * monitoring system with toMap().
+ */
+public class TSTMetricsSnapshot
+{
+    private final OperationStats[] m_stats;
+
+    TSTMetricsSnapshot( OperationStats[] stats )
+    {
+        m_stats = stats;
+    }
+
+    /**
+     * @return the stats of the operation, null if none were kept.
+     */
+    public OperationStats get( TSTOperation operation )
+    {
+        for( OperationStats stats : m_stats )
+        {
+            if( stats.m_operation == operation )
+            {
+                return stats;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Flat "operation.metric" names, e.g. "nearNeighbours.p99_ns", of the
+     * operations run at least once.
+     * @return
+     */
+    public Map<String, Number> toMap()
+    {
+        Map<String, Number> map = new LinkedHashMap<String, Number>();
+        for( OperationStats s : m_stats )
+        {
+            if( s.m_count == 0 )
+            {
+                continue;
+            }
+            String name = s.m_operation.label() + ".";
+            map.put( name + "count", s.m_count );
+            map.put( name + "empty", s.m_empty );
+            map.put( name + "mean_ns", s.meanNanos() );
+            map.put( name + "p50_ns", s.m_p50 );
+            map.put( name + "p90_ns", s.m_p90 );
+            map.put( name + "p99_ns", s.m_p99 );
+            map.put( name + "p999_ns", s.m_p999 );
+            map.put( name + "max_ns", s.m_maxNanos );
+            map.put( name + "nodes_mean", s.meanNodes() );
+            map.put( name + "nodes_max", s.m_maxNodes );
+            map.put( name + "results_mean", s.meanResults() );
+            for( TSTMetrics.Counter counter : TSTMetrics.Counter.values() )
+            {
+                if( s.m_counters[ counter.ordinal() ] != 0 )
+                {
+                    map.put( name + counter.name().toLowerCase(), s.m_counters[ counter.ordinal() ] );
+                }
+            }
+        }
+        return map;
+    }
+
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append( String.format( "%-22s %9s %9s %9s %9s %9s %9s %10s %9s%n", "operation", "count", "empty",
+            "p50 ns", "p99 ns", "max ns", "nodes", "max nodes", "results" ) );
+        for( OperationStats s : m_stats )
+        {
+            if( s.m_count == 0 )
+            {
+                continue;
+            }
+            sb.append( String.format( "%-22s %9d %9d %9d %9d %9d %9.1f %10d %9.1f", s.m_operation.label(), s.m_count,
+                s.m_empty, s.m_p50, s.m_p99, s.m_maxNanos, s.meanNodes(), s.m_maxNodes, s.meanResults() ) );
+            for( TSTMetrics.Counter counter : TSTMetrics.Counter.values() )
+            {
+                if( s.m_counters[ counter.ordinal() ] != 0 )
+                {
+                    sb.append( "  " ).append( counter.name().toLowerCase() ).append( ' ' ).append( s.m_counters[ counter.ordinal() ] );
+                }
+            }
+            sb.append( String.format( "%n" ) );
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Values of one operation.
+     */
+    public static class OperationStats
+    {
+        private final TSTOperation m_operation;
+        private final long m_count;
+        private final long m_empty;
+        private final long m_nanos;
+        private final long m_maxNanos;
+        private final long m_p50;
+        private final long m_p90;
+        private final long m_p99;
+        private final long m_p999;
+        private final long m_nodes;
+        private final long m_maxNodes;
+        private final long m_results;
+        private final long[] m_counters;
+
+        OperationStats( TSTOperation operation, long count, long empty, long nanos, long maxNanos,
+                        long p50, long p90, long p99, long p999, long nodes, long maxNodes, long results, long[] counters )
+        {
+            m_operation = operation;
+            m_count = count;
+            m_empty = empty;
+            m_nanos = nanos;
+            m_maxNanos = maxNanos;
+            m_p50 = p50;
+            m_p90 = p90;
+            m_p99 = p99;
+            m_p999 = p999;
+            m_nodes = nodes;
+            m_maxNodes = maxNodes;
+            m_results = results;
+            m_counters = counters;
+        }
+
+        public TSTOperation getOperation()
+        {
+            return m_operation;
+        }
+
+        public long getCount()
+        {
+            return m_count;
+        }
+
+        /**
+         * @return operations which returned no result.
+         */
+        public long getEmpty()
+        {
+            return m_empty;
+        }
+
+        public double meanNanos()
+        {
+            return m_count == 0 ? 0 : (double)m_nanos / m_count;
+        }
+
+        public long getMaxNanos()
+        {
+            return m_maxNanos;
+        }
+
+        /**
+         * @param quantile one of 0.5, 0.9, 0.99, 0.999
+         * @return latency in ns
+         */
+        public long getPercentile( double quantile )
+        {
+            if( quantile <= 0.5 )
+            {
+                return m_p50;
+            }
+            if( quantile <= 0.9 )
+            {
+                return m_p90;
+            }
+            return quantile <= 0.99 ? m_p99 : m_p999;
+        }
+
+        public double meanNodes()
+        {
+            return m_count == 0 ? 0 : (double)m_nodes / m_count;
+        }
+
+        public long getMaxNodes()
+        {
+            return m_maxNodes;
+        }
+
+        public double meanResults()
+        {
+            return m_count == 0 ? 0 : (double)m_results / m_count;
+        }
+
+        public long getCounter( TSTMetrics.Counter counter )
+        {
+            return m_counters[ counter.ordinal() ];
+        }
+    }
+}
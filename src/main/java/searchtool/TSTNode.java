@@ -1,3 +1,5 @@
+package searchtool;
+
 public interface TSTNode
 {
     /**
@@ -0,0 +1,80 @@
+package searchtool;
+
+/**
+ * Storage for the nodes of a TernarySearchTree.
+ *
+ * Nodes are addressed by int handles rather than object references so the
+ * same tree algorithms can run over an object graph or over flat primitive
+ * arrays. A handle of NULL marks a missing child.
+ */
+public interface TSTNodeStore
+{
+    int NULL = -1;
+
+    /**
+     * Allocate a new intermediate node.
+     * @param ch node value
+     * @return handle of the new node
+     */
+    int newNode( char ch );
+
+    /**
+     * Return node value, 2 bytes.
+     * @param node
+     * @return
+     */
+    char value( int node );
+
+    /**
+     * @param node
+     * @return Reference id of the complete word, -1 for intermediate node
+     */
+    long getRef( int node );
+
+    /**
+     * Mark a node is an end of a word.
+     * @param node
+     * @param ref id of the word record.
+     */
+    void setComplete( int node, long ref );
+
+    /**
+     * @param node
+     * @return upper bound of the weights of the words in the subtree rooted
+     *         at the node, including its left and right subtrees.
+     */
+    int getWeight( int node );
+
+    void setWeight( int node, int weight );
+
+    int getLeft( int node );
+
+    int getMiddle( int node );
+
+    int getRight( int node );
+
+    void setLeft( int node, int child );
+
+    void setMiddle( int node, int child );
+
+    void setRight( int node, int child );
+
+    /**
+     * @return number of allocated nodes.
+     */
+    int size();
+
+    /**
+     * Estimated heap footprint of the stored nodes in bytes, assuming a
+     * 64 bit JVM with compressed oops.
+     * @return
+     */
+    long memoryUsage();
+
+    /**
+     * Return a TSTNode view of the given handle.
+     * @param node
+     * @return null if the handle is NULL
+     */
+    TSTNode getNode( int node );
+}
@@ -0,0 +1,36 @@
+package searchtool;
+
+/**
+ * Operations of a TernarySearchTree, the keys of query cache entries and
+ * of metrics.
+ */
+public enum TSTOperation
+{
+    CONTAINS( "contains" ),
+    NEAR_NEIGHBOURS( "nearNeighbours" ),
+    LEVENSHTEIN_NEIGHBOURS( "levenshteinNeighbours" ),
+    BEGIN_WITH( "beginWith" ),
+    NEAR_SEARCH_WITH_SUFFIX( "nearSearchWithSuffix" ),
+    TOP_K( "topK" ),
+    PREFIX_CURSOR( "prefixCursor" ),
+    SEARCH_BATCH( "searchBatch" ),
+    SEGMENT( "segment" ),
+    ADD( "add" ),
+    LOAD( "load" ),
+    REMOVE( "remove" );
+
+    private final String m_label;
+
+    TSTOperation( String label )
+    {
+        m_label = label;
+    }
+
+    /**
+     * @return the method name, used as metric name prefix.
+     */
+    public String label()
+    {
+        return m_label;
+    }
+}
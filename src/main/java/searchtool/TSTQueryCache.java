@@ -0,0 +1,359 @@
+package searchtool;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of search results keyed by ( query type, term, distance ),
+ * set on a tree with TernarySearchTree.setQueryCache().
+ *
+ * Eviction is W-TinyLFU: new entries go to a small LRU window; an entry
+ * pushed out of the window only replaces the least recently used entry of
+ * the main LRU when a frequency sketch says it is asked for more often.
+ * One off queries so can't flush the hot prefixes and typos.
+ *
+ * The cache is bounded by number of entries and by weight, the number of
+ * characters of the term and its results. The tree invalidates it on every
+ * change; a result computed before an invalidation is never stored.
+ */
+public class TSTQueryCache
+{
+    private final int m_maxEntries;
+    private final long m_maxWeight;
+    private final int m_windowEntries;
+
+    // access ordered, eldest first
+    private final LinkedHashMap<Key, Entry> m_window = new LinkedHashMap<Key, Entry>( 16, 0.75f, true );
+    private final LinkedHashMap<Key, Entry> m_main = new LinkedHashMap<Key, Entry>( 16, 0.75f, true );
+    private final FrequencySketch m_sketch;
+    private long m_weight = 0;
+    private long m_generation = 0;
+
+    private final LongAdder m_hits = new LongAdder();
+    private final LongAdder m_misses = new LongAdder();
+    private final LongAdder m_evictions = new LongAdder();
+    private final LongAdder m_rejections = new LongAdder();
+    private final LongAdder m_invalidations = new LongAdder();
+
+    /**
+     * @param maxEntries maximum number of cached queries
+     * @param maxWeight maximum number of characters held, terms and results
+     */
+    public TSTQueryCache( int maxEntries, long maxWeight )
+    {
+        if( maxEntries <= 0 || maxWeight <= 0 )
+        {
+            throw new IllegalArgumentException( "maxEntries and maxWeight must be positive" );
+        }
+        m_maxEntries = maxEntries;
+        m_maxWeight = maxWeight;
+        m_windowEntries = Math.max( 1, maxEntries / 100 );
+        m_sketch = new FrequencySketch( maxEntries );
+    }
+
+    /**
+     * @return the cached results, null on a miss.
+     */
+    synchronized String[] get( TSTOperation type, String term, int distance )
+    {
+        Key key = new Key( type, term, distance );
+        m_sketch.increment( key.m_hash );
+        Entry entry = m_window.get( key );
+        if( entry == null )
+        {
+            entry = m_main.get( key );
+        }
+        if( entry == null )
+        {
+            m_misses.increment();
+            return null;
+        }
+        m_hits.increment();
+        return entry.m_results;
+    }
+
+    /**
+     * Generation to pass to put(), read before the search starts.
+     */
+    synchronized long generation()
+    {
+        return m_generation;
+    }
+
+    /**
+     * Store the results of a search started at the given generation. They
+     * are dropped if the tree changed since.
+     */
+    synchronized void put( TSTOperation type, String term, int distance, String[] results, long generation )
+    {
+        if( generation != m_generation )
+        {
+            return;
+        }
+        Key key = new Key( type, term, distance );
+        int weight = term.length();
+        for( String result : results )
+        {
+            weight += result.length();
+        }
+        if( weight > m_maxWeight )
+        {
+            m_rejections.increment();
+            return;
+        }
+        Entry old = m_window.remove( key );
+        if( old == null )
+        {
+            old = m_main.remove( key );
+        }
+        if( old != null )
+        {
+            m_weight -= old.m_weight;
+        }
+        m_window.put( key, new Entry( results, weight ) );
+        m_weight += weight;
+
+        while( m_window.size() > m_windowEntries )
+        {
+            Map.Entry<Key, Entry> candidate = eldest( m_window );
+            m_window.remove( candidate.getKey() );
+            admit( candidate.getKey(), candidate.getValue() );
+        }
+        while( m_weight > m_maxWeight )
+        {
+            evict( m_main.isEmpty() ? m_window : m_main );
+        }
+    }
+
+    /**
+     * Move an entry leaving the window to the main LRU if it is asked for
+     * more often than the main LRU victim.
+     */
+    private void admit( Key key, Entry entry )
+    {
+        if( m_main.size() + m_windowEntries < m_maxEntries )
+        {
+            m_main.put( key, entry );
+            return;
+        }
+        if( !m_main.isEmpty()
+            && m_sketch.frequency( key.m_hash ) > m_sketch.frequency( eldest( m_main ).getKey().m_hash ) )
+        {
+            evict( m_main );
+            m_main.put( key, entry );
+        }
+        else
+        {
+            m_weight -= entry.m_weight;
+            m_rejections.increment();
+        }
+    }
+
+    private void evict( LinkedHashMap<Key, Entry> lru )
+    {
+        Map.Entry<Key, Entry> eldest = eldest( lru );
+        lru.remove( eldest.getKey() );
+        m_weight -= eldest.getValue().m_weight;
+        m_evictions.increment();
+    }
+
+    private static Map.Entry<Key, Entry> eldest( LinkedHashMap<Key, Entry> lru )
+    {
+        Iterator<Map.Entry<Key, Entry>> it = lru.entrySet().iterator();
+        return it.next();
+    }
+
+    /**
+     * Drop every entry, the tree calls this whenever it changes. Query
+     * frequencies are kept.
+     */
+    public synchronized void invalidate()
+    {
+        m_generation++;
+        m_window.clear();
+        m_main.clear();
+        m_weight = 0;
+        m_invalidations.increment();
+    }
+
+    public synchronized int size()
+    {
+        return m_window.size() + m_main.size();
+    }
+
+    /**
+     * @return number of characters held.
+     */
+    public synchronized long weight()
+    {
+        return m_weight;
+    }
+
+    public long hits()
+    {
+        return m_hits.sum();
+    }
+
+    public long misses()
+    {
+        return m_misses.sum();
+    }
+
+    /**
+     * @return entries removed to make room.
+     */
+    public long evictions()
+    {
+        return m_evictions.sum();
+    }
+
+    /**
+     * @return results not kept, too heavy or asked for less often than
+     *         the entries they would replace.
+     */
+    public long rejections()
+    {
+        return m_rejections.sum();
+    }
+
+    public long invalidations()
+    {
+        return m_invalidations.sum();
+    }
+
+    public double hitRate()
+    {
+        long hits = hits();
+        long total = hits + misses();
+        return total == 0 ? 0.0 : (double)hits / total;
+    }
+
+    public void resetStats()
+    {
+        m_hits.reset();
+        m_misses.reset();
+        m_evictions.reset();
+        m_rejections.reset();
+        m_invalidations.reset();
+    }
+
+    public String toString()
+    {
+        return "entries " + size() + ", weight " + weight() + ", hits " + hits() + ", misses " + misses()
+            + ", hit rate " + String.format( "%.3f", hitRate() ) + ", evictions " + evictions()
+            + ", rejections " + rejections() + ", invalidations " + invalidations();
+    }
+
+    private static final class Key
+    {
+        private final TSTOperation m_type;
+        private final String m_term;
+        private final int m_distance;
+        private final int m_hash;
+
+        Key( TSTOperation type, String term, int distance )
+        {
+            m_type = type;
+            m_term = term;
+            m_distance = distance;
+            m_hash = ( term.hashCode() * 31 + distance ) * 31 + type.ordinal();
+        }
+
+        public int hashCode()
+        {
+            return m_hash;
+        }
+
+        public boolean equals( Object o )
+        {
+            if( !( o instanceof Key ) )
+            {
+                return false;
+            }
+            Key other = (Key)o;
+            return m_hash == other.m_hash && m_type == other.m_type && m_distance == other.m_distance
+                && m_term.equals( other.m_term );
+        }
+    }
+
+    private static final class Entry
+    {
+        private final String[] m_results;
+        private final int m_weight;
+
+        Entry( String[] results, int weight )
+        {
+            m_results = results;
+            m_weight = weight;
+        }
+    }
+
+    /**
+     * Count-min sketch of 4 rows of byte counters. Once the sampled
+     * increments reach ten times the cache size all counters are halved,
+     * so old popularity fades.
+     */
+    private static final class FrequencySketch
+    {
+        private static final int DEPTH = 4;
+        private static final int[] SEEDS = { 0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F };
+
+        private final byte[] m_counters;
+        private final int m_mask;
+        private final int m_sampleSize;
+        private int m_samples = 0;
+
+        FrequencySketch( int maxEntries )
+        {
+            int width = Integer.highestOneBit( Math.max( 16, Math.min( maxEntries, 1 << 24 ) ) - 1 ) << 1;
+            m_counters = new byte[ DEPTH * width ];
+            m_mask = width - 1;
+            m_sampleSize = 10 * Math.max( 16, maxEntries );
+        }
+
+        private int index( int hash, int row )
+        {
+            int h = ( hash ^ SEEDS[row] ) * 0x9E3779B9;
+            h ^= h >>> 16;
+            return row * ( m_mask + 1 ) + ( h & m_mask );
+        }
+
+        int frequency( int hash )
+        {
+            int min = Byte.MAX_VALUE;
+            for( int row = 0; row < DEPTH; row++ )
+            {
+                min = Math.min( min, m_counters[ index( hash, row ) ] );
+            }
+            return min;
+        }
+
+        void increment( int hash )
+        {
+            // conservative update, only the smallest counters grow
+            int min = frequency( hash );
+            if( min == Byte.MAX_VALUE )
+            {
+                return;
+            }
+            for( int row = 0; row < DEPTH; row++ )
+            {
+                int i = index( hash, row );
+                if( m_counters[i] == min )
+                {
+                    m_counters[i]++;
+                }
+            }
+            if( ++m_samples >= m_sampleSize )
+            {
+                for( int i = 0; i < m_counters.length; i++ )
+                {
+                    m_counters[i] >>= 1;
+                }
+                m_samples /= 2;
+            }
+        }
+    }
+}
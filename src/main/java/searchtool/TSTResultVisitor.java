@@ -0,0 +1,13 @@
+package searchtool;
+
+/**
+ * Receives the results of a TernarySearchTree search one at a time.
+ */
+public interface TSTResultVisitor
+{
+    /**
+     * @param term a matching word, each distinct result is visited once.
+     * @return false to stop the search.
+     */
+    boolean visit( String term );
+}
@@ -0,0 +1,86 @@
+package searchtool;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One split of a query into dictionary words, see
+ * TernarySearchTree.segment().
+ */
+public final class TSTSegmentation
+{
+    private final String[] m_words;
+    private final int[] m_ends;
+    private final int m_distance;
+
+    TSTSegmentation( String[] words, int[] ends, int distance )
+    {
+        m_words = words;
+        m_ends = ends;
+        m_distance = distance;
+    }
+
+    /**
+     * @return the words in query order.
+     */
+    public List<String> words()
+    {
+        return Collections.unmodifiableList( Arrays.asList( m_words ) );
+    }
+
+    public String word( int i )
+    {
+        return m_words[i];
+    }
+
+    /**
+     * @return number of words.
+     */
+    public int size()
+    {
+        return m_words.length;
+    }
+
+    /**
+     * @param i
+     * @return offset in the normalized query just past the part matched
+     *         by word i.
+     */
+    public int end( int i )
+    {
+        return m_ends[i];
+    }
+
+    /**
+     * @return edits over all the words.
+     */
+    public int distance()
+    {
+        return m_distance;
+    }
+
+    public boolean equals( Object o )
+    {
+        if( !( o instanceof TSTSegmentation ) )
+        {
+            return false;
+        }
+        TSTSegmentation other = (TSTSegmentation)o;
+        return m_distance == other.m_distance && Arrays.equals( m_ends, other.m_ends )
+            && Arrays.equals( m_words, other.m_words );
+    }
+
+    public int hashCode()
+    {
+        return Arrays.hashCode( m_words ) * 31 + Arrays.hashCode( m_ends );
+    }
+
+    /**
+     * @return the words separated by spaces.
+     */
+    public String toString()
+    {
+        return String.join( " ", m_words );
+    }
+}
@@ -0,0 +1,564 @@
+package searchtool;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channel;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Query daemon: the tree is indexed or mapped once and searched for the
+ * clients of a local TCP or Unix domain socket.
+ *
+ * The protocol is UTF-8 lines, one request per line,
+ *      contains <word>
+ *      fuzzy <distance> <word>       levenshteinNeighbours()
+ *      near <distance> <word>        nearNeighbours()
+ *      prefix <distance> <prefix>    every word beginning with the prefix, see PrefixCursor
+ *      topk <k> <prefix>             topK()
+ * the word being the rest of the line, k at most MAX_K and the distances
+ * at most MAX_DISTANCE. Each request gets one response line, in request
+ * order: "+" and the number of results followed by the results separated
+ * by tabs, "+1" or "+0" for contains, or "-" and an error message. A
+ * request failing inside the tree is logged and answered "-internal
+ * error".
+ *
+ * Requests can be pipelined: a client may send any number before reading
+ * the responses. Every request complete in a read is answered and the
+ * responses go out in one write; a connection isn't read again while its
+ * responses are pending.
+ *
+ * Connections are spread over event loops, one selector thread each,
+ * which search the tree themselves. The searches are lock-free, see
+ * setCopyOnWrite() to keep adding words while serving.
+ *
+ *      java -cp target/classes searchtool.TSTServer data/dic.txt [port | socket path] [loops]
+ */
+public class TSTServer implements AutoCloseable
+{
+    /** Default TCP port. */
+    public static final int PORT = 7480;
+
+    private static final int READ_BUFFER = 16 * 1024;
+    private static final int MAX_LINE = 64 * 1024;
+    // nearNeighbours() takes seconds from distance 5 on
+    public static final int MAX_DISTANCE = 3;
+    public static final int MAX_K = 1000;
+    private static final long ACCEPT_RETRY_MILLIS = 100;
+
+    private final TernarySearchTree m_tree;
+    private final ServerSocketChannel m_server;
+    private final Path m_socketFile;
+    private final EventLoop[] m_loops;
+    private volatile boolean m_closed = false;
+
+    /**
+     * Bind the socket; serve() accepts the connections.
+     * @param tree
+     * @param address an InetSocketAddress or a UnixDomainSocketAddress
+     * @param loops number of event loop threads
+     * @throws IOException
+     */
+    public TSTServer( TernarySearchTree tree, SocketAddress address, int loops ) throws IOException
+    {
+        m_tree = tree;
+        if( address instanceof UnixDomainSocketAddress )
+        {
+            m_socketFile = ( (UnixDomainSocketAddress)address ).getPath();
+            // a file left behind by a server which didn't close
+            Files.deleteIfExists( m_socketFile );
+            m_server = ServerSocketChannel.open( StandardProtocolFamily.UNIX );
+        }
+        else
+        {
+            m_socketFile = null;
+            m_server = ServerSocketChannel.open();
+        }
+        m_server.bind( address, 1024 );
+
+        m_loops = new EventLoop[ Math.max( 1, loops ) ];
+        for( int i = 0; i < m_loops.length; i++ )
+        {
+            m_loops[i] = new EventLoop();
+        }
+    }
+
+    /**
+     * @return the bound address, with the port chosen for port 0.
+     * @throws IOException
+     */
+    public SocketAddress getAddress() throws IOException
+    {
+        return m_server.getLocalAddress();
+    }
+
+    /**
+     * Accept connections until close(), the calling thread accepts and
+     * the event loops serve.
+     * @throws IOException
+     */
+    public void serve() throws IOException
+    {
+        List<Thread> threads = new ArrayList<Thread>();
+        for( int i = 0; i < m_loops.length; i++ )
+        {
+            Thread thread = new Thread( m_loops[i], "tst-server-" + i );
+            thread.setDaemon( true );
+            thread.start();
+            threads.add( thread );
+        }
+        try
+        {
+            int next = 0;
+            while( !m_closed )
+            {
+                SocketChannel channel;
+                try
+                {
+                    channel = m_server.accept();
+                }
+                catch( ClosedChannelException e )
+                {
+                    break;
+                }
+                catch( IOException e )
+                {
+                    // e.g. out of file descriptors, the clients served go on
+                    System.err.println( "accept failed: " + e );
+                    try
+                    {
+                        Thread.sleep( ACCEPT_RETRY_MILLIS );
+                    }
+                    catch( InterruptedException ie )
+                    {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                    continue;
+                }
+                m_loops[ Math.floorMod( next++, m_loops.length ) ].add( channel );
+            }
+        }
+        finally
+        {
+            close();
+            for( Thread thread : threads )
+            {
+                try
+                {
+                    thread.join();
+                }
+                catch( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    /**
+     * Stop accepting, close the connections and let serve() return.
+     */
+    public void close() throws IOException
+    {
+        if( m_closed )
+        {
+            return;
+        }
+        m_closed = true;
+        m_server.close();
+        for( EventLoop loop : m_loops )
+        {
+            loop.m_selector.wakeup();
+        }
+        if( m_socketFile != null )
+        {
+            Files.deleteIfExists( m_socketFile );
+        }
+    }
+
+    /**
+     * Answer one request line.
+     * @param line without the line break
+     * @param out the response is appended, without the line break
+     * @param connection per connection state
+     */
+    void execute( String line, StringBuilder out, Connection connection )
+    {
+        int space = line.indexOf( ' ' );
+        String op = space < 0 ? line : line.substring( 0, space );
+        String rest = space < 0 ? "" : line.substring( space + 1 );
+        int mark = out.length();
+        try
+        {
+            if( op.equals( "contains" ) )
+            {
+                out.append( m_tree.contains( rest ) ? "+1" : "+0" );
+                return;
+            }
+            int number = rest.indexOf( ' ' );
+            if( number < 0 )
+            {
+                out.append( "-usage: " ).append( op ).append( " <number> <word>" );
+                return;
+            }
+            int arg = Integer.parseInt( rest.substring( 0, number ) );
+            String word = rest.substring( number + 1 );
+            if( arg < 0 )
+            {
+                out.append( "-negative " ).append( arg );
+                return;
+            }
+            if( op.equals( "topk" ) )
+            {
+                if( arg > MAX_K )
+                {
+                    out.append( "-k over " ).append( MAX_K );
+                    return;
+                }
+                results( out, m_tree.topK( word, arg ) );
+                return;
+            }
+            if( arg > MAX_DISTANCE )
+            {
+                out.append( "-distance over " ).append( MAX_DISTANCE );
+                return;
+            }
+            HashSet<String> ret = connection.m_results;
+            ret.clear();
+            if( op.equals( "fuzzy" ) )
+            {
+                m_tree.levenshteinNeighbours( ret, word, arg );
+            }
+            else if( op.equals( "near" ) )
+            {
+                m_tree.nearNeighbours( ret, word, arg );
+            }
+            else if( op.equals( "prefix" ) )
+            {
+                PrefixCursor cursor = m_tree.prefixCursor( arg );
+                cursor.push( word );
+                cursor.results( ret );
+            }
+            else
+            {
+                out.append( "-unknown request " ).append( op );
+                return;
+            }
+            results( out, ret );
+        }
+        catch( NumberFormatException e )
+        {
+            out.append( "-not a number: " ).append( rest );
+        }
+        catch( Throwable e )
+        {
+            // the loop keeps serving its other connections
+            System.err.println( "request failed: " + line + ": " + e );
+            connection.m_results.clear();
+            out.setLength( mark );
+            out.append( "-internal error" );
+        }
+    }
+
+    private static void results( StringBuilder out, Collection<String> results )
+    {
+        out.append( '+' ).append( results.size() );
+        for( String term : results )
+        {
+            out.append( '\t' ).append( term );
+        }
+    }
+
+    /**
+     * State of one client: the bytes of a partial request line and the
+     * responses not written yet.
+     */
+    final class Connection
+    {
+        private final SocketChannel m_channel;
+        private byte[] m_line = new byte[ 256 ];
+        private int m_lineLength = 0;
+        private ByteBuffer m_pending = null;
+        private final StringBuilder m_out = new StringBuilder();
+        private final HashSet<String> m_results = new HashSet<String>();
+
+        Connection( SocketChannel channel )
+        {
+            m_channel = channel;
+        }
+
+        /**
+         * Answer every complete line of the bytes read.
+         * @return the responses, null if there are none.
+         */
+        ByteBuffer requests( ByteBuffer in )
+        {
+            m_out.setLength( 0 );
+            while( in.hasRemaining() )
+            {
+                byte b = in.get();
+                if( b != '\n' )
+                {
+                    if( m_lineLength == m_line.length )
+                    {
+                        if( m_lineLength >= MAX_LINE )
+                        {
+                            // answer the overlong line once its end arrives
+                            continue;
+                        }
+                        m_line = Arrays.copyOf( m_line, 2 * m_lineLength );
+                    }
+                    m_line[ m_lineLength++ ] = b;
+                    continue;
+                }
+                int length = m_lineLength;
+                if( length > 0 && m_line[ length - 1 ] == '\r' )
+                {
+                    length--;
+                }
+                if( m_lineLength >= MAX_LINE )
+                {
+                    m_out.append( "-line too long" );
+                }
+                else
+                {
+                    execute( new String( m_line, 0, length, StandardCharsets.UTF_8 ), m_out, this );
+                }
+                m_out.append( '\n' );
+                m_lineLength = 0;
+            }
+            return m_out.length() == 0 ? null : StandardCharsets.UTF_8.encode( m_out.toString() );
+        }
+    }
+
+    /**
+     * One selector thread serving its share of the connections.
+     */
+    private final class EventLoop implements Runnable
+    {
+        private final Selector m_selector;
+        private final ConcurrentLinkedQueue<SocketChannel> m_added = new ConcurrentLinkedQueue<SocketChannel>();
+        private final ByteBuffer m_in = ByteBuffer.allocateDirect( READ_BUFFER );
+
+        EventLoop() throws IOException
+        {
+            m_selector = Selector.open();
+        }
+
+        void add( SocketChannel channel )
+        {
+            m_added.add( channel );
+            m_selector.wakeup();
+        }
+
+        public void run()
+        {
+            try
+            {
+                while( !m_closed )
+                {
+                    m_selector.select();
+                    SocketChannel channel;
+                    while( ( channel = m_added.poll() ) != null )
+                    {
+                        try
+                        {
+                            register( channel );
+                        }
+                        catch( IOException e )
+                        {
+                            // the client went away before it was registered
+                            close( channel );
+                        }
+                    }
+                    Iterator<SelectionKey> keys = m_selector.selectedKeys().iterator();
+                    while( keys.hasNext() )
+                    {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        try
+                        {
+                            if( key.isReadable() )
+                            {
+                                read( key );
+                            }
+                            else if( key.isWritable() )
+                            {
+                                write( key );
+                            }
+                        }
+                        catch( IOException e )
+                        {
+                            // the client went away
+                            key.cancel();
+                            close( key.channel() );
+                        }
+                    }
+                }
+            }
+            catch( IOException e )
+            {
+                System.err.println( Thread.currentThread().getName() + ": " + e );
+            }
+            finally
+            {
+                for( SelectionKey key : m_selector.keys() )
+                {
+                    try
+                    {
+                        key.channel().close();
+                    }
+                    catch( IOException e )
+                    {
+                        // closing anyway
+                    }
+                }
+                try
+                {
+                    m_selector.close();
+                }
+                catch( IOException e )
+                {
+                    // closing anyway
+                }
+            }
+        }
+
+        private void close( Channel channel )
+        {
+            try
+            {
+                channel.close();
+            }
+            catch( IOException e )
+            {
+                // closing anyway
+            }
+        }
+
+        private void register( SocketChannel channel ) throws IOException
+        {
+            channel.configureBlocking( false );
+            if( channel.getLocalAddress() instanceof InetSocketAddress )
+            {
+                // responses are already batched
+                channel.setOption( StandardSocketOptions.TCP_NODELAY, true );
+            }
+            channel.register( m_selector, SelectionKey.OP_READ, new Connection( channel ) );
+        }
+
+        private void read( SelectionKey key ) throws IOException
+        {
+            Connection connection = (Connection)key.attachment();
+            m_in.clear();
+            int n = connection.m_channel.read( m_in );
+            if( n < 0 )
+            {
+                key.cancel();
+                connection.m_channel.close();
+                return;
+            }
+            m_in.flip();
+            ByteBuffer responses = connection.requests( m_in );
+            if( responses == null )
+            {
+                return;
+            }
+            connection.m_channel.write( responses );
+            if( responses.hasRemaining() )
+            {
+                // don't read more requests until the client takes these
+                connection.m_pending = responses;
+                key.interestOps( SelectionKey.OP_WRITE );
+            }
+        }
+
+        private void write( SelectionKey key ) throws IOException
+        {
+            Connection connection = (Connection)key.attachment();
+            connection.m_channel.write( connection.m_pending );
+            if( !connection.m_pending.hasRemaining() )
+            {
+                connection.m_pending = null;
+                key.interestOps( SelectionKey.OP_READ );
+            }
+        }
+    }
+
+    /**
+     * @param value a port number or a socket file path
+     * @return the loopback address of the port, or the Unix domain socket.
+     */
+    static SocketAddress address( String value )
+    {
+        try
+        {
+            return new InetSocketAddress( InetAddress.getLoopbackAddress(), Integer.parseInt( value ) );
+        }
+        catch( NumberFormatException e )
+        {
+            return UnixDomainSocketAddress.of( value );
+        }
+    }
+
+    /**
+     * Index a dictionary, or map an index file ending with .tst, see
+     * TernarySearchTree.open().
+     */
+    static TernarySearchTree tree( String fileName ) throws IOException
+    {
+        if( fileName.endsWith( ".tst" ) )
+        {
+            return TernarySearchTree.open( Paths.get( fileName ) );
+        }
+        TernarySearchTree tst = new TernarySearchTree( new ArrayNodeStore() );
+        tst.index( fileName );
+        return tst;
+    }
+
+    static public final void main( String args[] ) throws IOException
+    {
+        String fileName = args.length > 0 ? args[0] : TernarySearchTree.SOURCE_FILE_NAME;
+        SocketAddress address = address( args.length > 1 ? args[1] : String.valueOf( PORT ) );
+        int loops = args.length > 2 ? Integer.parseInt( args[2] ) : Runtime.getRuntime().availableProcessors();
+
+        final TSTServer server = new TSTServer( tree( fileName ), address, loops );
+        Runtime.getRuntime().addShutdownHook( new Thread()
+        {
+            public void run()
+            {
+                try
+                {
+                    server.close();
+                }
+                catch( IOException e )
+                {
+                    // exiting anyway
+                }
+            }
+        } );
+        System.out.println( "Serving " + fileName + " on " + server.getAddress() + " with " + loops + " loops" );
+        server.serve();
+    }
+}
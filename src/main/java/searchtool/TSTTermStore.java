@@ -0,0 +1,58 @@
+package searchtool;
+
+/**
+ * Ref to term lookup for the complete words of a TernarySearchTree.
+ */
+public interface TSTTermStore
+{
+    /**
+     * @param ref
+     * @return the term for the ref, null if there is none.
+     */
+    String get( long ref );
+
+    /**
+     * Store the term for the ref. A search in copy on write mode may be
+     * reading the ref's old term meanwhile and has to see it or the new
+     * one, never a mix.
+     * @param ref non negative ref
+     * @param term
+     */
+    void put( int ref, String term );
+
+    /**
+     * Store chars[ offset .. offset + length ) as the term for the ref.
+     * @param ref non negative ref
+     * @param chars
+     * @param offset
+     * @param length
+     */
+    default void put( int ref, char[] chars, int offset, int length )
+    {
+        put( ref, new String( chars, offset, length ) );
+    }
+
+    /**
+     * @param ref
+     * @return ranking weight of the term, 0 unless set.
+     */
+    int getWeight( long ref );
+
+    void setWeight( int ref, int weight );
+
+    /**
+     * @return number of refs with a term.
+     */
+    int size();
+
+    /**
+     * @return one past the largest ref that can hold a term.
+     */
+    int slots();
+
+    /**
+     * Estimated heap footprint in bytes.
+     * @return
+     */
+    long memoryUsage();
+}
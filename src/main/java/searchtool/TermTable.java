@@ -0,0 +1,186 @@
+package searchtool;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * Dense ref indexed term table. Term characters live in one char arena,
+ * a ref maps to its start and length through two int arrays, so there is
+ * no per-term entry or String key to allocate on lookup.
+ *
+ * Re-adding a ref with another term appends the new term, the old
+ * characters stay in the arena as garbage.
+ *
+ * A ref's start and length are one long, published after the characters
+ * are in place, so in copy on write mode a search reading a ref that is
+ * being re-added sees either the old or the new term.
+ */
+public class TermTable implements TSTTermStore
+{
+    private static final VarHandle ENTRY = MethodHandles.arrayElementVarHandle( long[].class );
+    private static final long EMPTY = -1;
+
+    // grown arrays are published to concurrent readers
+    private volatile char[] m_chars;
+    private int m_used = 0;
+
+    // start << 32 | length, EMPTY without a term
+    private volatile long[] m_entry;
+    private int[] m_weight;
+    private int m_size = 0;
+    private int m_slots = 0;
+
+    public TermTable()
+    {
+        m_chars = new char[ 8192 ];
+        m_entry = new long[ 1024 ];
+        m_weight = new int[ 1024 ];
+        Arrays.fill( m_entry, EMPTY );
+    }
+
+    public void put( int ref, String term )
+    {
+        if( equals( ref, term ) )
+        {
+            return;
+        }
+        int len = term.length();
+        char[] chars = reserve( ref, len );
+        term.getChars( 0, len, chars, m_used );
+        publish( ref, chars, len );
+    }
+
+    /**
+     * Copies the characters straight into the arena, no String.
+     */
+    public void put( int ref, char[] chars, int offset, int length )
+    {
+        char[] arena = reserve( ref, length );
+        System.arraycopy( chars, offset, arena, m_used, length );
+        publish( ref, arena, length );
+    }
+
+    /**
+     * Make room for the ref and for len characters at m_used.
+     * @return the arena to copy the characters into, not yet published
+     *         if it grew.
+     */
+    private char[] reserve( int ref, int len )
+    {
+        if( ref < 0 )
+        {
+            throw new IllegalArgumentException( "negative ref: " + ref );
+        }
+        if( ref >= m_entry.length )
+        {
+            int capacity = Math.max( ref + 1, m_entry.length + ( m_entry.length >> 1 ) );
+            int old = m_entry.length;
+            long[] entry = Arrays.copyOf( m_entry, capacity );
+            Arrays.fill( entry, old, capacity, EMPTY );
+            m_weight = Arrays.copyOf( m_weight, capacity );
+            m_entry = entry;
+        }
+        if( m_used + len > m_chars.length )
+        {
+            return Arrays.copyOf( m_chars, Math.max( m_used + len, m_chars.length + ( m_chars.length >> 1 ) ) );
+        }
+        return m_chars;
+    }
+
+    /**
+     * Point the ref at the len characters copied to m_used, after the
+     * arena holding them.
+     */
+    private void publish( int ref, char[] chars, int len )
+    {
+        m_chars = chars;
+        if( m_entry[ ref ] == EMPTY )
+        {
+            m_size++;
+            m_slots = Math.max( m_slots, ref + 1 );
+        }
+        ENTRY.setRelease( m_entry, ref, (long)m_used << 32 | len );
+        m_used += len;
+    }
+
+    /**
+     * @return start << 32 | length of the ref's term, EMPTY if none.
+     */
+    private long entry( long ref )
+    {
+        long[] entry = m_entry;
+        if( ref < 0 || ref >= entry.length )
+        {
+            return EMPTY;
+        }
+        return (long)ENTRY.getAcquire( entry, (int)ref );
+    }
+
+    public String get( long ref )
+    {
+        long entry = entry( ref );
+        if( entry == EMPTY )
+        {
+            return null;
+        }
+        return new String( m_chars, (int)( entry >>> 32 ), (int)entry );
+    }
+
+    public int getWeight( long ref )
+    {
+        if( ref < 0 || ref >= m_weight.length )
+        {
+            return 0;
+        }
+        return m_weight[ (int)ref ];
+    }
+
+    public void setWeight( int ref, int weight )
+    {
+        m_weight[ ref ] = weight;
+    }
+
+    /**
+     * Compare the stored term with a char sequence without materializing it.
+     * @param ref
+     * @param s
+     * @return
+     */
+    public boolean equals( long ref, CharSequence s )
+    {
+        long entry = entry( ref );
+        if( entry == EMPTY || (int)entry != s.length() )
+        {
+            return false;
+        }
+        char[] chars = m_chars;
+        int start = (int)( entry >>> 32 );
+        for( int i = 0; i < s.length(); i++ )
+        {
+            if( chars[ start + i ] != s.charAt( i ) )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int size()
+    {
+        return m_size;
+    }
+
+    /**
+     * Refs are never cleared, so this is the highest ref put plus one.
+     */
+    public int slots()
+    {
+        return m_slots;
+    }
+
+    public long memoryUsage()
+    {
+        return 3L * 16 + 2L * m_chars.length + 12L * m_entry.length;
+    }
+}
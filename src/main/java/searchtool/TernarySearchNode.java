@@ -1,3 +1,5 @@
+package searchtool;
+
 public class TernarySearchNode implements TSTNode
 {
     public TernarySearchNode m_left;
@@ -5,16 +7,32 @@ public class TernarySearchNode implements TSTNode
     public TernarySearchNode m_right;
     public char m_ch;
 
+    /**
+     * Handle of the node in its ObjectNodeStore.
+     */
+    final int m_id;
+
     /**
      * Reference to the complete word.
      * -1 indicate a intermediate node.
      */
     private long m_ref;
 
+    /**
+     * Max weight of the words in this subtree.
+     */
+    int m_weight;
+
 
     public TernarySearchNode( char ch )
+    {
+        this( ch, TSTNodeStore.NULL );
+    }
+
+    public TernarySearchNode( char ch, int id )
     {
         m_ch = ch;
+        m_id = id;
         m_ref = -1;
     }
 
@@ -0,0 +1,2649 @@
+package searchtool;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * TernarySearchTree implements trie data structure.
+ * This implementation also supports neighbour word search
+ * by specifying edit distance.
+ *      tst.nearNeighbours(ret, searchTerm, distance);
+ * This implementation also supports suggestion or auto complete
+ * with edit distance
+ *      tst.beginWith(ret, prefix, distance);
+ *
+ * Searches keep their state on the stack and only update striped
+ * statistics, so once the tree is built and safely published any number
+ * of threads may search it concurrently without locking. add() is only
+ * safe to run concurrently with searches in copy on write mode, see
+ * setCopyOnWrite().
+ *
+ * The tree owns its node and term stores: close() releases those which
+ * hold memory or files outside the heap, e.g. a DirectNodeStore.
+ */
+public class TernarySearchTree implements AutoCloseable
+{
+    private static int LEFT = -1;
+    private static int MIDDLE = 0;
+    private static int RIGHT = 1;
+
+    /**
+     * Node storage, object graph by default.
+     */
+    private final TSTNodeStore m_nodes;
+
+    /**
+     * Root of the current snapshot. Searches read it once, so in copy on
+     * write mode a search sees one consistent version of the tree.
+     */
+    volatile int m_root = TSTNodeStore.NULL;
+
+    private int m_totalNodes = 0;
+
+    /**
+     * number of complete words.
+     */
+    private volatile int m_size = 0;
+
+    /**
+     * When set, add() and remove() copy the path to the changed node
+     * instead of mutating it and publish the new root atomically.
+     */
+    private volatile boolean m_copyOnWrite = false;
+
+    /**
+     * When set, terms and queries are folded with TSTFolding.
+     */
+    private volatile boolean m_caseFolding = false;
+
+    /**
+     * Serializes writers in copy on write mode, readers never take it.
+     */
+    private final Object m_writeLock = new Object();
+
+    /**
+     * index() loads the dictionary with bulkLoad() instead of adding the
+     * lines in file order.
+     */
+    private boolean m_balancedIndex = false;
+
+    /**
+     * index() builds partitions of the dictionary in parallel on this
+     * pool, null to build on the calling thread.
+     */
+    private ForkJoinPool m_indexPool;
+
+    /**
+     * index() stops after this many distinct terms.
+     */
+    private int m_maxTerms = 600000;
+
+    /**
+     * Smallest run of sorted queries searchBatch() walks together.
+     */
+    private static final int BATCH_RUN = 256;
+
+    /**
+     * Optional cache of root level search results, null when off.
+     */
+    private volatile TSTQueryCache m_cache;
+
+    /**
+     * Receives the latency and cost of every operation, NOOP when off.
+     */
+    private volatile TSTMetrics m_metrics = TSTMetrics.NOOP;
+
+    /**
+     * Nodes copied by copy on write updates, part of m_totalNodes.
+     */
+    private int m_copiedNodes = 0;
+
+    /**
+     * Complete words by ref.
+     */
+    private final TSTTermStore m_terms;
+
+    /**
+     * index file name.
+     */
+    private String m_indexFile;
+
+    /**
+     * Logs add() and remove() while attached, see TSTJournal.
+     */
+    private volatile TSTJournal m_journal;
+    // snapshots written outside the write lock, guarded by m_writeLock
+    private int m_snapshots = 0;
+
+    /**
+     * Constructor
+     */
+    public TernarySearchTree()
+    {
+        this( new ObjectNodeStore() );
+    }
+
+    /**
+     * Build the tree on the given node store, e.g. ArrayNodeStore for a
+     * compact layout.
+     * @param nodes
+     */
+    public TernarySearchTree( TSTNodeStore nodes )
+    {
+        this( nodes, new TermTable() );
+    }
+
+    /**
+     * Build the tree on the given node and term stores.
+     * @param nodes
+     * @param terms
+     */
+    public TernarySearchTree( TSTNodeStore nodes, TSTTermStore terms )
+    {
+        m_nodes = nodes;
+        m_terms = terms;
+    }
+
+    /**
+     * Print the metrics recorded so far, see setMetrics().
+     */
+    public void print()
+    {
+        System.out.print( m_metrics.snapshot() );
+    }
+
+    /**
+     * Instrument the tree: every operation reports its latency, the nodes
+     * it visited and its number of results, searches their query cache
+     * hits and misses, updates the nodes they allocated and copied.
+     * @param metrics e.g. a TSTMetricsRecorder, null or TSTMetrics.NOOP to
+     *                switch instrumentation off
+     */
+    public void setMetrics( TSTMetrics metrics )
+    {
+        m_metrics = metrics != null ? metrics : TSTMetrics.NOOP;
+    }
+
+    public TSTMetrics getMetrics()
+    {
+        return m_metrics;
+    }
+
+    /**
+     * @return System.nanoTime() at the start of an operation, 0 when the
+     *         metrics are off.
+     */
+    long started()
+    {
+        return m_metrics.isEnabled() ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Report an operation begun at started().
+     */
+    void record( TSTOperation operation, long started, long nodesVisited, long results )
+    {
+        if( started != 0 )
+        {
+            m_metrics.record( operation, System.nanoTime() - started, nodesVisited, results );
+        }
+    }
+
+    /**
+     * Open an index file written by index() or write(). The file is mapped
+     * read-only and searched in place, the tree is not rebuilt. add() is
+     * not supported on the returned tree.
+     * @param indexFile
+     * @return
+     * @throws IOException if the file is not a valid index
+     */
+    public static TernarySearchTree open( Path indexFile ) throws IOException
+    {
+        ByteBuffer buffer = TSTIndexFile.map( indexFile );
+        TernarySearchTree tst = new TernarySearchTree( TSTIndexFile.nodes( buffer ), TSTIndexFile.terms( buffer ) );
+        tst.m_root = TSTIndexFile.root( buffer );
+        tst.m_totalNodes = TSTIndexFile.nodeCount( buffer );
+        tst.m_size = TSTIndexFile.termCount( buffer );
+        tst.m_caseFolding = ( TSTIndexFile.flags( buffer ) & TSTIndexFile.CASE_FOLDING ) != 0;
+        tst.m_indexFile = indexFile.toString();
+        return tst;
+    }
+
+    /**
+     * Read an index file written by index() or write() into a writable
+     * tree on the given, empty, node store. Unlike open() the nodes are
+     * copied, in one pass, so add() and remove() work.
+     * @param indexFile
+     * @param nodes
+     * @return
+     * @throws IOException if the file is not a valid index
+     */
+    public static TernarySearchTree read( Path indexFile, TSTNodeStore nodes ) throws IOException
+    {
+        if( nodes.size() != 0 )
+        {
+            throw new IllegalArgumentException( "node store is not empty" );
+        }
+        ByteBuffer buffer = TSTIndexFile.map( indexFile );
+        MappedNodeStore mapped = TSTIndexFile.nodes( buffer );
+        MappedTermTable terms = TSTIndexFile.terms( buffer );
+        TernarySearchTree tst = new TernarySearchTree( nodes, new TermTable() );
+        int count = TSTIndexFile.nodeCount( buffer );
+        int size = 0;
+        for( int node = 0; node < count; node++ )
+        {
+            // handles are record numbers in both stores
+            if( nodes.newNode( mapped.value( node ) ) != node )
+            {
+                throw new IllegalArgumentException( "node store doesn't number the nodes from 0" );
+            }
+            nodes.setLeft( node, mapped.getLeft( node ) );
+            nodes.setMiddle( node, mapped.getMiddle( node ) );
+            nodes.setRight( node, mapped.getRight( node ) );
+            nodes.setComplete( node, mapped.getRef( node ) );
+            nodes.setWeight( node, mapped.getWeight( node ) );
+            size += mapped.getRef( node ) != -1 ? 1 : 0;
+        }
+        for( int ref = 0; ref < terms.slots(); ref++ )
+        {
+            String term = terms.get( ref );
+            if( term != null )
+            {
+                tst.m_terms.put( ref, term );
+                tst.m_terms.setWeight( ref, terms.getWeight( ref ) );
+            }
+        }
+        tst.m_root = TSTIndexFile.root( buffer );
+        tst.m_totalNodes = count;
+        // removed words keep their term, count the words in the tree
+        tst.m_size = size;
+        tst.m_caseFolding = ( TSTIndexFile.flags( buffer ) & TSTIndexFile.CASE_FOLDING ) != 0;
+        tst.m_indexFile = indexFile.toString();
+        return tst;
+    }
+
+    /**
+     * Write the tree to a binary index file, see TSTIndexFile.
+     * @param indexFile
+     * @throws IOException
+     */
+    public void write( Path indexFile ) throws IOException
+    {
+        TSTIndexFile.write( indexFile, m_nodes, m_root, m_terms, m_caseFolding ? TSTIndexFile.CASE_FOLDING : 0 );
+    }
+
+    /**
+     * Close the node and term stores which are AutoCloseable. The tree
+     * must not be used afterwards, nor closed while a search is running.
+     */
+    public void close()
+    {
+        close( m_nodes );
+        close( m_terms );
+    }
+
+    private static void close( Object store )
+    {
+        if( store instanceof AutoCloseable )
+        {
+            try
+            {
+                ( (AutoCloseable)store ).close();
+            }
+            catch( RuntimeException e )
+            {
+                throw e;
+            }
+            catch( Exception e )
+            {
+                throw new IllegalStateException( "closing " + store.getClass().getSimpleName() + " failed", e );
+            }
+        }
+    }
+
+    /**
+     * Write the snapshot of a journal: rotate() starts its next generation
+     * under the write lock, so the file holds exactly the changes logged
+     * before. In copy on write mode only the root and the term slots are
+     * taken under the lock and the file is written while updates go on,
+     * the nodes reachable from that root do not change.
+     * setCopyOnWrite( false ) waits until the file is written.
+     * @return the snapshot file
+     */
+    Path writeSnapshot( TSTJournal journal ) throws IOException
+    {
+        Path snapshot;
+        int root;
+        int slots;
+        int flags;
+        synchronized( m_writeLock )
+        {
+            snapshot = journal.rotate();
+            if( !m_copyOnWrite )
+            {
+                write( snapshot );
+                return snapshot;
+            }
+            root = m_root;
+            slots = m_terms.slots();
+            flags = m_caseFolding ? TSTIndexFile.CASE_FOLDING : 0;
+            m_snapshots++;
+        }
+        try
+        {
+            TSTIndexFile.write( snapshot, m_nodes, root, m_terms, slots, flags );
+        }
+        finally
+        {
+            synchronized( m_writeLock )
+            {
+                m_snapshots--;
+                m_writeLock.notifyAll();
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Attach or detach, with null, the journal logging add() and remove().
+     */
+    void setJournal( TSTJournal journal )
+    {
+        synchronized( m_writeLock )
+        {
+            m_journal = journal;
+        }
+    }
+
+    /**
+     * @param ref
+     * @return term stored for the ref.
+     */
+    String getTerm( long ref )
+    {
+        return m_terms.get( ref );
+    }
+
+    /**
+     * Add a word to the TST
+     * @param term
+     * @param ref
+     */
+    public void add( final String term, final int ref )
+    {
+        add( term, ref, 0 );
+    }
+
+    /**
+     * Add a word with a ranking weight for topK().
+     * @param term
+     * @param ref
+     * @param weight
+     */
+    public void add( String term, final int ref, final int weight )
+    {
+        // no-op if term is null or empty, an empty term has no node to
+        // complete and is not logged either
+        if( term == null )
+        {
+            return;
+        }
+        term = normalize( term );
+        if( term.length() == 0 )
+        {
+            return;
+        }
+        long started = started();
+        int size = m_size;
+        int totalNodes = m_totalNodes;
+        int copiedNodes = m_copiedNodes;
+        if( m_copyOnWrite || m_journal != null )
+        {
+            synchronized( m_writeLock )
+            {
+                // a failed journal rejects the change before it is applied
+                TSTJournal journal = m_journal;
+                if( journal != null )
+                {
+                    journal.check();
+                }
+                if( m_copyOnWrite )
+                {
+                    addCopyOnWrite( term, ref, weight );
+                }
+                else
+                {
+                    addInPlace( term, ref, weight );
+                }
+                // logged in the order applied, and not while compacting
+                if( journal != null )
+                {
+                    journal.add( term, ref, weight );
+                }
+            }
+        }
+        else
+        {
+            addInPlace( term, ref, weight );
+        }
+        invalidateCache();
+        if( started != 0 )
+        {
+            countUpdate( TSTOperation.ADD, totalNodes, copiedNodes );
+            record( TSTOperation.ADD, started, 0, m_size - size );
+        }
+    }
+
+    /**
+     * Count the nodes an update allocated and copied since the given
+     * m_totalNodes and m_copiedNodes.
+     */
+    private void countUpdate( TSTOperation operation, int totalNodes, int copiedNodes )
+    {
+        int copied = m_copiedNodes - copiedNodes;
+        m_metrics.count( operation, TSTMetrics.Counter.NODES_ALLOCATED, m_totalNodes - totalNodes - copied );
+        m_metrics.count( operation, TSTMetrics.Counter.NODES_COPIED, copied );
+    }
+
+    private void addInPlace( String term, int ref, int weight )
+    {
+        // point to the root of the TernarySearchTree
+        int cur = m_root;
+
+        // Iterate through each character from <term>
+        int idx = 0;
+        int len = term.length();
+        int parent = TSTNodeStore.NULL;
+        int childDir = MIDDLE; // default
+        while ( cur != TSTNodeStore.NULL )
+        {
+            if( idx >= len )
+            {
+                // A new word matches a subset of an existing
+                // word, mark complete of the new word.
+                if( m_nodes.getRef(parent) == -1 )
+                {
+                    m_size++;
+                }
+                m_nodes.setComplete(parent, ref);
+                break; // end of the term
+            }
+            parent = cur; // save it
+            raiseWeight( cur, weight );
+
+            char ch = m_nodes.value( cur );
+            if( ch > term.charAt( idx ) )
+            {
+                cur = m_nodes.getLeft( cur );
+                childDir = LEFT;
+            }
+            else if( ch == term.charAt( idx ) )
+            {
+                cur = m_nodes.getMiddle( cur );
+                childDir = MIDDLE;
+                idx++;
+            }
+            else if( ch < term.charAt( idx ) )
+            {
+                cur = m_nodes.getRight( cur );
+                childDir = RIGHT;
+            }
+        }
+
+        if( cur == TSTNodeStore.NULL && idx < len )
+        {
+            char ch = term.charAt( idx );
+            cur = m_nodes.newNode( ch );
+            m_nodes.setWeight( cur, weight );
+            m_totalNodes++;
+            if( parent != TSTNodeStore.NULL )
+            {
+                if( childDir == MIDDLE )
+                {
+                    m_nodes.setMiddle( parent, cur );
+                }
+                else if( childDir == LEFT )
+                {
+                    m_nodes.setLeft( parent, cur );
+                }
+                else if( childDir == RIGHT )
+                {
+                    m_nodes.setRight( parent, cur );
+                }
+            }
+            if( m_root == TSTNodeStore.NULL )
+            {
+                m_root = cur;
+            }
+            idx++;
+            while( idx < len )
+            {
+                int next = m_nodes.newNode( term.charAt( idx++ ) );
+                m_nodes.setWeight( next, weight );
+                m_nodes.setMiddle( cur, next );
+                m_totalNodes++;
+                cur = next;
+            }
+            m_nodes.setComplete( cur, ref );
+            m_size++;
+        }
+        m_terms.put( ref, term );
+        m_terms.setWeight( ref, weight );
+    }
+
+    private void raiseWeight( int node, int weight )
+    {
+        if( m_nodes.getWeight( node ) < weight )
+        {
+            m_nodes.setWeight( node, weight );
+        }
+    }
+
+    /**
+     * Switch copy on write updates on or off. While on, add() and remove()
+     * never modify a node reachable from the published root: the path
+     * from the root to the changed node is copied and the new root is
+     * swapped in with a single volatile write, so concurrent searches
+     * always see a consistent snapshot and never wait for a writer.
+     * Copied out nodes stay allocated in the node store.
+     * @param copyOnWrite
+     */
+    public void setCopyOnWrite( boolean copyOnWrite )
+    {
+        synchronized( m_writeLock )
+        {
+            // a snapshot is written from the nodes of an earlier root
+            boolean interrupted = false;
+            while( !copyOnWrite && m_snapshots > 0 )
+            {
+                try
+                {
+                    m_writeLock.wait();
+                }
+                catch( InterruptedException e )
+                {
+                    interrupted = true;
+                }
+            }
+            if( interrupted )
+            {
+                Thread.currentThread().interrupt();
+            }
+            m_copyOnWrite = copyOnWrite;
+        }
+    }
+
+    /**
+     * Fold the case of every added term and every query with TSTFolding:
+     * "Straße", "STRAßE" and "straße" all fold to "straße". The folding is
+     * one to one, so "STRASSE" folds to "strasse", a different key.
+     * index() switches it on as it folds the dictionary. Switch it on
+     * before adding terms.
+     * @param caseFolding
+     */
+    public void setCaseFolding( boolean caseFolding )
+    {
+        synchronized( m_writeLock )
+        {
+            TSTJournal journal = m_journal;
+            if( journal != null )
+            {
+                journal.check();
+            }
+            m_caseFolding = caseFolding;
+            if( journal != null )
+            {
+                journal.caseFolding( caseFolding );
+            }
+        }
+    }
+
+    public boolean isCaseFolding()
+    {
+        return m_caseFolding;
+    }
+
+    /**
+     * @return the word as the tree stores it.
+     */
+    String normalize( String word )
+    {
+        return m_caseFolding ? TSTFolding.fold( word ) : word;
+    }
+
+    char normalize( char ch )
+    {
+        return m_caseFolding ? TSTFolding.fold( ch ) : ch;
+    }
+
+    /**
+     * Put a result cache in front of beginWith(), nearNeighbours(),
+     * levenshteinNeighbours(), nearSearchWithSuffix() and topK() from the
+     * root. Every change of the tree invalidates it. A visitor is replayed
+     * the cached results; on a miss the whole result is computed first.
+     * @param cache null to switch caching off
+     */
+    public void setQueryCache( TSTQueryCache cache )
+    {
+        if( cache != null )
+        {
+            cache.invalidate();
+        }
+        m_cache = cache;
+    }
+
+    public TSTQueryCache getQueryCache()
+    {
+        return m_cache;
+    }
+
+    private void invalidateCache()
+    {
+        TSTQueryCache cache = m_cache;
+        if( cache != null )
+        {
+            cache.invalidate();
+        }
+    }
+
+    /**
+     * Run a root level search, through the query cache when there is one.
+     */
+    private void query( Emitter ret, TSTOperation operation, String word, int distance )
+    {
+        long started = started();
+        word = normalize( word );
+        TSTQueryCache cache = m_cache;
+        if( cache == null || word == null )
+        {
+            int cost = search( ret, operation, word, distance );
+            record( operation, started, cost, ret.count() );
+            return;
+        }
+        int cost = 0;
+        String[] results = cache.get( operation, word, distance );
+        if( results == null )
+        {
+            m_metrics.count( operation, TSTMetrics.Counter.CACHE_MISS, 1 );
+            long generation = cache.generation();
+            HashSet<String> found = new HashSet<String>();
+            cost = search( new Emitter( found ), operation, word, distance );
+            results = found.toArray( new String[ found.size() ] );
+            cache.put( operation, word, distance, results, generation );
+        }
+        else
+        {
+            m_metrics.count( operation, TSTMetrics.Counter.CACHE_HIT, 1 );
+        }
+        for( int i = 0; i < results.length && !ret.stopped(); i++ )
+        {
+            ret.addResult( results[i] );
+        }
+        record( operation, started, cost, ret.count() );
+    }
+
+    /**
+     * @return number of visited nodes.
+     */
+    private int search( Emitter ret, TSTOperation operation, String word, int distance )
+    {
+        switch( operation )
+        {
+            case BEGIN_WITH:
+                return beginWith( ret, word, 0, m_root, distance );
+            case NEAR_NEIGHBOURS:
+                return nearNeighbours( ret, word, distance );
+            case LEVENSHTEIN_NEIGHBOURS:
+                return levenshteinNeighbours( ret, word, distance );
+            default:
+                return nearSearchWithSuffix( ret, word, 0, m_root, distance );
+        }
+    }
+
+    private void addCopyOnWrite( String term, int ref, int weight )
+    {
+        int len = term.length();
+        int[] path = new int[ len + 16 ];
+        int[] dirs = new int[ len + 16 ];
+        int n = 0;
+        int idx = 0;
+        int cur = m_root;
+        while( cur != TSTNodeStore.NULL )
+        {
+            if( n == path.length )
+            {
+                path = Arrays.copyOf( path, n * 2 );
+                dirs = Arrays.copyOf( dirs, n * 2 );
+            }
+            path[n] = cur;
+            char ch = m_nodes.value( cur );
+            if( ch > term.charAt( idx ) )
+            {
+                dirs[n++] = LEFT;
+                cur = m_nodes.getLeft( cur );
+            }
+            else if( ch < term.charAt( idx ) )
+            {
+                dirs[n++] = RIGHT;
+                cur = m_nodes.getRight( cur );
+            }
+            else
+            {
+                dirs[n++] = MIDDLE;
+                if( ++idx == len )
+                {
+                    break;
+                }
+                cur = m_nodes.getMiddle( cur );
+            }
+        }
+
+        // a new ref is unreachable until the new root is published, a
+        // reachable one is switched to the new term in one step, see
+        // TermTable
+        m_terms.put( ref, term );
+        m_terms.setWeight( ref, weight );
+        if( idx == len )
+        {
+            // the term ends on an existing node
+            int node = copy( path[n - 1] );
+            if( m_nodes.getRef( node ) == -1 )
+            {
+                m_size++;
+            }
+            m_nodes.setComplete( node, ref );
+            raiseWeight( node, weight );
+            m_root = copyPath( path, dirs, n - 2, node, false, weight );
+            return;
+        }
+
+        int chain = m_nodes.newNode( term.charAt( idx++ ) );
+        m_nodes.setWeight( chain, weight );
+        m_totalNodes++;
+        int last = chain;
+        while( idx < len )
+        {
+            int next = m_nodes.newNode( term.charAt( idx++ ) );
+            m_nodes.setWeight( next, weight );
+            m_nodes.setMiddle( last, next );
+            m_totalNodes++;
+            last = next;
+        }
+        m_nodes.setComplete( last, ref );
+        m_size++;
+        m_root = copyPath( path, dirs, n - 1, chain, false, weight );
+    }
+
+    /**
+     * Remove a word from the TST. Nodes which no longer lead to a complete
+     * word are unlinked. Honours copy on write mode.
+     * @param term
+     * @return true if the term was in the TST.
+     */
+    public boolean remove( String term )
+    {
+        if( term == null || term.length() <= 0 )
+        {
+            return false;
+        }
+        term = normalize( term );
+        long started = started();
+        synchronized( m_writeLock )
+        {
+            TSTJournal journal = m_journal;
+            if( journal != null )
+            {
+                journal.check();
+            }
+            int totalNodes = m_totalNodes;
+            int copiedNodes = m_copiedNodes;
+            int len = term.length();
+            int[] path = new int[ len + 16 ];
+            int[] dirs = new int[ len + 16 ];
+            int n = 0;
+            int idx = 0;
+            int cur = m_root;
+            while( cur != TSTNodeStore.NULL )
+            {
+                if( n == path.length )
+                {
+                    path = Arrays.copyOf( path, n * 2 );
+                    dirs = Arrays.copyOf( dirs, n * 2 );
+                }
+                path[n] = cur;
+                char ch = m_nodes.value( cur );
+                if( ch > term.charAt( idx ) )
+                {
+                    dirs[n++] = LEFT;
+                    cur = m_nodes.getLeft( cur );
+                }
+                else if( ch < term.charAt( idx ) )
+                {
+                    dirs[n++] = RIGHT;
+                    cur = m_nodes.getRight( cur );
+                }
+                else
+                {
+                    dirs[n++] = MIDDLE;
+                    if( ++idx == len )
+                    {
+                        break;
+                    }
+                    cur = m_nodes.getMiddle( cur );
+                }
+            }
+            if( cur == TSTNodeStore.NULL || m_nodes.getRef( cur ) == -1 )
+            {
+                record( TSTOperation.REMOVE, started, n, 0 );
+                return false;
+            }
+
+            int node = copy( cur );
+            m_nodes.setComplete( node, -1 );
+            m_root = copyPath( path, dirs, n - 2, prune( node ), true, Integer.MIN_VALUE );
+            m_size--;
+            if( journal != null )
+            {
+                journal.remove( term );
+            }
+            invalidateCache();
+            if( started != 0 )
+            {
+                countUpdate( TSTOperation.REMOVE, totalNodes, copiedNodes );
+                record( TSTOperation.REMOVE, started, n, 1 );
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Return the node to modify in place of the given one: the node itself,
+     * or a fresh copy of it in copy on write mode.
+     */
+    private int copy( int node )
+    {
+        if( !m_copyOnWrite )
+        {
+            return node;
+        }
+        int copy = m_nodes.newNode( m_nodes.value( node ) );
+        m_nodes.setLeft( copy, m_nodes.getLeft( node ) );
+        m_nodes.setMiddle( copy, m_nodes.getMiddle( node ) );
+        m_nodes.setRight( copy, m_nodes.getRight( node ) );
+        m_nodes.setComplete( copy, m_nodes.getRef( node ) );
+        m_nodes.setWeight( copy, m_nodes.getWeight( node ) );
+        m_totalNodes++;
+        m_copiedNodes++;
+        return copy;
+    }
+
+    /**
+     * Re-link path[from] .. path[0] above the replaced child.
+     * @param path nodes from the root down
+     * @param dirs direction taken from each node of the path
+     * @param from deepest path index to re-link
+     * @param child replacement for the child of path[from]
+     * @param prune unlink nodes left without a word below them
+     * @param weight weight of an added word
+     * @return new root
+     */
+    private int copyPath( int[] path, int[] dirs, int from, int child, boolean prune, int weight )
+    {
+        for( int i = from; i >= 0; i-- )
+        {
+            int node = copy( path[i] );
+            raiseWeight( node, weight );
+            if( dirs[i] == LEFT )
+            {
+                m_nodes.setLeft( node, child );
+            }
+            else if( dirs[i] == MIDDLE )
+            {
+                m_nodes.setMiddle( node, child );
+            }
+            else
+            {
+                m_nodes.setRight( node, child );
+            }
+            child = prune ? prune( node ) : node;
+        }
+        return child;
+    }
+
+    /**
+     * Unlink a node which neither completes a word nor has a middle
+     * subtree, merging its left and right subtrees.
+     * @param node
+     * @return the node, or what replaces it in its parent.
+     */
+    private int prune( int node )
+    {
+        if( m_nodes.getMiddle( node ) != TSTNodeStore.NULL || m_nodes.getRef( node ) != -1 )
+        {
+            return node;
+        }
+        int left = m_nodes.getLeft( node );
+        int right = m_nodes.getRight( node );
+        if( left == TSTNodeStore.NULL )
+        {
+            return right;
+        }
+        if( right == TSTNodeStore.NULL )
+        {
+            return left;
+        }
+        // hang the left subtree below the smallest node of the right one
+        int weight = m_nodes.getWeight( left );
+        int top = copy( right );
+        raiseWeight( top, weight );
+        int cur = top;
+        while( m_nodes.getLeft( cur ) != TSTNodeStore.NULL )
+        {
+            int next = copy( m_nodes.getLeft( cur ) );
+            raiseWeight( next, weight );
+            m_nodes.setLeft( cur, next );
+            cur = next;
+        }
+        m_nodes.setLeft( cur, left );
+        return top;
+    }
+
+    /**
+     * Check if the given term is in the TST. Exact match.
+     * @param term
+     * @return
+     */
+    public boolean contains( String term )
+    {
+        int cost = 0;
+        if( term == null || term.length() <= 0 )
+        {
+            // no-op if empty string
+            return false;
+        }
+        term = normalize( term );
+        long started = started();
+        int cur = m_root;
+        int idx = 0;
+        int len = term.length();
+        while( cur != TSTNodeStore.NULL )
+        {
+            cost++;
+            if( idx >= len )
+            {
+                record( TSTOperation.CONTAINS, started, cost, 0 );
+                return false;
+            }
+            char ch = term.charAt( idx );
+            char value = m_nodes.value( cur );
+            if( value > ch )
+            {
+                cur = m_nodes.getLeft( cur );
+            }
+            else if( value < ch )
+            {
+                cur = m_nodes.getRight( cur );
+            }
+            else // equal case
+            {
+                idx++;
+                if( idx >= len )
+                {
+                    if( m_nodes.getRef( cur ) != -1 )
+                    {
+                        /**
+                         * When reach last char of the term,
+                         * check complete state of the tree.
+                         */
+                        record( TSTOperation.CONTAINS, started, cost, 1 );
+                        return true;
+                    }
+                    else
+                    {
+                        // term is longer than anything in the tree
+                        record( TSTOperation.CONTAINS, started, cost, 0 );
+                        return false;
+                    }
+                }
+                cur = m_nodes.getMiddle( cur );
+            }
+        }
+        if( idx == len )
+        {
+            record( TSTOperation.CONTAINS, started, cost, 1 );
+            return true;
+        }
+        record( TSTOperation.CONTAINS, started, cost, 0 );
+        return false;
+    }
+
+    /**
+     * The topK() weight of a word.
+     * @param term
+     * @return the weight, Integer.MIN_VALUE if the word isn't in the TST.
+     */
+    public int getWeight( String term )
+    {
+        if( term == null || term.length() <= 0 )
+        {
+            return Integer.MIN_VALUE;
+        }
+        term = normalize( term );
+        int cur = m_root;
+        int idx = 0;
+        int len = term.length();
+        while( cur != TSTNodeStore.NULL )
+        {
+            char ch = term.charAt( idx );
+            char value = m_nodes.value( cur );
+            if( value > ch )
+            {
+                cur = m_nodes.getLeft( cur );
+            }
+            else if( value < ch )
+            {
+                cur = m_nodes.getRight( cur );
+            }
+            else if( ++idx == len )
+            {
+                long ref = m_nodes.getRef( cur );
+                return ref != -1 ? m_terms.getWeight( ref ) : Integer.MIN_VALUE;
+            }
+            else
+            {
+                cur = m_nodes.getMiddle( cur );
+            }
+        }
+        return Integer.MIN_VALUE;
+    }
+
+    /**
+     * Clear the metrics, see setMetrics().
+     */
+    public void resetStats()
+    {
+        m_metrics.reset();
+    }
+
+    public int getTotalNodes()
+    {
+        return m_totalNodes;
+    }
+
+    /**
+     * @return number of terms added to the TST.
+     */
+    public int size()
+    {
+        return m_size;
+    }
+
+    /**
+     * @return estimated memory used by the nodes and terms in bytes.
+     */
+    public long memoryUsage()
+    {
+        return m_nodes.memoryUsage() + m_terms.memoryUsage();
+    }
+
+    /**
+     * Read-only copy of the vocabulary with shared suffixes, see
+     * DawgTernarySearchTree. Weights and refs aren't kept.
+     * @return
+     */
+    public DawgTernarySearchTree compact()
+    {
+        HashSet<String> terms = new HashSet<String>();
+        returnAllResults( terms, m_root );
+        return DawgTernarySearchTree.build( terms, m_caseFolding );
+    }
+
+    /**
+     * @return TSTNode view of the root, null for an empty tree.
+     */
+    public TSTNode getRoot()
+    {
+        return m_nodes.getNode( m_root );
+    }
+
+    /**
+     * @return a ref no word uses yet.
+     */
+    int nextRef()
+    {
+        return m_terms.slots();
+    }
+
+    int getRootHandle()
+    {
+        return m_root;
+    }
+
+    /**
+     * @param ref
+     * @return ranking weight of the term stored for the ref.
+     */
+    int getTermWeight( long ref )
+    {
+        return m_terms.getWeight( ref );
+    }
+
+    TSTNodeStore getNodes()
+    {
+        return m_nodes;
+    }
+
+    /**
+     * Start a keystroke by keystroke autocomplete on the tree as it is now,
+     * see PrefixCursor.
+     * @param distance edit distance allowed on the typed prefix, 0 for
+     *                 exact prefixes
+     * @return
+     */
+    public PrefixCursor prefixCursor( int distance )
+    {
+        return new PrefixCursor( this, distance );
+    }
+
+    /**
+     * Calculate the height of the tree from the given node.
+     *
+     * @param node
+     * @return
+     */
+    private int height( int node )
+    {
+        if( node == TSTNodeStore.NULL )
+        {
+            return 0;
+        }
+        int height = 0;
+        SearchStack stack = SearchStack.acquire();
+        try
+        {
+            // the offset field of a frame holds the depth of its node
+            stack.push( node, 1, 0 );
+            while( !stack.isEmpty() )
+            {
+                stack.pop();
+                node = stack.node();
+                int depth = stack.offset();
+                height = Math.max( height, depth );
+                pushChild( stack, m_nodes.getRight( node ), depth + 1, 0 );
+                pushChild( stack, m_nodes.getMiddle( node ), depth + 1, 0 );
+                pushChild( stack, m_nodes.getLeft( node ), depth + 1, 0 );
+            }
+        }
+        finally
+        {
+            SearchStack.release( stack );
+        }
+        return height;
+    }
+
+    private static void pushChild( SearchStack stack, int node, int offset, int distance )
+    {
+        if( node != TSTNodeStore.NULL )
+        {
+            stack.push( node, offset, distance );
+        }
+    }
+
+    /**
+     * Calculate the height of the entire TST.
+     * @return
+     */
+    public int height()
+    {
+        return height(m_root);
+    }
+
+    /**
+     * Return all the matched words from TST with the given edit distance. When edit
+     * distance is 0, The result is as same as exact match.
+     * @param ret
+     * @param word
+     * @param distance
+     */
+    public void nearNeighbours( HashSet<String> ret, String word, int distance )
+    {
+        query( new Emitter( ret ), TSTOperation.NEAR_NEIGHBOURS, word, distance );
+    }
+
+    /**
+     * Streaming nearNeighbours(): each distinct match is passed to the
+     * visitor as soon as it is found, the search stops when the visitor
+     * returns false.
+     * @param visitor
+     * @param word
+     * @param distance
+     */
+    public void nearNeighbours( TSTResultVisitor visitor, String word, int distance )
+    {
+        query( new Emitter( visitor ), TSTOperation.NEAR_NEIGHBOURS, word, distance );
+    }
+
+    private int nearNeighbours( Emitter ret, String word, int distance )
+    {
+        return nearNeighbourSearch( ret, word, 0, m_root, distance );
+    }
+
+    /**
+     * Walks the tree with an explicit stack of ( node, offset, distance )
+     * frames, one frame for each call of the former recursion, so long
+     * terms can't overflow the thread stack.
+     * @return number of visited nodes, the search cost.
+     */
+    private int nearNeighbourSearch( Emitter ret, String word, int offset, int node, int distance)
+    {
+        int cost = 0;
+        int len = word.length();
+        SearchStack stack = SearchStack.acquire();
+        try
+        {
+            stack.push( node, offset, distance );
+            while( !stack.isEmpty() && !ret.stopped() )
+            {
+                stack.pop();
+                node = stack.node();
+                offset = stack.offset();
+                distance = stack.distance();
+                cost++;
+                if( node == TSTNodeStore.NULL || distance < 0 || len <= offset )
+                {
+                    continue;
+                }
+                char ch = word.charAt( offset );
+                char value = m_nodes.value( node );
+                int middle = m_nodes.getMiddle( node );
+                long ref = m_nodes.getRef( node );
+
+                // frames are taken last in first out, push the right subtree first
+                if( distance > 0 || ch > value )
+                {
+                    stack.push( m_nodes.getRight( node ), offset, distance );
+                }
+
+                if( middle == TSTNodeStore.NULL )
+                {
+                    int localOffset = ( ch == value ) ? offset + 1 : offset;
+                    if( ( len - localOffset ) <= distance )
+                    {
+                        // found one, a leaf always completes a word
+                        if( ref != -1 )
+                        {
+                            ret.add( ref );
+                        }
+                    }
+                }
+                else if( ref != -1 && ( len - (offset+1) ) <= distance )
+                {
+                    int localOffset = ( ch == value ) ? offset + 1 : offset;
+                    if( ( len - localOffset ) <= distance )
+                    {
+                        ret.add( ref );
+                    }
+                }
+                else if( ch == value )
+                {
+                    stack.push( middle, offset + 1, distance );
+                }
+                else
+                {
+                    stack.push( node, offset + 1, distance - 1 );
+                    stack.push( middle, offset, distance - 1 );
+                    stack.push( middle, offset + 1, distance - 1 );
+                }
+
+                if( distance > 0 || ch < value )
+                {
+                    stack.push( m_nodes.getLeft( node ), offset, distance );
+                }
+            }
+        }
+        finally
+        {
+            SearchStack.release( stack );
+        }
+        return cost;
+    }
+
+
+    /**
+     * Return all the words within the given Levenshtein (edit) distance of
+     * the word. Unlike nearNeighbours() the result is exact and independent
+     * of the tree shape.
+     *
+     * The walk carries one dynamic programming row per depth of the
+     * middle path. A subtree is pruned as soon as the smallest value of
+     * its row exceeds the distance, so no term longer than
+     * word.length() + distance is ever reached.
+     * @param ret
+     * @param word
+     * @param distance
+     */
+    public void levenshteinNeighbours( HashSet<String> ret, String word, int distance )
+    {
+        query( new Emitter( ret ), TSTOperation.LEVENSHTEIN_NEIGHBOURS, word, distance );
+    }
+
+    /**
+     * Streaming levenshteinNeighbours(), see nearNeighbours( TSTResultVisitor, ... ).
+     * @param visitor
+     * @param word
+     * @param distance
+     */
+    public void levenshteinNeighbours( TSTResultVisitor visitor, String word, int distance )
+    {
+        query( new Emitter( visitor ), TSTOperation.LEVENSHTEIN_NEIGHBOURS, word, distance );
+    }
+
+    private int levenshteinNeighbours( Emitter ret, String word, int distance )
+    {
+        if( word == null || distance < 0 )
+        {
+            return 0;
+        }
+        int width = word.length() + 1;
+        int[] rows = new int[ ( word.length() + distance + 2 ) * width ];
+        for( int j = 0; j < width; j++ )
+        {
+            rows[j] = j;
+        }
+        return levenshteinSearch( ret, word, m_root, 0, rows, distance );
+    }
+
+    /**
+     * The frames hold ( node, depth, 0 ), depth being the number of
+     * characters on the middle path above the node: rows[depth] is the row
+     * of that prefix. The middle child is pushed last so its subtree is done
+     * before a sibling reuses rows[depth + 1].
+     * @return number of visited nodes, the search cost.
+     */
+    private int levenshteinSearch( Emitter ret, String word, int node, int depth, int[] rows, int distance )
+    {
+        int cost = 0;
+        int len = word.length();
+        SearchStack stack = SearchStack.acquire();
+        try
+        {
+            pushChild( stack, node, depth, 0 );
+            while( !stack.isEmpty() && !ret.stopped() )
+            {
+                stack.pop();
+                node = stack.node();
+                depth = stack.offset();
+                cost++;
+
+                char ch = m_nodes.value( node );
+                int prev = depth * ( len + 1 );
+                int cur = prev + len + 1;
+                rows[cur] = rows[prev] + 1;
+                int min = rows[cur];
+                for( int j = 1; j <= len; j++ )
+                {
+                    int d = Math.min( rows[cur + j - 1], rows[prev + j] ) + 1;
+                    int sub = rows[prev + j - 1] + ( word.charAt( j - 1 ) == ch ? 0 : 1 );
+                    rows[cur + j] = Math.min( d, sub );
+                    min = Math.min( min, rows[cur + j] );
+                }
+                if( rows[cur + len] <= distance && m_nodes.getRef( node ) != -1 )
+                {
+                    ret.add( m_nodes.getRef( node ) );
+                }
+
+                pushChild( stack, m_nodes.getRight( node ), depth, 0 );
+                pushChild( stack, m_nodes.getLeft( node ), depth, 0 );
+                if( min <= distance )
+                {
+                    pushChild( stack, m_nodes.getMiddle( node ), depth + 1, 0 );
+                }
+            }
+        }
+        finally
+        {
+            SearchStack.release( stack );
+        }
+        return cost;
+    }
+
+    /**
+     * Levenshtein neighbours of many queries at once, for batch jobs such
+     * as spell checking. The distinct queries are sorted and cut into runs
+     * searched in parallel on the common pool, see searchBatch( ..., pool ).
+     * @param queries
+     * @param distance
+     * @return the levenshteinNeighbours() of every distinct query
+     */
+    public Map<String, Set<String>> searchBatch( Collection<String> queries, int distance )
+    {
+        return searchBatch( queries, distance, ForkJoinPool.commonPool() );
+    }
+
+    /**
+     * Levenshtein neighbours of many queries at once. Every run of sorted
+     * queries walks the tree once together with a trie of the queries, so
+     * the work on a shared prefix is done once per run, not once per
+     * query, see BatchSearch.
+     * @param queries
+     * @param distance at most 15
+     * @param pool runs the runs, null to search on the calling thread
+     * @return the levenshteinNeighbours() of every distinct query, keyed
+     *         by the query as normalized, see setCaseFolding()
+     */
+    public Map<String, Set<String>> searchBatch( Collection<String> queries, int distance, ForkJoinPool pool )
+    {
+        if( distance < 0 || distance > 15 )
+        {
+            throw new IllegalArgumentException( "distance must be between 0 and 15" );
+        }
+        long started = started();
+        String[] sorted = sortedUnique( queries, pool != null );
+        HashSet<String>[] results = newResultSets( sorted.length );
+
+        int parallelism = pool != null ? pool.getParallelism() : 1;
+        int run = Math.max( BATCH_RUN, ( sorted.length + 4 * parallelism - 1 ) / ( 4 * parallelism ) );
+        List<BatchSearch> tasks = new ArrayList<BatchSearch>();
+        for( int from = 0; from < sorted.length; from += run )
+        {
+            BatchSearch task = new BatchSearch( this, sorted, from, Math.min( sorted.length, from + run ), distance, results );
+            if( pool != null )
+            {
+                pool.execute( task );
+            }
+            else
+            {
+                task.invoke();
+            }
+            tasks.add( task );
+        }
+        long expanded = 0;
+        for( BatchSearch task : tasks )
+        {
+            task.join();
+            expanded += task.expanded();
+        }
+
+        Map<String, Set<String>> ret = new HashMap<String, Set<String>>( 2 * sorted.length );
+        long found = 0;
+        for( int i = 0; i < sorted.length; i++ )
+        {
+            ret.put( sorted[i], results[i] );
+            found += results[i].size();
+        }
+        record( TSTOperation.SEARCH_BATCH, started, expanded, found );
+        return ret;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static HashSet<String>[] newResultSets( int n )
+    {
+        HashSet<String>[] ret = new HashSet[ n ];
+        for( int i = 0; i < n; i++ )
+        {
+            ret[i] = new HashSet<String>();
+        }
+        return ret;
+    }
+
+    /**
+     * Split a run together query such as "newyorkhotels" into dictionary
+     * words, "new york hotels", with at most distance edits over all the
+     * words. Best first: fewest words, then fewest edits, then highest
+     * total weight, see add( term, ref, weight ), then longest first
+     * words. Each ( offset, edits left ) state of the query is
+     * solved once, see Segmenter.
+     * @param query
+     * @param distance
+     * @param max maximum number of segmentations returned
+     * @return
+     */
+    public List<TSTSegmentation> segment( String query, int distance, int max )
+    {
+        long started = started();
+        query = normalize( query );
+        if( query == null )
+        {
+            return new ArrayList<TSTSegmentation>();
+        }
+        Segmenter segmenter = new Segmenter( this, query, distance, max );
+        List<TSTSegmentation> ret = segmenter.segment();
+        record( TSTOperation.SEGMENT, started, segmenter.visited(), ret.size() );
+        return ret;
+    }
+
+    /**
+     * Return the k highest weighted words beginning with the prefix,
+     * highest first.
+     *
+     * Every node keeps an upper bound of the weights below it, so the
+     * subtree is explored best first with a priority queue: a branch is
+     * only expanded while its bound can still beat the words already
+     * found. The work depends on k and the prefix length, not on the
+     * number of completions.
+     * @param prefix
+     * @param k
+     * @return
+     */
+    public List<String> topK( String prefix, int k )
+    {
+        long started = started();
+        prefix = normalize( prefix );
+        TSTQueryCache cache = m_cache;
+        if( cache == null || prefix == null || k <= 0 )
+        {
+            return topKSearch( prefix, k, started, null );
+        }
+        String[] results = cache.get( TSTOperation.TOP_K, prefix, k );
+        if( results == null )
+        {
+            m_metrics.count( TSTOperation.TOP_K, TSTMetrics.Counter.CACHE_MISS, 1 );
+            long generation = cache.generation();
+            List<String> ret = topKSearch( prefix, k, started, null );
+            cache.put( TSTOperation.TOP_K, prefix, k, ret.toArray( new String[ ret.size() ] ), generation );
+            return ret;
+        }
+        m_metrics.count( TSTOperation.TOP_K, TSTMetrics.Counter.CACHE_HIT, 1 );
+        record( TSTOperation.TOP_K, started, 0, results.length );
+        return new ArrayList<String>( Arrays.asList( results ) );
+    }
+
+    /**
+     * topK() without the query cache, weights[i] is set to the weight of
+     * the i-th word so results of several trees can be merged.
+     * @param weights at most weights.length words are returned
+     */
+    List<String> topK( String prefix, int k, int[] weights )
+    {
+        return topKSearch( normalize( prefix ), Math.min( k, weights.length ), started(), weights );
+    }
+
+    private List<String> topKSearch( String prefix, int k, long started, int[] weights )
+    {
+        if( prefix == null || k <= 0 )
+        {
+            record( TSTOperation.TOP_K, started, 0, 0 );
+            return new ArrayList<String>( 0 );
+        }
+
+        int start = m_root;
+        int len = prefix.length();
+        int cost = 0;
+        if( len > 0 )
+        {
+            int idx = 0;
+            while( start != TSTNodeStore.NULL )
+            {
+                cost++;
+                char ch = prefix.charAt( idx );
+                char value = m_nodes.value( start );
+                if( value > ch )
+                {
+                    start = m_nodes.getLeft( start );
+                }
+                else if( value < ch )
+                {
+                    start = m_nodes.getRight( start );
+                }
+                else if( ++idx == len )
+                {
+                    break;
+                }
+                else
+                {
+                    start = m_nodes.getMiddle( start );
+                }
+            }
+            if( start == TSTNodeStore.NULL )
+            {
+                record( TSTOperation.TOP_K, started, cost, 0 );
+                return new ArrayList<String>( 0 );
+            }
+        }
+        else
+        {
+            start = TSTNodeStore.NULL;
+        }
+        return topK( m_root, new int[] { start }, 1, k, started, cost, weights );
+    }
+
+    /**
+     * Best first topK() below the given prefix nodes.
+     * @param root root of the tree snapshot
+     * @param starts nodes of the last prefix character, NULL for the empty
+     *               prefix
+     * @param count number of starts
+     * @param k
+     * @param started see started(), the search is recorded as TOP_K
+     * @param cost nodes visited to find the starts
+     * @return
+     */
+    List<String> topK( int root, int[] starts, int count, int k, long started, int cost )
+    {
+        return topK( root, starts, count, k, started, cost, null );
+    }
+
+    private List<String> topK( int root, int[] starts, int count, int k, long started, int cost, int[] weights )
+    {
+        // k may be far above the number of words
+        List<String> ret = new ArrayList<String>( Math.max( Math.min( k, m_size ), 0 ) );
+
+        // heap entries: weight in the high 32 bits, node handle << 1 in the
+        // low bits, the low bit set for the word completed at the node
+        long[] heap = new long[ Math.max( 64, 2 * count + 4 ) ];
+        int size = 0;
+        for( int i = 0; i < count; i++ )
+        {
+            int start = starts[i];
+            if( start == TSTNodeStore.NULL )
+            {
+                start = root;
+            }
+            else
+            {
+                if( m_nodes.getRef( start ) != -1 )
+                {
+                    size = heapPush( heap, size, entry( m_terms.getWeight( m_nodes.getRef( start ) ), start, true ) );
+                }
+                start = m_nodes.getMiddle( start );
+            }
+            if( start != TSTNodeStore.NULL )
+            {
+                size = heapPush( heap, size, entry( m_nodes.getWeight( start ), start, false ) );
+            }
+        }
+
+        // overlapping starts reach the same words more than once
+        LongHashSet seen = count > 1 ? new LongHashSet() : null;
+        while( size > 0 && ret.size() < k )
+        {
+            cost++;
+            long top = heap[0];
+            heap[0] = heap[--size];
+            heapDown( heap, size );
+
+            int node = (int)( ( top & 0xFFFFFFFFL ) >>> 1 );
+            if( ( top & 1 ) != 0 )
+            {
+                if( seen == null || seen.add( m_nodes.getRef( node ) ) )
+                {
+                    if( weights != null )
+                    {
+                        weights[ ret.size() ] = (int)( top >> 32 );
+                    }
+                    ret.add( getTerm( m_nodes.getRef( node ) ) );
+                }
+                continue;
+            }
+            if( size + 4 > heap.length )
+            {
+                heap = Arrays.copyOf( heap, heap.length * 2 );
+            }
+            if( m_nodes.getRef( node ) != -1 )
+            {
+                size = heapPush( heap, size, entry( m_terms.getWeight( m_nodes.getRef( node ) ), node, true ) );
+            }
+            int child = m_nodes.getLeft( node );
+            if( child != TSTNodeStore.NULL )
+            {
+                size = heapPush( heap, size, entry( m_nodes.getWeight( child ), child, false ) );
+            }
+            child = m_nodes.getMiddle( node );
+            if( child != TSTNodeStore.NULL )
+            {
+                size = heapPush( heap, size, entry( m_nodes.getWeight( child ), child, false ) );
+            }
+            child = m_nodes.getRight( node );
+            if( child != TSTNodeStore.NULL )
+            {
+                size = heapPush( heap, size, entry( m_nodes.getWeight( child ), child, false ) );
+            }
+        }
+        record( TSTOperation.TOP_K, started, cost, ret.size() );
+        return ret;
+    }
+
+    private static long entry( int weight, int node, boolean word )
+    {
+        return ( (long)weight << 32 ) | ( ( (long)node << 1 ) & 0xFFFFFFFFL ) | ( word ? 1 : 0 );
+    }
+
+    /**
+     * Push onto a max heap of the first size entries.
+     * @return new size
+     */
+    private static int heapPush( long[] heap, int size, long e )
+    {
+        int i = size;
+        while( i > 0 && heap[ ( i - 1 ) >>> 1 ] < e )
+        {
+            heap[i] = heap[ ( i - 1 ) >>> 1 ];
+            i = ( i - 1 ) >>> 1;
+        }
+        heap[i] = e;
+        return size + 1;
+    }
+
+    private static void heapDown( long[] heap, int size )
+    {
+        int i = 0;
+        long e = heap[0];
+        while( true )
+        {
+            int c = 2 * i + 1;
+            if( c >= size )
+            {
+                break;
+            }
+            if( c + 1 < size && heap[ c + 1 ] > heap[c] )
+            {
+                c++;
+            }
+            if( heap[c] <= e )
+            {
+                break;
+            }
+            heap[i] = heap[c];
+            i = c;
+        }
+        heap[i] = e;
+    }
+
+    /**
+     * Return all complete word from the given node.
+     * @param ret
+     * @param node
+     */
+    public void returnAllResults( HashSet<String> ret, int node )
+    {
+        returnAllResults( new Emitter( ret ), node );
+    }
+
+    /**
+     * Streaming returnAllResults(), see nearNeighbours( TSTResultVisitor, ... ).
+     * @param visitor
+     * @param node
+     */
+    public void returnAllResults( TSTResultVisitor visitor, int node )
+    {
+        returnAllResults( new Emitter( visitor ), node );
+    }
+
+    private void returnAllResults( Emitter ret, int node )
+    {
+        SearchStack stack = SearchStack.acquire();
+        try
+        {
+            pushChild( stack, node, 0, 0 );
+            while( !stack.isEmpty() && !ret.stopped() )
+            {
+                stack.pop();
+                node = stack.node();
+                if( m_nodes.getRef(node) != -1 )
+                {
+                    ret.add( m_nodes.getRef(node) );
+                }
+                pushChild( stack, m_nodes.getRight( node ), 0, 0 );
+                pushChild( stack, m_nodes.getMiddle( node ), 0, 0 );
+                pushChild( stack, m_nodes.getLeft( node ), 0, 0 );
+            }
+        }
+        finally
+        {
+            SearchStack.release( stack );
+        }
+    }
+
+    /**
+     * The words matching a prefix of the word, plus for a word that only
+     * matches part of it an overflow token "term,unmatched suffix,distance"
+     * to search again. segment() splits a whole query into words directly.
+     * @param ret
+     * @param word
+     * @param distance
+     */
+    public void nearSearchWithSuffix( HashSet<String> ret, String word, int distance )
+    {
+        query( new Emitter( ret ), TSTOperation.NEAR_SEARCH_WITH_SUFFIX, word, distance );
+    }
+
+    /**
+     * Streaming nearSearchWithSuffix(), see nearNeighbours( TSTResultVisitor, ... ).
+     * @param visitor
+     * @param word
+     * @param distance
+     */
+    public void nearSearchWithSuffix( TSTResultVisitor visitor, String word, int distance )
+    {
+        query( new Emitter( visitor ), TSTOperation.NEAR_SEARCH_WITH_SUFFIX, word, distance );
+    }
+
+    public void nearSearchWithSuffix( HashSet<String> ret, String word, int offset, int node, int distance )
+    {
+        nearSearchWithSuffix( new Emitter( ret ), word, offset, node, distance );
+    }
+
+    private int nearSearchWithSuffix( Emitter ret, String word, int offset, int node, int distance )
+    {
+        int cost = 0;
+        int len = word.length();
+        SearchStack stack = SearchStack.acquire();
+        try
+        {
+            stack.push( node, offset, distance );
+            while( !stack.isEmpty() && !ret.stopped() )
+            {
+                stack.pop();
+                node = stack.node();
+                offset = stack.offset();
+                distance = stack.distance();
+                cost++;
+                if( node == TSTNodeStore.NULL || distance < 0 || len <= offset )
+                {
+                    continue;
+                }
+                char ch = word.charAt( offset );
+                char value = m_nodes.value( node );
+                int middle = m_nodes.getMiddle( node );
+                long ref = m_nodes.getRef( node );
+
+                if( distance > 0 || ch > value )
+                {
+                    stack.push( m_nodes.getRight( node ), offset, distance );
+                }
+
+                if( middle == TSTNodeStore.NULL )
+                {
+                    int localOffset = ( ch == value ) ? offset + 1 : offset;
+                    if( ( len - localOffset ) <= distance )
+                    {
+                        // found one, a leaf always completes a word
+                        if( ref != -1 )
+                        {
+                            ret.add( ref );
+                        }
+                    }
+                    else if( ref != -1 )
+                    {
+                        // this to handle the overflow tokens
+                        ret.addOverflow( ref, word, localOffset, distance );
+                    }
+                }
+                else if( ref != -1 && ( len - (offset+1) ) <= distance )
+                {
+                    int localOffset = ( ch == value ) ? offset + 1 : offset;
+                    if( ( len - localOffset ) <= distance )
+                    {
+                        ret.add( ref );
+                    }
+                }
+                else if( ch == value )
+                {
+                    stack.push( middle, offset + 1, distance );
+                }
+                else
+                {
+                    stack.push( node, offset + 1, distance - 1 );
+                    stack.push( middle, offset, distance - 1 );
+                    stack.push( middle, offset + 1, distance - 1 );
+                }
+
+                if( distance > 0 || ch < value )
+                {
+                    stack.push( m_nodes.getLeft( node ), offset, distance );
+                }
+            }
+        }
+        finally
+        {
+            SearchStack.release( stack );
+        }
+        return cost;
+    }
+
+    /**
+     * Prefix search, for auto complete.
+     * @param ret
+     * @param word
+     * @param distance
+     */
+    public void beginWith( HashSet<String> ret, String word, int distance )
+    {
+        query( new Emitter( ret ), TSTOperation.BEGIN_WITH, word, distance );
+    }
+
+    /**
+     * Streaming beginWith(), see nearNeighbours( TSTResultVisitor, ... ).
+     * @param visitor
+     * @param word
+     * @param distance
+     */
+    public void beginWith( TSTResultVisitor visitor, String word, int distance )
+    {
+        query( new Emitter( visitor ), TSTOperation.BEGIN_WITH, word, distance );
+    }
+
+    public void beginWith( HashSet<String> ret, String word, int offset, int node, int distance )
+    {
+        beginWith(new Emitter( ret ), word, offset, node, distance);
+    }
+
+    private int beginWith( Emitter ret, String word, int offset, int node, int distance )
+    {
+        int cost = 0;
+        int len = word.length();
+        SearchStack stack = SearchStack.acquire();
+        try
+        {
+            stack.push( node, offset, distance );
+            while( !stack.isEmpty() && !ret.stopped() )
+            {
+                stack.pop();
+                node = stack.node();
+                offset = stack.offset();
+                distance = stack.distance();
+                cost++;
+                if( node == TSTNodeStore.NULL || distance < 0 )
+                {
+                    continue;
+                }
+                long ref = m_nodes.getRef( node );
+                if( len <= offset )
+                {
+                    // the entire subtree matches, its frames keep an offset
+                    // past the end of the word
+                    if( ref != -1 )
+                    {
+                        ret.add( ref );
+                    }
+                    pushChild( stack, m_nodes.getRight( node ), offset, distance );
+                    pushChild( stack, m_nodes.getMiddle( node ), offset, distance );
+                    pushChild( stack, m_nodes.getLeft( node ), offset, distance );
+                    continue;
+                }
+                char ch = word.charAt( offset );
+                char value = m_nodes.value( node );
+                int middle = m_nodes.getMiddle( node );
+
+                // the right tree
+                if( distance > 0 || ch > value )
+                {
+                    stack.push( m_nodes.getRight( node ), offset, distance );
+                }
+
+                if( middle == TSTNodeStore.NULL )
+                {
+                    int localOffset = ( ch == value ) ? offset + 1 : offset;
+                    if( ( len - localOffset ) <= distance )
+                    {
+                        // found one, a leaf always completes a word
+                        if( ref != -1 )
+                        {
+                            ret.add( ref );
+                        }
+                    }
+                }
+                else if( ref != -1 && ( len - (offset+1) ) <= distance )
+                {
+                    int localOffset = ( ch == value ) ? offset + 1 : offset;
+                    if( ( len - localOffset ) <= distance )
+                    {
+                        ret.add( ref );
+                    }
+                }
+                else if( ch == value )
+                {
+                    stack.push( middle, offset + 1, distance );
+                }
+                else
+                {
+                    stack.push( node, offset + 1, distance - 1 );
+                    stack.push( middle, offset, distance - 1 );
+                    stack.push( middle, offset + 1, distance - 1 );
+                }
+
+                // the left tree
+                if( distance > 0 || ch < value )
+                {
+                    stack.push( m_nodes.getLeft( node ), offset, distance );
+                }
+            }
+        }
+        finally
+        {
+            SearchStack.release( stack );
+        }
+        return cost;
+    }
+    public void index()
+    {
+        index( SOURCE_FILE_NAME );
+    }
+
+    /**
+     * Index every line of the given dictionary file and write the
+     * binary index file, which open() can later map instead of
+     * re-indexing.
+     * @param fileName
+     * @param indexFile
+     * @throws IOException if the index file can't be written
+     */
+    public void index( String fileName, String indexFile ) throws IOException
+    {
+        index( fileName );
+        m_indexFile = indexFile;
+        write( Paths.get( indexFile ) );
+    }
+
+    /**
+     * Index every line of the given UTF-8 dictionary file, case folded,
+     * see load().
+     * @param fileName
+     */
+    public void index( String fileName )
+    {
+        long t1 = System.nanoTime();
+        int added = 0;
+
+        try
+        {
+            added = load( Paths.get( fileName ) );
+        }
+        catch( Exception e)
+        {
+            e.printStackTrace();
+        }
+        finally
+        {
+            long t2 = System.nanoTime();
+            long ms = ( t2 - t1 ) / 1000000;
+
+            System.out.println( "Index time = " + ms + " ms, " + added + " terms, "
+                + (long)( added * 1e9 / Math.max( t2 - t1, 1 ) ) + " terms/s\n" );
+        }
+    }
+
+    /**
+     * Load a UTF-8 dictionary, one term per line, case folded, and switch
+     * case folding on, see setCaseFolding(). The file is streamed through
+     * a direct buffer and decoded without a String per line. In file order
+     * (the default) each line is looked up and inserted in one walk, so
+     * only new terms allocate. Honours setBalancedIndex(), setIndexPool()
+     * and setMaxTerms() like index(). New terms get refs in file order,
+     * starting after the largest ref in use.
+     * @param file
+     * @return number of terms added.
+     * @throws IOException
+     */
+    public int load( Path file ) throws IOException
+    {
+        FileChannel channel = FileChannel.open( file, StandardOpenOption.READ );
+        try
+        {
+            return load( channel );
+        }
+        finally
+        {
+            channel.close();
+        }
+    }
+
+    /**
+     * Load a UTF-8 dictionary from a stream, see load( Path ). The stream
+     * is read to its end but not closed.
+     * @param in
+     * @return number of terms added.
+     * @throws IOException
+     */
+    public int load( InputStream in ) throws IOException
+    {
+        return load( Channels.newChannel( in ) );
+    }
+
+    private int load( ReadableByteChannel channel ) throws IOException
+    {
+        setCaseFolding( true );
+        long started = started();
+        int size = m_size;
+        int totalNodes = m_totalNodes;
+        int copiedNodes = m_copiedNodes;
+        final int maxTerms = m_maxTerms;
+
+        if( m_balancedIndex || m_indexPool != null )
+        {
+            final HashSet<String> terms = new HashSet<String>();
+            TSTLoader.read( channel, ( chars, length ) ->
+            {
+                terms.add( new String( chars, 0, length ) );
+                return terms.size() < maxTerms;
+            } );
+            if( m_indexPool != null )
+            {
+                parallelLoad( terms, m_indexPool );
+            }
+            else
+            {
+                bulkLoad( terms );
+            }
+        }
+        else
+        {
+            final int baseRef = m_terms.slots();
+            final int[] ref = { baseRef };
+            TSTLoader.read( channel, ( chars, length ) ->
+            {
+                if( insert( chars, length, ref[0] ) )
+                {
+                    ref[0]++;
+                }
+                return ref[0] - baseRef < maxTerms;
+            } );
+            invalidateCache();
+        }
+        if( started != 0 )
+        {
+            countUpdate( TSTOperation.LOAD, totalNodes, copiedNodes );
+            record( TSTOperation.LOAD, started, 0, m_size - size );
+        }
+        return m_size - size;
+    }
+
+    /**
+     * Add the folded term chars[ 0 .. length ) unless it is already in the
+     * tree, in a single walk.
+     * @return true if the term was added.
+     */
+    private boolean insert( char[] chars, int length, int ref )
+    {
+        if( m_copyOnWrite || m_journal != null )
+        {
+            String term = new String( chars, 0, length );
+            if( contains( term ) )
+            {
+                return false;
+            }
+            add( term, ref );
+            return true;
+        }
+
+        int cur = m_root;
+        int parent = TSTNodeStore.NULL;
+        int childDir = MIDDLE;
+        int idx = 0;
+        while( cur != TSTNodeStore.NULL )
+        {
+            char ch = m_nodes.value( cur );
+            char c = chars[ idx ];
+            parent = cur;
+            if( ch > c )
+            {
+                cur = m_nodes.getLeft( cur );
+                childDir = LEFT;
+            }
+            else if( ch < c )
+            {
+                cur = m_nodes.getRight( cur );
+                childDir = RIGHT;
+            }
+            else if( ++idx == length )
+            {
+                if( m_nodes.getRef( cur ) != -1 )
+                {
+                    return false;
+                }
+                // a prefix of an existing word
+                m_nodes.setComplete( cur, ref );
+                m_size++;
+                m_terms.put( ref, chars, 0, length );
+                m_terms.setWeight( ref, 0 );
+                return true;
+            }
+            else
+            {
+                cur = m_nodes.getMiddle( cur );
+                childDir = MIDDLE;
+            }
+        }
+
+        cur = m_nodes.newNode( chars[ idx++ ] );
+        m_nodes.setWeight( cur, 0 );
+        m_totalNodes++;
+        if( parent == TSTNodeStore.NULL )
+        {
+            m_root = cur;
+        }
+        else if( childDir == MIDDLE )
+        {
+            m_nodes.setMiddle( parent, cur );
+        }
+        else if( childDir == LEFT )
+        {
+            m_nodes.setLeft( parent, cur );
+        }
+        else
+        {
+            m_nodes.setRight( parent, cur );
+        }
+        while( idx < length )
+        {
+            int next = m_nodes.newNode( chars[ idx++ ] );
+            m_nodes.setWeight( next, 0 );
+            m_nodes.setMiddle( cur, next );
+            m_totalNodes++;
+            cur = next;
+        }
+        m_nodes.setComplete( cur, ref );
+        m_size++;
+        m_terms.put( ref, chars, 0, length );
+        m_terms.setWeight( ref, 0 );
+        return true;
+    }
+
+    /**
+     * Choose how index() builds the tree: by adding lines in file order
+     * (default), or balanced with bulkLoad(). The fuzzy searches follow
+     * the tree shape, so a balanced tree can return a slightly different
+     * set of near neighbours.
+     * @param balanced
+     */
+    public void setBalancedIndex( boolean balanced )
+    {
+        m_balancedIndex = balanced;
+    }
+
+    /**
+     * Add a whole collection of terms so that every left/right subtree is
+     * balanced. The terms are sorted and deduplicated, then the median of
+     * each range is added before the two halves, so a sorted dictionary
+     * no longer degenerates into long right leaning chains.
+     * Refs are assigned in sorted order, starting after the largest ref
+     * in use.
+     * @param terms
+     */
+    public void bulkLoad( Collection<String> terms )
+    {
+        String[] sorted = sortedUnique( terms, false );
+        addMedians( sorted, 0, sorted.length, m_terms.slots() );
+    }
+
+    /**
+     * @return the non empty terms, normalized, sorted and without
+     *         duplicates.
+     */
+    private String[] sortedUnique( Collection<String> terms, boolean parallel )
+    {
+        String[] sorted = new String[ terms.size() ];
+        int n = 0;
+        for( String term : terms )
+        {
+            if( term != null && term.length() > 0 )
+            {
+                sorted[n++] = normalize( term );
+            }
+        }
+        if( parallel )
+        {
+            Arrays.parallelSort( sorted, 0, n );
+        }
+        else
+        {
+            Arrays.sort( sorted, 0, n );
+        }
+        int unique = 0;
+        for( int i = 0; i < n; i++ )
+        {
+            if( unique == 0 || !sorted[i].equals( sorted[unique - 1] ) )
+            {
+                sorted[unique++] = sorted[i];
+            }
+        }
+        return Arrays.copyOf( sorted, unique );
+    }
+
+    /**
+     * Build index() partitions in parallel on the pool, see parallelLoad().
+     * @param pool null to build on the calling thread
+     */
+    public void setIndexPool( ForkJoinPool pool )
+    {
+        m_indexPool = pool;
+    }
+
+    /**
+     * Maximum number of distinct terms index() reads, 600000 by default.
+     * @param maxTerms
+     */
+    public void setMaxTerms( int maxTerms )
+    {
+        m_maxTerms = maxTerms;
+    }
+
+    /**
+     * Parallel version of bulkLoad(). The sorted terms are partitioned by
+     * leading character, each partition is built balanced into its own
+     * array store on the pool, then the partitions are copied into this
+     * tree and their roots linked as a balanced top level BST.
+     * Falls back to bulkLoad() unless the tree is empty.
+     * @param terms
+     * @param pool
+     */
+    public void parallelLoad( Collection<String> terms, ForkJoinPool pool )
+    {
+        if( m_root != TSTNodeStore.NULL || m_copyOnWrite || m_journal != null )
+        {
+            bulkLoad( terms );
+            return;
+        }
+        String[] sorted = sortedUnique( terms, true );
+        int baseRef = m_terms.slots();
+
+        List<PartitionBuild> tasks = new ArrayList<PartitionBuild>();
+        int from = 0;
+        while( from < sorted.length )
+        {
+            char first = sorted[from].charAt( 0 );
+            int to = from + 1;
+            while( to < sorted.length && sorted[to].charAt( 0 ) == first )
+            {
+                to++;
+            }
+            PartitionBuild task = new PartitionBuild( sorted, from, to, baseRef );
+            tasks.add( task );
+            pool.execute( task );
+            from = to;
+        }
+
+        // the term table isn't thread safe, fill it while the partitions build
+        for( int i = 0; i < sorted.length; i++ )
+        {
+            m_terms.put( baseRef + i, sorted[i] );
+        }
+
+        int[] roots = new int[ tasks.size() ];
+        for( int i = 0; i < roots.length; i++ )
+        {
+            roots[i] = graft( tasks.get( i ).join() );
+        }
+        m_root = linkMedians( roots, 0, roots.length );
+        invalidateCache();
+    }
+
+    /**
+     * Copy the nodes of a partition into this tree.
+     * @return handle of the partition root in this tree.
+     */
+    private int graft( TernarySearchTree part )
+    {
+        TSTNodeStore from = part.m_nodes;
+        int size = from.size();
+        int[] map = new int[ size ];
+        for( int node = 0; node < size; node++ )
+        {
+            map[ node ] = m_nodes.newNode( from.value( node ) );
+            m_nodes.setComplete( map[ node ], from.getRef( node ) );
+            m_nodes.setWeight( map[ node ], from.getWeight( node ) );
+        }
+        for( int node = 0; node < size; node++ )
+        {
+            if( from.getLeft( node ) != TSTNodeStore.NULL )
+            {
+                m_nodes.setLeft( map[ node ], map[ from.getLeft( node ) ] );
+            }
+            if( from.getMiddle( node ) != TSTNodeStore.NULL )
+            {
+                m_nodes.setMiddle( map[ node ], map[ from.getMiddle( node ) ] );
+            }
+            if( from.getRight( node ) != TSTNodeStore.NULL )
+            {
+                m_nodes.setRight( map[ node ], map[ from.getRight( node ) ] );
+            }
+        }
+        m_totalNodes += size;
+        m_size += part.m_size;
+        return map[ part.m_root ];
+    }
+
+    private int linkMedians( int[] roots, int from, int to )
+    {
+        if( from >= to )
+        {
+            return TSTNodeStore.NULL;
+        }
+        int mid = ( from + to ) >>> 1;
+        m_nodes.setLeft( roots[mid], linkMedians( roots, from, mid ) );
+        m_nodes.setRight( roots[mid], linkMedians( roots, mid + 1, to ) );
+        return roots[mid];
+    }
+
+    /**
+     * Builds the partition of terms sharing one leading character.
+     */
+    private static final class PartitionBuild extends RecursiveTask<TernarySearchTree>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final String[] m_sorted;
+        private final int m_from;
+        private final int m_to;
+        private final int m_baseRef;
+
+        PartitionBuild( String[] sorted, int from, int to, int baseRef )
+        {
+            m_sorted = sorted;
+            m_from = from;
+            m_to = to;
+            m_baseRef = baseRef;
+        }
+
+        protected TernarySearchTree compute()
+        {
+            // terms are kept by the target tree only
+            TernarySearchTree part = new TernarySearchTree( new ArrayNodeStore( 4 * ( m_to - m_from ) ), NO_TERMS );
+            part.addMedians( m_sorted, m_from, m_to, m_baseRef );
+            return part;
+        }
+    }
+
+    /**
+     * Collects search results either into a legacy HashSet or, one at a
+     * time, into a TSTResultVisitor. For a visitor, duplicates are dropped
+     * by ref so the traversal never builds a set of Strings.
+     */
+    private final class Emitter
+    {
+        private final HashSet<String> m_set;
+        private final TSTResultVisitor m_visitor;
+        private LongHashSet m_seen;
+        private boolean m_stopped = false;
+        private int m_count = 0;
+
+        Emitter( HashSet<String> set )
+        {
+            m_set = set;
+            m_visitor = null;
+        }
+
+        Emitter( TSTResultVisitor visitor )
+        {
+            m_set = null;
+            m_visitor = visitor;
+            m_seen = new LongHashSet();
+        }
+
+        boolean stopped()
+        {
+            return m_stopped;
+        }
+
+        /**
+         * @return number of results emitted.
+         */
+        int count()
+        {
+            return m_count;
+        }
+
+        void add( long ref )
+        {
+            if( m_stopped )
+            {
+                return;
+            }
+            if( m_set != null )
+            {
+                m_set.add( getTerm( ref ) );
+                m_count++;
+            }
+            else if( m_seen.add( ref << 32 | 0xFFFFFFFFL ) )
+            {
+                m_count++;
+                m_stopped = !m_visitor.visit( getTerm( ref ) );
+            }
+        }
+
+        /**
+         * A result replayed from the query cache, already distinct.
+         */
+        void addResult( String result )
+        {
+            if( m_stopped )
+            {
+                return;
+            }
+            m_count++;
+            if( m_set != null )
+            {
+                m_set.add( result );
+            }
+            else
+            {
+                m_stopped = !m_visitor.visit( result );
+            }
+        }
+
+        /**
+         * An overflow token, "term,unmatched suffix,distance".
+         */
+        void addOverflow( long ref, String word, int offset, int distance )
+        {
+            if( m_stopped )
+            {
+                return;
+            }
+            if( m_set == null && !m_seen.add( ref << 32 | ( (long)offset << 8 ) | ( distance & 0xFF ) ) )
+            {
+                return;
+            }
+            String out = getTerm( ref ) + "," + word.substring( offset ) + "," + distance;
+            m_count++;
+            if( m_set != null )
+            {
+                m_set.add( out );
+            }
+            else
+            {
+                m_stopped = !m_visitor.visit( out );
+            }
+        }
+    }
+
+    /**
+     * Term store of the partitions built by parallelLoad().
+     */
+    private static final TSTTermStore NO_TERMS = new TSTTermStore()
+    {
+        public String get( long ref )
+        {
+            return null;
+        }
+
+        public void put( int ref, String term )
+        {
+        }
+
+        public int getWeight( long ref )
+        {
+            return 0;
+        }
+
+        public void setWeight( int ref, int weight )
+        {
+        }
+
+        public int size()
+        {
+            return 0;
+        }
+
+        public int slots()
+        {
+            return 0;
+        }
+
+        public long memoryUsage()
+        {
+            return 0;
+        }
+    };
+
+    private void addMedians( String[] sorted, int from, int to, int baseRef )
+    {
+        if( from >= to )
+        {
+            return;
+        }
+        int mid = ( from + to ) >>> 1;
+        add( sorted[mid], baseRef + mid );
+        addMedians( sorted, from, mid, baseRef );
+        addMedians( sorted, mid + 1, to, baseRef );
+    }
+
+    static public final void main( String args[] ) throws IOException
+    {
+        TernarySearchTree tst = new TernarySearchTree();
+        tst.index();
+
+        String word = "about";
+        int distance = 1;
+        HashSet<String> ret = new HashSet<String>();
+
+        // search with edit distance of 1
+        System.out.println("Search '" + word + "' with edit distance " + distance);
+        tst.nearNeighbours(ret, word, distance);
+        for( String s : ret )
+        {
+            System.out.println( s );
+        }
+
+        // suggestion with edit distance of 1
+        System.out.println("\nAuto complete '" + word + "' with edit distance " + distance);
+        ret = new HashSet<String>();
+        tst.beginWith(ret, word, distance);
+        for( String s : ret )
+        {
+            System.out.println( s );
+        }
+    }
+    /**
+     * Dictionary index() and the reports read by default, data/dic.txt
+     * unless the searchtool.dictionary system property is set.
+     */
+    public static final String SOURCE_FILE_NAME = System.getProperty( "searchtool.dictionary",
+        "data" + File.separator + "dic.txt" );
+}